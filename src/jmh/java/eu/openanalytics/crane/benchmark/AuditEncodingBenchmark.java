@@ -0,0 +1,106 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import eu.openanalytics.crane.security.auditing.AuditEventCodec;
+import eu.openanalytics.crane.security.auditing.FileAuditEventRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the serialization of audit events in the JSON and binary encoding, and reading back a file of such events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuditEncodingBenchmark {
+
+    private static final int EVENTS_PER_FILE = 10_000;
+
+    @Param({"JSON", "BINARY"})
+    public AuditLoggingOptions.Encoding encoding;
+
+    private ObjectMapper objectMapper;
+    private AuditEventCodec.Encoder encoder;
+    private AuditEvent[] events;
+    private int next;
+    private byte[] file;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = FileAuditEventRepository.createObjectMapper();
+        AuditEventCodec codec = AuditEventCodec.of(encoding, objectMapper);
+        encoder = codec.newEncoder(OutputStream.nullOutputStream(), true);
+        events = new AuditEvent[1024];
+        Instant timestamp = Instant.parse("2025-01-01T00:00:00Z");
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new AuditEvent(timestamp.plusMillis(i), "user" + (i % 16), "REPOSITORY_HANDLER", Map.of(
+                "request_method", "GET",
+                "request_path", "/repository/directory" + (i % 64) + "/file" + i + ".txt",
+                "response_status", 200,
+                "remote_address", "10.0.0." + (i % 256)
+            ));
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        AuditEventCodec.Encoder fileEncoder = codec.newEncoder(outputStream, true);
+        for (int i = 0; i < EVENTS_PER_FILE; i++) {
+            fileEncoder.write(events[i % events.length]);
+        }
+        file = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public void encode() throws IOException {
+        encoder.write(events[next++ & (events.length - 1)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void decode(Blackhole blackhole) throws IOException {
+        AuditEventCodec.read(new ByteArrayInputStream(file), 0, file.length, objectMapper, (offset, event) -> blackhole.consume(event));
+    }
+
+}
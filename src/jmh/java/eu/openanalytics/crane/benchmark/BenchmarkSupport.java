@@ -0,0 +1,67 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.benchmark;
+
+import eu.openanalytics.crane.security.JwtCraneUser;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixtures shared by the benchmarks.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static List<String> names(String prefix, int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + i);
+        }
+        return names;
+    }
+
+    static Authentication authentication(String name, List<String> groups) {
+        return authentication(name, -1, List.of(), groups);
+    }
+
+    static Authentication authentication(String name, int uid, List<Integer> gids, List<String> groups) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (String group : groups) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + group.toUpperCase()));
+        }
+        return new UsernamePasswordAuthenticationToken(new JwtCraneUser(name, uid, gids), null, authorities);
+    }
+
+    static GenericApplicationContext applicationContext() {
+        GenericApplicationContext applicationContext = new GenericApplicationContext();
+        applicationContext.refresh();
+        return applicationContext;
+    }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.benchmark;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.AccessControl;
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.service.IndexPageService;
+import eu.openanalytics.crane.service.PathReadAccessControlService;
+import eu.openanalytics.crane.service.PosixReadAccessControlService;
+import eu.openanalytics.crane.service.StorageMetrics;
+import eu.openanalytics.crane.service.UserService;
+import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import eu.openanalytics.crane.upload.PathWriteAccessControlService;
+import eu.openanalytics.crane.upload.PosixWriteAccessControlService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link IndexPageService#getTemplateVariables} on a large directory, which checks the (path and POSIX)
+ * access control of every entry in the directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexPageBenchmark {
+
+    @Param({"100", "10000"})
+    public int files;
+
+    @Param({"false", "true"})
+    public boolean posixAccessControl;
+
+    private Path storage;
+    private Path directory;
+    private Repository repository;
+    private IndexPageService indexPageService;
+
+    @Setup
+    public void setup() throws IOException {
+        storage = Files.createTempDirectory("crane-benchmark-index");
+        directory = Files.createDirectory(storage.resolve("directory"));
+        for (int i = 0; i < files; i++) {
+            if (i % 10 == 0) {
+                Files.createDirectory(directory.resolve("dir" + i));
+            } else {
+                Files.writeString(directory.resolve("file" + i + ".txt"), "content");
+            }
+        }
+
+        repository = new Repository();
+        repository.setName("repository");
+        repository.setStorageLocation(storage.toString());
+        repository.setStoragePath(storage);
+        repository.setPosixAccessControl(posixAccessControl);
+        AccessControl accessControl = new AccessControl();
+        accessControl.setUsers(List.of("user"));
+        accessControl.validate();
+        repository.setReadAccess(accessControl);
+        repository.setWriteAccess(accessControl);
+        CraneConfig craneConfig = new CraneConfig();
+        craneConfig.setRepositories(Map.of("repository", repository));
+
+        // the benchmark threads do not inherit the thread local security context
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        int uid = (int) Files.readAttributes(storage, "unix:uid").get("uid");
+        SecurityContextHolder.setContext(new SecurityContextImpl(BenchmarkSupport.authentication("user", uid, List.of(), List.of())));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpecExpressionResolver specExpressionResolver = new SpecExpressionResolver(BenchmarkSupport.applicationContext(), meterRegistry);
+        UserService userService = new UserService(null);
+        indexPageService = new IndexPageService(
+            new PathReadAccessControlService(specExpressionResolver, userService, craneConfig, meterRegistry),
+            new PosixReadAccessControlService(userService, craneConfig, meterRegistry),
+            new PathWriteAccessControlService(specExpressionResolver, userService, craneConfig, meterRegistry),
+            new PosixWriteAccessControlService(userService, craneConfig, meterRegistry),
+            new StorageMetrics(meterRegistry));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SecurityContextHolder.clearContext();
+        FileUtils.deleteDirectory(storage.toFile());
+    }
+
+    @Benchmark
+    public Map<String, Object> getTemplateVariables() throws IOException {
+        return indexPageService.getTemplateVariables(repository, directory);
+    }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.benchmark;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.AccessControl;
+import eu.openanalytics.crane.model.config.PathComponent;
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.runtime.CranePath;
+import eu.openanalytics.crane.service.PathReadAccessControlService;
+import eu.openanalytics.crane.service.UserService;
+import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.Authentication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link eu.openanalytics.crane.service.AbstractPathAccessControlService#canAccess} on a synthetic tree of
+ * {@link PathComponent}s, where every level has `width` siblings and the requested path is `depth` levels deep.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathAccessControlBenchmark {
+
+    @Param({"4", "16"})
+    public int depth;
+
+    @Param({"10", "1000"})
+    public int width;
+
+    @Param({"groups", "users", "expression"})
+    public String rule;
+
+    private PathReadAccessControlService accessControlService;
+    private Repository repository;
+    private Authentication authentication;
+    private String path;
+
+    @Setup
+    public void setup() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpecExpressionResolver specExpressionResolver = new SpecExpressionResolver(BenchmarkSupport.applicationContext(), meterRegistry);
+        accessControlService = new PathReadAccessControlService(specExpressionResolver, new UserService(null), new CraneConfig(), meterRegistry);
+        authentication = BenchmarkSupport.authentication("user", BenchmarkSupport.names("group", 50));
+
+        repository = new Repository();
+        repository.setName("repository");
+        repository.setReadAccess(accessControl());
+        PathComponent parent = repository;
+        List<String> segments = new ArrayList<>();
+        for (int level = 0; level < depth; level++) {
+            Map<String, PathComponent> children = new HashMap<>();
+            for (int i = 0; i < width; i++) {
+                PathComponent child = new PathComponent();
+                child.setReadAccess(accessControl());
+                children.put("dir" + i, child);
+            }
+            parent.setPaths(children);
+            String segment = "dir" + (width / 2);
+            segments.add(segment);
+            parent = children.get(segment);
+        }
+        segments.add("file.txt");
+        path = "/" + String.join("/", segments);
+    }
+
+    private AccessControl accessControl() {
+        AccessControl accessControl = new AccessControl();
+        switch (rule) {
+            case "groups" -> {
+                // only the last group of the list matches the groups of the user
+                List<String> groups = new ArrayList<>(BenchmarkSupport.names("other", 19));
+                groups.add("group49");
+                accessControl.setGroups(groups);
+            }
+            case "users" -> accessControl.setUsers(List.of("someone", "someone-else", "user"));
+            case "expression" -> accessControl.setExpression("#{groups.contains('GROUP49')}");
+            default -> throw new IllegalArgumentException(rule);
+        }
+        accessControl.validate();
+        return accessControl;
+    }
+
+    @Benchmark
+    public boolean canAccess() {
+        return accessControlService.canAccess(authentication, CranePath.of(repository, path), repository, 0);
+    }
+
+}
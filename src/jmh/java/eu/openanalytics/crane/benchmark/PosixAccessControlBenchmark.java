@@ -0,0 +1,108 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.benchmark;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.service.PosixReadAccessControlService;
+import eu.openanalytics.crane.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.Authentication;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the POSIX access control checks on a generated file tree. Every directory on the path is checked, the
+ * user is granted access through the group id of the generated files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PosixAccessControlBenchmark {
+
+    @Param({"2", "8", "32"})
+    public int depth;
+
+    private Path storage;
+    private PosixReadAccessControlService accessControlService;
+    private Repository repository;
+    private Authentication authentication;
+    private String path;
+
+    @Setup
+    public void setup() throws IOException {
+        storage = Files.createTempDirectory("crane-benchmark-posix", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-x---")));
+        List<String> segments = new ArrayList<>();
+        Path directory = storage;
+        for (int level = 0; level < depth; level++) {
+            segments.add("dir" + level);
+            directory = Files.createDirectory(directory.resolve("dir" + level), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-x---")));
+        }
+        Path file = Files.writeString(directory.resolve("file.txt"), "content");
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r-----"));
+        segments.add("file.txt");
+        path = "/" + String.join("/", segments);
+
+        Map<String, Object> attributes = Files.readAttributes(storage, "unix:gid");
+        int gid = (int) attributes.get("gid");
+        authentication = BenchmarkSupport.authentication("benchmark-user", 100_000, List.of(gid), BenchmarkSupport.names("group", 50));
+
+        repository = new Repository();
+        repository.setName("repository");
+        repository.setStoragePath(storage);
+        repository.setPosixAccessControl(true);
+        accessControlService = new PosixReadAccessControlService(new UserService(null), new CraneConfig(), new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(storage.toFile());
+    }
+
+    @Benchmark
+    public boolean canAccess() {
+        return accessControlService.canAccess(authentication, path, repository);
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.benchmark;
+
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.service.spel.SpecExpressionContext;
+import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.Authentication;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link SpecExpressionResolver#evaluate}, both with a context that is reused (and therefore hits the
+ * evaluation context cache) and with a new context for every evaluation (as is the case for every request).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpecExpressionBenchmark {
+
+    @Param({
+        "#{groups.contains('GROUP49')}",
+        "#{groups.contains('SCIENTISTS') and groups.contains('MATHEMATICIANS')}",
+        "#{parse('^/docs/(.*)/index\\.html$', path.toString())}",
+        "#{toLowerCaseList('A, B, C', ',').contains(repository.name)}"
+    })
+    public String expression;
+
+    private SpecExpressionResolver specExpressionResolver;
+    private Authentication authentication;
+    private Repository repository;
+    private Path path;
+    private SpecExpressionContext sharedContext;
+
+    @Setup
+    public void setup() {
+        specExpressionResolver = new SpecExpressionResolver(BenchmarkSupport.applicationContext(), new SimpleMeterRegistry());
+        authentication = BenchmarkSupport.authentication("user", BenchmarkSupport.names("group", 50));
+        repository = new Repository();
+        repository.setName("b");
+        path = Path.of("/docs/some/deep/directory/index.html");
+        sharedContext = SpecExpressionContext.create(authentication, repository, path);
+    }
+
+    @Benchmark
+    public Object evaluateSharedContext() {
+        return specExpressionResolver.evaluate(expression, sharedContext);
+    }
+
+    @Benchmark
+    public Object evaluateNewContext() {
+        return specExpressionResolver.evaluate(expression, SpecExpressionContext.create(authentication, repository, path));
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.benchmark;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.security.TokenParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks {@link TokenParser#parseAuthorities} for large groups claims, provided either as a JSON array or as a
+ * string containing a JSON array.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenParserBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int groups;
+
+    @Param({"list", "string"})
+    public String claimType;
+
+    private TokenParser tokenParser;
+    private Map<String, Object> claims;
+
+    @Setup
+    public void setup() {
+        CraneConfig craneConfig = new CraneConfig();
+        craneConfig.setOpenidGroupsClaim("groups");
+        tokenParser = new TokenParser(craneConfig);
+        List<String> names = BenchmarkSupport.names("group", groups);
+        Object claim = switch (claimType) {
+            case "list" -> names;
+            case "string" -> names.stream().map(name -> "\"" + name + "\"").collect(Collectors.joining(",", "[", "]"));
+            default -> throw new IllegalArgumentException(claimType);
+        };
+        claims = Map.of("sub", "user", "groups", claim);
+    }
+
+    @Benchmark
+    public Set<GrantedAuthority> parseAuthorities() {
+        return tokenParser.parseAuthorities(claims);
+    }
+
+}
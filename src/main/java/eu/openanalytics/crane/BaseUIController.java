@@ -22,16 +22,25 @@ package eu.openanalytics.crane;
 
 import eu.openanalytics.crane.config.CraneConfig;
 import eu.openanalytics.crane.service.UserService;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.ui.ModelMap;
+import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
 public class BaseUIController {
 
     protected final UserService userService;
     protected final CraneConfig config;
+    protected final MappingJackson2JsonView jsonView = new MappingJackson2JsonView();
 
     public BaseUIController(UserService userService, CraneConfig craneConfig) {
         this.userService = userService;
         this.config = craneConfig;
+        // only render the model, caching headers are set by the controllers
+        jsonView.setExposePathVariables(false);
+        jsonView.setDisableCaching(false);
     }
 
     protected void prepareMap(ModelMap map) {
@@ -44,4 +53,41 @@ public class BaseUIController {
             map.put("username", userService.getUser().getName());
         }
     }
+
+    /**
+     * @return the path of the resource that was requested, also when the request was forwarded
+     */
+    protected String getResource(HttpServletRequest request) {
+        Object forwardServletPath = request.getAttribute(RequestDispatcher.FORWARD_SERVLET_PATH);
+        if (forwardServletPath != null) {
+            return forwardServletPath.toString();
+        }
+        return request.getServletPath();
+    }
+
+    /**
+     * Used when a response is rendered directly, instead of letting Spring select the handler based on the `produces`
+     * attribute of the mapping.
+     *
+     * @return whether the Accept header prefers HTML over JSON, the default is returned when both are equally acceptable
+     */
+    protected boolean prefersHtml(HttpServletRequest request, boolean defaultValue) {
+        double html = 0;
+        double json = 0;
+        for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader(HttpHeaders.ACCEPT))) {
+            if (mediaType.isWildcardType()) {
+                continue;
+            }
+            if (mediaType.includes(MediaType.TEXT_HTML)) {
+                html = Math.max(html, mediaType.getQualityValue());
+            }
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                json = Math.max(json, mediaType.getQualityValue());
+            }
+        }
+        if (html == json) {
+            return defaultValue;
+        }
+        return html > json;
+    }
 }
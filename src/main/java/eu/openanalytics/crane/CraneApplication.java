@@ -67,6 +67,9 @@ public class CraneApplication {
         properties.put("management.health.redis.enabled", false);
         // enable Kubernetes probes
         properties.put("management.endpoint.health.probes.enabled", true);
+        // the probes only report the state of the application, the checks of external systems (e.g. s3) have to be added explicitly
+        properties.put("management.endpoint.health.group.liveness.include", "livenessState");
+        properties.put("management.endpoint.health.group.readiness.include", "readinessState");
 
         // use in-memory session storage by default. Can be overwritten in application.yml
         properties.put("spring.session.store-type", "none");
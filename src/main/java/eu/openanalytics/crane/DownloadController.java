@@ -20,129 +20,259 @@
  */
 package eu.openanalytics.crane;
 
-import com.google.common.collect.Streams;
+import com.google.common.io.CountingInputStream;
 import eu.openanalytics.crane.config.CraneConfig;
 import eu.openanalytics.crane.model.config.CacheRule;
 import eu.openanalytics.crane.model.config.Repository;
 import eu.openanalytics.crane.model.config.RewriteRule;
+import eu.openanalytics.crane.model.runtime.CranePath;
+import eu.openanalytics.crane.s3.S3PresignService;
+import eu.openanalytics.crane.security.PathTraversalFilter;
+import eu.openanalytics.crane.security.auditing.AbstractAuditingService;
 import eu.openanalytics.crane.security.auditing.AuditingService;
+import eu.openanalytics.crane.statistics.DownloadStatisticsService;
 import eu.openanalytics.crane.service.HandleSpecExpressionService;
+import eu.openanalytics.crane.service.ReadAccessControlService;
+import eu.openanalytics.crane.service.StorageMetrics;
 import eu.openanalytics.crane.service.UserService;
 import eu.openanalytics.crane.service.spel.SpecExpressionContext;
 import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import eu.openanalytics.crane.timing.RequestTimings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.RequestDispatcher;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.tika.Tika;
+import org.carlspring.cloud.storage.s3fs.S3Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.ResourceHttpMessageConverter;
 import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.parameters.P;
-import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Controller
 public class DownloadController {
 
+    private static final int MAX_REWRITES = 10;
+
     private final ResourceHttpMessageConverter resourceHttpMessageConverter = new ResourceHttpMessageConverter();
     private final AuditingService auditingService;
     private final HandleSpecExpressionService handleSpecExpressionService;
     private final CraneConfig craneConfig;
     private final SpecExpressionResolver specExpressionResolver;
     private final UserService userService;
+    private final S3PresignService s3PresignService;
+    private final DownloadStatisticsService downloadStatisticsService;
+    private final StorageMetrics storageMetrics;
+    private final Meter.MeterProvider<Counter> downloadedBytes;
+    private final ReadAccessControlService readAccessControlService;
+    private final IndexPageController indexPageController;
+    private final ErrorsController errorsController;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final AtomicInteger activeDownloads = new AtomicInteger();
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    public DownloadController(AuditingService auditingService, HandleSpecExpressionService handleSpecExpressionService, CraneConfig craneConfig, SpecExpressionResolver specExpressionResolver, UserService userService) {
+    public DownloadController(AuditingService auditingService, HandleSpecExpressionService handleSpecExpressionService, CraneConfig craneConfig, SpecExpressionResolver specExpressionResolver, UserService userService, S3PresignService s3PresignService, DownloadStatisticsService downloadStatisticsService, StorageMetrics storageMetrics, MeterRegistry meterRegistry, ReadAccessControlService readAccessControlService, IndexPageController indexPageController, ErrorsController errorsController) {
         this.auditingService = auditingService;
         this.handleSpecExpressionService = handleSpecExpressionService;
         this.craneConfig = craneConfig;
         this.specExpressionResolver = specExpressionResolver;
         this.userService = userService;
+        this.s3PresignService = s3PresignService;
+        this.downloadStatisticsService = downloadStatisticsService;
+        this.storageMetrics = storageMetrics;
+        this.downloadedBytes = Counter.builder("crane.download.bytes").baseUnit("bytes").withRegistry(meterRegistry);
+        this.readAccessControlService = readAccessControlService;
+        this.indexPageController = indexPageController;
+        this.errorsController = errorsController;
+        Gauge.builder("crane.download.active", activeDownloads, AtomicInteger::get)
+            .description("Number of files currently being served")
+            .register(meterRegistry);
     }
 
     @PreAuthorize("@readAccessControlService.canAccess(#r, #p)")
     @GetMapping("/__file/{repository}/{*path}")
-    public void read(HttpServletRequest request,
-                     HttpServletResponse response,
-                     @P("r") @PathVariable(name = "repository") String stringRepository,
-                     @P("p") @PathVariable(name = "path") String stringPath, RedirectAttributes redirectAttributes) throws ServletException, IOException {
-        Repository repository = craneConfig.getRepository(stringRepository);
-        String relativePath = String.join("/", Streams.stream(Path.of(stringPath).iterator()).map(Path::toString).toList()); // TODO
-        Path path = repository.getStoragePath().resolve(relativePath);
-        if (!stringPath.endsWith("/") && Files.isDirectory(path)) {
-            response.sendRedirect(request.getRequestURI().replaceFirst("/__file", "") + "/");
-            return;
-        }
-        Optional<String> redirect = checkRewriteRules(repository, Path.of(stringPath), request, response);
-        if (redirect.isPresent()) {
-            logger.debug("Rewriting '{}' to '{}'", stringPath, redirect.get());
-            request.getRequestDispatcher("/__file" + redirect.get()).forward(request, response);
-            return;
-        }
-        if (Files.isDirectory(path)) {
+    public ModelAndView read(HttpServletRequest request,
+                             HttpServletResponse response,
+                             @P("r") @PathVariable(name = "repository") String stringRepository,
+                             @P("p") @PathVariable(name = "path") String stringPath, RedirectAttributes redirectAttributes) throws ServletException, IOException {
+        CranePath cranePath = CranePath.forRequest(request, craneConfig.getRepository(stringRepository), stringPath);
+        String requestUri = request.getRequestURI().replaceFirst("/__file", "");
+        Path requestedPath;
+        boolean isDirectory;
+        for (int rewrites = 0; ; rewrites++) {
+            Repository repository = cranePath.getRepository();
+            requestedPath = cranePath.getStoragePath();
+            Path directory = requestedPath;
+            isDirectory = storageMetrics.record(repository, requestedPath, StorageMetrics.Operation.STAT, () -> Files.isDirectory(directory));
+            if (!cranePath.getRequestPath().endsWith("/") && isDirectory) {
+                response.sendRedirect(requestUri + "/");
+                return null;
+            }
+            Optional<String> redirect;
+            try (RequestTimings.Phase ignored = RequestTimings.start("rewrite", repository.getName())) {
+                redirect = checkRewriteRules(cranePath, internalRequest(request, cranePath), response);
+            }
+            if (redirect.isEmpty()) {
+                break;
+            }
+            logger.debug("Rewriting '{}' to '{}'", cranePath.getRequestPath(), redirect.get());
+            if (rewrites >= MAX_REWRITES) {
+                throw new IllegalStateException("Request '%s' was rewritten more than %s times".formatted(request.getRequestURI(), MAX_REWRITES));
+            }
+            requestUri = request.getContextPath() + redirect.get();
+            // audit events use the rewritten path, as if the request was forwarded
+            request.setAttribute(AbstractAuditingService.REQUEST_PATH_ATTRIBUTE, requestUri);
+            cranePath = rewrite(request, redirect.get());
+            if (cranePath == null) {
+                request.setAttribute(RequestDispatcher.ERROR_STATUS_CODE, HttpStatus.NOT_FOUND.value());
+                auditingService.createErrorHandlerAuditEvent(request, HttpStatus.NOT_FOUND);
+                return errorsController.render(request, response);
+            }
+        }
+        Repository repository = cranePath.getRepository();
+        String relativePath = cranePath.getRelativePath();
+        boolean isIndexFile = isDirectory;
+        String filePath = relativePath;
+        Path path = requestedPath;
+        if (isIndexFile) {
             path = path.resolve(repository.getIndexFileName());
+            filePath = relativePath.isEmpty() ? repository.getIndexFileName() : relativePath + "/" + repository.getIndexFileName();
         }
-        if (!Files.exists(path)) {
+        Path file = path;
+        if (!storageMetrics.record(repository, file, StorageMetrics.Operation.STAT, () -> Files.exists(file))) {
             if (path.endsWith(repository.getIndexFileName())) {
                 Path directory = path.getParent();
                 if (Files.isDirectory(directory)) {
-                    request.setAttribute("path", directory);
-                    request.setAttribute("repo", repository);
                     auditingService.createRepositoryHandlerAuditEvent(request);
-                    request.getRequestDispatcher("/__index").forward(request, response);
-                    return;
+                    return indexPageController.render(request, repository, directory);
                 }
             }
 
             request.setAttribute(RequestDispatcher.ERROR_STATUS_CODE, HttpStatus.NOT_FOUND.value());
             auditingService.createErrorHandlerAuditEvent(request, HttpStatus.NOT_FOUND);
-            if (handleSpecExpressionService.handleByOnErrorExpression(repository, request, response, HttpStatus.NOT_FOUND.value())) {
-                return;
+            if (handleSpecExpressionService.handleByOnErrorExpression(repository, internalRequest(request, cranePath), response, HttpStatus.NOT_FOUND.value())) {
+                return null;
             }
-            request.getRequestDispatcher("/error").forward(request, response);
-            return;
+            return errorsController.render(request, response);
+        }
+
+        // index files are always proxied, since relative links in these files would otherwise point to S3
+        if (repository.getDeliveryMode() == Repository.DeliveryMode.PRESIGNED_REDIRECT && !isIndexFile && path instanceof S3Path s3Path) {
+            redirectToPresignedUrl(request, response, cranePath, s3Path);
+            downloadStatisticsService.record(repository.getName(), filePath, 0);
+            return null;
         }
 
-        if (new ServletWebRequest(request, response).checkNotModified(Files.getLastModifiedTime(path).toMillis())) {
-            return;
+        long lastModified = storageMetrics.record(repository, file, StorageMetrics.Operation.STAT, () -> Files.getLastModifiedTime(file).toMillis());
+        if (new ServletWebRequest(request, response).checkNotModified(lastModified)) {
+            return null;
         }
 
         auditingService.createRepositoryHandlerAuditEvent(request);
-        InputStreamResource resource = new InputStreamResource(Files.newInputStream(path));
+        CountingInputStream inputStream = new CountingInputStream(storageMetrics.record(repository, file, StorageMetrics.Operation.OPEN, () -> Files.newInputStream(file)));
+        InputStreamResource resource = new InputStreamResource(inputStream);
 
-        addCachingHeaders(request, response, repository);
+        addCachingHeaders(response, cranePath);
 
         ServletServerHttpResponse outputMessage = new ServletServerHttpResponse(response);
         MediaType mediaType = getMediaType(path);
-        resourceHttpMessageConverter.write(resource, mediaType, outputMessage);
+        activeDownloads.incrementAndGet();
+        try (RequestTimings.Phase ignored = RequestTimings.start("stream", repository.getName())) {
+            resourceHttpMessageConverter.write(resource, mediaType, outputMessage);
+        } finally {
+            activeDownloads.decrementAndGet();
+            downloadedBytes.withTags("repository", repository.getName(), "backend", StorageMetrics.getBackend(path))
+                .increment(inputStream.getCount());
+            downloadStatisticsService.record(repository.getName(), filePath, inputStream.getCount());
+        }
+        return null;
     }
 
-    private void addCachingHeaders(HttpServletRequest request, HttpServletResponse response, Repository repository) {
-        for (Map.Entry<AntPathRequestMatcher, String> cacheRule : computeCacheRules(repository).entrySet()) {
-            if (cacheRule.getKey().matches(request)) {
-                response.setHeader("Cache-Control", cacheRule.getValue());
-                break;
+    /**
+     * Resolves the destination of a rewrite rule (e.g. `/repo/path`) without forwarding the request.
+     * The destination is validated in the same way as an incoming request and authorized again, since it may point
+     * to a different repository.
+     *
+     * @return the path to serve or null when the destination is not a valid path
+     */
+    private CranePath rewrite(HttpServletRequest request, String destination) {
+        List<String> segments = PathTraversalFilter.parseSegments(destination);
+        if (segments == null || segments.isEmpty()) {
+            return null;
+        }
+        String repositoryName = segments.get(0);
+        StringBuilder path = new StringBuilder();
+        for (String segment : segments.subList(1, segments.size())) {
+            path.append('/').append(segment);
+        }
+        if (destination.endsWith("/")) {
+            path.append('/');
+        }
+        if (!readAccessControlService.canAccess(repositoryName, path.toString())) {
+            throw new AccessDeniedException("Access Denied");
+        }
+        return CranePath.forRequest(request, craneConfig.getRepository(repositoryName), path.toString());
+    }
+
+    private void redirectToPresignedUrl(HttpServletRequest request, HttpServletResponse response, CranePath cranePath, S3Path path) throws IOException {
+        Repository repository = cranePath.getRepository();
+        String contentDisposition = null;
+        String filename = request.getParameter("filename");
+        if (filename != null && !filename.isBlank()) {
+            contentDisposition = ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString();
+        }
+        String cacheControl = getCacheControl(cranePath).orElse(null);
+        auditingService.createRepositoryHandlerAuditEvent(request);
+        // anyone holding the presigned URL can use it until it expires, therefore the redirect itself may not be cached
+        // (e.g. by a shared proxy that would hand it to users that are not authorized)
+        response.setHeader("Cache-Control", CacheControl.noStore().getHeaderValue());
+        response.sendRedirect(s3PresignService.presignGetObject(path, repository.getPresignedUrlDuration(), cacheControl, getMediaType(path).toString(), contentDisposition).toString());
+    }
+
+    private void addCachingHeaders(HttpServletResponse response, CranePath path) {
+        getCacheControl(path).ifPresent(cacheControl -> response.setHeader("Cache-Control", cacheControl));
+    }
+
+    private Optional<String> getCacheControl(CranePath path) {
+        // the patterns are matched against the internal path, which includes the (possibly rewritten) repository
+        String internalPath = "/__file/" + path.getRepository().getName() + path.getRequestPath();
+        for (Map.Entry<String, String> cacheRule : computeCacheRules(path.getRepository()).entrySet()) {
+            if (pathMatcher.match(cacheRule.getKey(), internalPath)) {
+                return Optional.of(cacheRule.getValue());
             }
         }
+        return Optional.empty();
     }
 
     private MediaType getMediaType(Path path) {
@@ -151,12 +281,12 @@ public class DownloadController {
         return MediaType.valueOf(mimeType);
     }
 
-    private Map<AntPathRequestMatcher, String> computeCacheRules(Repository repository) {
-        Map<AntPathRequestMatcher, String> cacheRules = new HashMap<>();
+    private Map<String, String> computeCacheRules(Repository repository) {
+        Map<String, String> cacheRules = new HashMap<>();
         if (repository.getCache() != null) {
             for (CacheRule cache : repository.getCache()) {
                 cacheRules.put(
-                    new AntPathRequestMatcher(cache.getPattern()),
+                    cache.getPattern(),
                     CacheControl.maxAge(cache.getMaxAge()).getHeaderValue()
                 );
             }
@@ -164,7 +294,8 @@ public class DownloadController {
         return cacheRules;
     }
 
-    private Optional<String> checkRewriteRules(Repository repository, Path path, HttpServletRequest request, HttpServletResponse response) {
+    private Optional<String> checkRewriteRules(CranePath path, HttpServletRequest request, HttpServletResponse response) {
+        Repository repository = path.getRepository();
         Authentication auth = userService.getUser();
         if (repository.getRewrites() == null) {
             return Optional.empty();
@@ -178,4 +309,39 @@ public class DownloadController {
         return Optional.empty();
     }
 
+    /**
+     * Expressions (e.g. rewrite rules and the on-error expression) see the request URI of the internal endpoint, as
+     * they did when the request was forwarded to it. Therefore, a directly dispatched request is wrapped such that
+     * existing expressions keep working.
+     */
+    private HttpServletRequest internalRequest(HttpServletRequest request, CranePath path) {
+        String servletPath = "/__file/" + path.getRepository().getName() + path.getRequestPath();
+        if (request.getServletPath().equals(servletPath)) {
+            return request;
+        }
+        return new HttpServletRequestWrapper(request) {
+            @Override
+            public String getRequestURI() {
+                return getContextPath() + servletPath;
+            }
+
+            @Override
+            public StringBuffer getRequestURL() {
+                StringBuffer url = new StringBuffer();
+                url.append(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort());
+                return url.append(getRequestURI());
+            }
+
+            @Override
+            public String getServletPath() {
+                return servletPath;
+            }
+
+            @Override
+            public String getPathInfo() {
+                return null;
+            }
+        };
+    }
+
 }
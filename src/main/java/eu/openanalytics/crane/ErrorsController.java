@@ -55,7 +55,7 @@ public class ErrorsController extends BaseUIController implements ErrorControlle
 
         setNoCacheHeader(response);
         map.put("mainPage", ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString());
-        map.put("resource", request.getAttribute(RequestDispatcher.FORWARD_SERVLET_PATH));
+        map.put("resource", getResource(request));
 
         prepareMap(map);
         if (status == HttpStatus.NOT_FOUND.value() || status == HttpStatus.FORBIDDEN.value()) {
@@ -83,10 +83,27 @@ public class ErrorsController extends BaseUIController implements ErrorControlle
         Map<String, Object> resp = new HashMap<>();
         resp.put("status", error);
         resp.put("code", status);
-        resp.put("resource", request.getAttribute(RequestDispatcher.FORWARD_SERVLET_PATH).toString());
+        resp.put("resource", getResource(request));
         return new ResponseEntity<>(resp, HttpStatus.valueOf(status));
     }
 
+    /**
+     * Renders the error page directly, i.e. without forwarding the request to `/error`.
+     * The status must be stored in the {@link RequestDispatcher#ERROR_STATUS_CODE} attribute of the request.
+     */
+    public ModelAndView render(HttpServletRequest request, HttpServletResponse response) {
+        if (request.getMethod().equals(HttpMethod.GET.name()) && prefersHtml(request, false)) {
+            ModelMap map = new ModelMap();
+            ModelAndView modelAndView = handleErrorAsHtml(request, response, map, null);
+            modelAndView.addAllObjects(map);
+            return modelAndView;
+        }
+        ResponseEntity<Map<String, Object>> error = handleError(request, response);
+        ModelAndView modelAndView = new ModelAndView(jsonView, error.getBody());
+        modelAndView.setStatus(error.getStatusCode());
+        return modelAndView;
+    }
+
     @RequestMapping(value = "/logout-success", method = RequestMethod.GET)
     public String getLogoutSuccessPage(HttpServletResponse response, ModelMap map) {
         setNoCacheHeader(response);
@@ -38,9 +38,11 @@ import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.ModelAndView;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -65,12 +67,7 @@ public class IndexPageController extends BaseUIController {
             return null;
         }
 
-        String resource = (String) request.getAttribute(RequestDispatcher.FORWARD_SERVLET_PATH);
-        resource = resource.replace(repo.getIndexFileName(), "");
-        prepareMap(map);
-        map.put("resource", resource);
-        map.putAll(indexPageService.getTemplateVariables(repo, path));
-        return indexPageService.getTemplateName(repo);
+        return prepareIndexPage(map, request, repo, path);
     }
 
     @ResponseBody
@@ -84,9 +81,40 @@ public class IndexPageController extends BaseUIController {
             request.getRequestDispatcher("/error").forward(request, response);
             return null;
         }
+        return ApiResponse.success(getJsonVariables(repo, path, csrfToken));
+    }
+
+    /**
+     * Renders the index page of a directory directly, i.e. without forwarding the request to `/__index`.
+     */
+    public ModelAndView render(HttpServletRequest request, Repository repo, Path path) throws IOException {
+        if (prefersHtml(request, true)) {
+            ModelMap map = new ModelMap();
+            String templateName = prepareIndexPage(map, request, repo, path);
+            return new ModelAndView(templateName, map);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "success");
+        body.put("data", getJsonVariables(repo, path, (CsrfToken) request.getAttribute(CsrfToken.class.getName())));
+        return new ModelAndView(jsonView, body);
+    }
+
+    private String prepareIndexPage(ModelMap map, HttpServletRequest request, Repository repo, Path path) throws IOException {
+        String resource = getResource(request);
+        resource = resource.replace(repo.getIndexFileName(), "");
+        prepareMap(map);
+        map.put("resource", resource);
+        map.putAll(indexPageService.getTemplateVariables(repo, path));
+        return indexPageService.getTemplateName(repo);
+    }
+
+    private Map<String, Object> getJsonVariables(Repository repo, Path path, CsrfToken csrfToken) throws IOException {
         Map<String, Object> variables = indexPageService.getTemplateVariables(repo, path);
         variables.keySet().retainAll(List.of("directories", "files"));
-        variables.put(csrfToken.getHeaderName(), csrfToken.getToken());
-        return ApiResponse.success(variables);
+        if (csrfToken != null) {
+            // not available when the request is handled by the stateless filter chain
+            variables.put(csrfToken.getHeaderName(), csrfToken.getToken());
+        }
+        return variables;
     }
 }
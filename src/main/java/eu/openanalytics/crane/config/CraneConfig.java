@@ -20,13 +20,30 @@
  */
 package eu.openanalytics.crane.config;
 
+import eu.openanalytics.crane.model.config.AuditAggregation;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import eu.openanalytics.crane.model.config.AuditRedis;
+import eu.openanalytics.crane.model.config.AuthorizedClientCache;
 import eu.openanalytics.crane.model.config.CacheRule;
+import eu.openanalytics.crane.model.config.DownloadStatistics;
+import eu.openanalytics.crane.model.config.JwtCache;
+import eu.openanalytics.crane.model.config.OidcMetadata;
 import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.config.S3ClientOptions;
+import eu.openanalytics.crane.model.config.S3Hedging;
+import eu.openanalytics.crane.s3.CraneS3Factory;
+import eu.openanalytics.crane.s3.S3ClientManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.carlspring.cloud.storage.s3fs.S3Factory;
 import org.carlspring.cloud.storage.s3fs.S3FileSystem;
+import org.carlspring.cloud.storage.s3fs.S3FileSystemProvider;
+import org.carlspring.cloud.storage.s3fs.S3Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.core.env.Environment;
@@ -65,11 +82,18 @@ public class CraneConfig {
     @Autowired
     private Environment environment;
 
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
     private static final String OIDC_METADATA_PATH = "/.well-known/openid-configuration";
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private String storageLocation;
     private String auditLogging;
     private Path auditLoggingPath;
+    private AuditLoggingOptions auditLoggingOptions = new AuditLoggingOptions();
+    private AuditAggregation auditAggregation = new AuditAggregation();
+    private AuditRedis auditRedis = new AuditRedis();
+    private DownloadStatistics downloadStatistics = new DownloadStatistics();
     private String openidIssuerUri;
     private String openidLogoutUrl;
     private String openidGroupsClaim;
@@ -80,12 +104,19 @@ public class CraneConfig {
     private Map<String, Repository> repositories = new HashMap<>();
     private Path root;
     private boolean onlyPublic;
+    private boolean serverTiming;
 
     private List<CacheRule> defaultCache;
     private StsClient stsClient;
     private String callerIdentityArn;
     private String openidPosixUIDClaim;
     private String openidPosixGIDSClaim;
+    private S3Hedging s3Hedging = new S3Hedging();
+    private JwtCache jwtCache = new JwtCache();
+    private OidcMetadata oidcMetadata = new OidcMetadata();
+    private AuthorizedClientCache authorizedClientCache = new AuthorizedClientCache();
+    private S3ClientOptions s3Client = new S3ClientOptions();
+    private S3ClientManager s3ClientManager;
 
     public Path getRoot() {
         return root;
@@ -115,6 +146,10 @@ public class CraneConfig {
             auditLoggingPath = fs.getPath(new URI(auditLogging).getPath());
         }
 
+        s3Hedging.validate();
+        s3ClientManager = new S3ClientManager(s3Client, s3Hedging, s3Endpoint, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        CraneS3Factory.configure(s3ClientManager);
+
         root = storageLocationToPath(storageLocation);
 
         repositories.values().forEach(r -> r.validate(onlyPublic));
@@ -129,6 +164,12 @@ public class CraneConfig {
             } else {
                 r.setStoragePath(storageLocationToPath(validateRepositoryStorageLocation(r.getStorageLocation(), r.getName())));
             }
+            if (r.getDeliveryMode() == Repository.DeliveryMode.PRESIGNED_REDIRECT && !(r.getStoragePath() instanceof S3Path)) {
+                throw new IllegalArgumentException(String.format("Incorrect configuration detected: app.repositories[%s].delivery-mode presigned-redirect requires an S3 storage location", r.getName()));
+            }
+            if (r.hasPresignedUploads() && !(r.getStoragePath() instanceof S3Path)) {
+                throw new IllegalArgumentException(String.format("Incorrect configuration detected: app.repositories[%s].presigned-uploads requires an S3 storage location", r.getName()));
+            }
         }
         close();
     }
@@ -139,6 +180,13 @@ public class CraneConfig {
         }
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (s3ClientManager != null) {
+            s3ClientManager.close();
+        }
+    }
+
     private Path storageLocationToPath(String storageLocation) throws URISyntaxException {
         if (storageLocation.startsWith("s3://")) {
             checkStsAuthentication();
@@ -149,6 +197,7 @@ public class CraneConfig {
 
             final Map<String, String> env = new HashMap<>();
             env.put(S3Factory.PROTOCOL, s3Endpoint.getScheme());
+            env.put(S3FileSystemProvider.S3_FACTORY_CLASS, CraneS3Factory.class.getName());
 
             URI uri = new URI(storageLocation);
             String path = new URI("/" + uri.getAuthority() + uri.getPath()).getPath();
@@ -351,6 +400,14 @@ public class CraneConfig {
         return auditLoggingPath;
     }
 
+    public AuditLoggingOptions getAuditLoggingOptions() {
+        return auditLoggingOptions;
+    }
+
+    public void setAuditLoggingOptions(AuditLoggingOptions auditLoggingOptions) {
+        this.auditLoggingOptions = auditLoggingOptions;
+    }
+
     public String getOpenidPosixUIDClaim() {
         return openidPosixUIDClaim;
     }
@@ -379,6 +436,74 @@ public class CraneConfig {
         return false;
     }
 
+    public AuditAggregation getAuditAggregation() {
+        return auditAggregation;
+    }
+
+    public void setAuditAggregation(AuditAggregation auditAggregation) {
+        this.auditAggregation = auditAggregation;
+    }
+
+    public AuditRedis getAuditRedis() {
+        return auditRedis;
+    }
+
+    public void setAuditRedis(AuditRedis auditRedis) {
+        this.auditRedis = auditRedis;
+    }
+
+    public DownloadStatistics getDownloadStatistics() {
+        return downloadStatistics;
+    }
+
+    public void setDownloadStatistics(DownloadStatistics downloadStatistics) {
+        this.downloadStatistics = downloadStatistics;
+    }
+
+    public S3Hedging getS3Hedging() {
+        return s3Hedging;
+    }
+
+    public void setS3Hedging(S3Hedging s3Hedging) {
+        this.s3Hedging = s3Hedging;
+    }
+
+    public JwtCache getJwtCache() {
+        return jwtCache;
+    }
+
+    public void setJwtCache(JwtCache jwtCache) {
+        this.jwtCache = jwtCache;
+    }
+
+    public OidcMetadata getOidcMetadata() {
+        return oidcMetadata;
+    }
+
+    public void setOidcMetadata(OidcMetadata oidcMetadata) {
+        this.oidcMetadata = oidcMetadata;
+    }
+
+    public AuthorizedClientCache getAuthorizedClientCache() {
+        return authorizedClientCache;
+    }
+
+    public void setAuthorizedClientCache(AuthorizedClientCache authorizedClientCache) {
+        this.authorizedClientCache = authorizedClientCache;
+    }
+
+    public S3ClientOptions getS3Client() {
+        return s3Client;
+    }
+
+    public void setS3Client(S3ClientOptions s3Client) {
+        this.s3Client = s3Client;
+    }
+
+    public S3ClientManager getS3ClientManager() {
+        return s3ClientManager;
+    }
+
     public void setOnlyPublic(boolean onlyPublic) {
         this.onlyPublic = onlyPublic;
     }
@@ -386,4 +511,12 @@ public class CraneConfig {
     public boolean isOnlyPublic() {
         return onlyPublic;
     }
+
+    public boolean isServerTiming() {
+        return serverTiming;
+    }
+
+    public void setServerTiming(boolean serverTiming) {
+        this.serverTiming = serverTiming;
+    }
 }
@@ -0,0 +1,67 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+/**
+ * Handler mapping for requests to a repository (i.e. `/{repository}/**`).
+ * The handler methods of the internal `/__file/{repository}/{*path}` endpoint are registered for
+ * `/{repository}/{*path}`, such that repository requests are matched (using the original path of the request) to these
+ * handler methods without forwarding the request.
+ */
+public class RepositoryHandlerMapping extends RequestMappingHandlerMapping {
+
+    private static final String INTERNAL_PATTERN = "/__file/{repository}/{*path}";
+    private static final String REPOSITORY_PATTERN = "/{repository}/{*path}";
+
+    private final RepositoryRouter router;
+    private final RequestMappingHandlerMapping requestMappingHandlerMapping;
+
+    public RepositoryHandlerMapping(RepositoryRouter router, RequestMappingHandlerMapping requestMappingHandlerMapping) {
+        this.router = router;
+        this.requestMappingHandlerMapping = requestMappingHandlerMapping;
+        setContentNegotiationManager(requestMappingHandlerMapping.getContentNegotiationManager());
+    }
+
+    /**
+     * Instead of detecting the controllers, only the handler methods of the internal endpoint are registered.
+     */
+    @Override
+    protected void initHandlerMethods() {
+        requestMappingHandlerMapping.getHandlerMethods().forEach((mapping, handlerMethod) -> {
+            if (mapping.getPatternValues().contains(INTERNAL_PATTERN)) {
+                registerMapping(mapping.mutate().paths(REPOSITORY_PATTERN).build(), handlerMethod.getBean(), handlerMethod.getMethod());
+            }
+        });
+    }
+
+    @Override
+    protected HandlerMethod getHandlerInternal(HttpServletRequest request) throws Exception {
+        if (router.route(request) == null) {
+            return null;
+        }
+        return super.getHandlerInternal(request);
+    }
+
+}
@@ -20,36 +20,39 @@
  */
 package eu.openanalytics.crane.config;
 
-import eu.openanalytics.crane.model.config.Repository;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.HttpRequestHandler;
-import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
-import org.springframework.web.util.UrlPathHelper;
-
-import java.util.LinkedHashMap;
-import java.util.Map;
+import org.springframework.format.support.FormattingConversionService;
+import org.springframework.web.servlet.handler.ConversionServiceExposingInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+import org.springframework.web.servlet.resource.ResourceUrlProviderExposingInterceptor;
 
 @Configuration
 public class RepositoryHostingConfig {
 
     private final CraneConfig config;
-    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
 
     public RepositoryHostingConfig(CraneConfig config) {
         this.config = config;
     }
 
     @Bean
-    public SimpleUrlHandlerMapping handler() {
-        Map<String, HttpRequestHandler> urlMap = new LinkedHashMap<>();
-
-        for (Repository repository : config.getRepositories()) {
-            urlMap.put(String.format("/%s/**", repository.getName()), (request, response) ->
-                    request.getRequestDispatcher("/__file" + urlPathHelper.getPathWithinApplication(request)).forward(request, response));
-        }
+    public RepositoryRouter repositoryRouter() {
+        return new RepositoryRouter(config.getRepositories());
+    }
 
-        return new SimpleUrlHandlerMapping(urlMap);
+    @Bean
+    public RepositoryHandlerMapping handler(RepositoryRouter repositoryRouter,
+                                            @Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping requestMappingHandlerMapping,
+                                            @Qualifier("mvcConversionService") FormattingConversionService conversionService,
+                                            @Qualifier("mvcResourceUrlProvider") ResourceUrlProvider resourceUrlProvider) {
+        RepositoryHandlerMapping handlerMapping = new RepositoryHandlerMapping(repositoryRouter, requestMappingHandlerMapping);
+        // the interceptors that @EnableWebMvc adds to its own handler mappings, the MappedInterceptor beans are detected
+        // by the handler mapping itself
+        handlerMapping.setInterceptors(new ConversionServiceExposingInterceptor(conversionService), new ResourceUrlProviderExposingInterceptor(resourceUrlProvider));
+        return handlerMapping;
     }
 
 }
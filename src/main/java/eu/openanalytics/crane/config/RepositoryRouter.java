@@ -0,0 +1,99 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.config;
+
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.security.PathTraversalFilter;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the repository of a request (i.e. `/{repository}/**`) using the first segment of the path and a single
+ * hash lookup, instead of matching the request against a pattern per repository.
+ * The router is shared by the security configuration and the {@link RepositoryHandlerMapping}, the result is cached on
+ * the request such that the path is only inspected once.
+ */
+public class RepositoryRouter {
+
+    private static final String ROUTE_ATTRIBUTE = RepositoryRouter.class.getName() + ".ROUTE";
+
+    private final Map<String, Repository> repositories;
+    private final RequestMatcher requestMatcher = request -> route(request) != null;
+
+    public RepositoryRouter(Collection<Repository> repositories) {
+        Map<String, Repository> map = new HashMap<>();
+        for (Repository repository : repositories) {
+            map.put(repository.getName(), repository);
+        }
+        this.repositories = Map.copyOf(map);
+    }
+
+    /**
+     * @return the repository the request is sent to or null when the request is not a repository request
+     */
+    public Repository route(HttpServletRequest request) {
+        String requestUri = request.getRequestURI();
+        if (request.getAttribute(ROUTE_ATTRIBUTE) instanceof Route route && route.requestUri.equals(requestUri)) {
+            return route.repository;
+        }
+        Repository repository = repositories.get(getFirstSegment(request, requestUri));
+        request.setAttribute(ROUTE_ATTRIBUTE, new Route(requestUri, repository));
+        return repository;
+    }
+
+    /**
+     * @return the repository with the given name or null when no such repository exists
+     */
+    public Repository getRepository(String name) {
+        return repositories.get(name);
+    }
+
+    /**
+     * @return a {@link RequestMatcher} that matches all requests to a repository
+     */
+    public RequestMatcher getRequestMatcher() {
+        return requestMatcher;
+    }
+
+    private String getFirstSegment(HttpServletRequest request, String requestUri) {
+        // re-use the segments parsed by the PathTraversalFilter, these belong to the original request (not to a forward)
+        List<String> segments = PathTraversalFilter.getPathSegments(request);
+        if (segments != null && request.getDispatcherType() == DispatcherType.REQUEST) {
+            return segments.isEmpty() ? "" : segments.get(0);
+        }
+        int start = request.getContextPath().length() + 1;
+        if (start > requestUri.length()) {
+            return "";
+        }
+        int end = requestUri.indexOf('/', start);
+        return end == -1 ? requestUri.substring(start) : requestUri.substring(start, end);
+    }
+
+    private record Route(String requestUri, Repository repository) {
+    }
+
+}
@@ -20,13 +20,22 @@
  */
 package eu.openanalytics.crane.config;
 
+import eu.openanalytics.crane.timing.RequestTimingFilter;
+import eu.openanalytics.crane.timing.RequestTimings;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.MappedInterceptor;
 import org.springframework.web.servlet.resource.ResourceResolver;
 import org.springframework.web.servlet.resource.ResourceResolverChain;
 
@@ -38,6 +47,42 @@ import java.util.List;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private final CraneConfig craneConfig;
+
+    public WebConfig(CraneConfig craneConfig) {
+        this.craneConfig = craneConfig;
+    }
+
+    /**
+     * Registers the {@link RequestTimingFilter} just before the security filters, such that the time spent in these
+     * filters is included.
+     */
+    @Bean
+    public FilterRegistrationBean<RequestTimingFilter> requestTimingFilter() {
+        FilterRegistrationBean<RequestTimingFilter> registration = new FilterRegistrationBean<>(new RequestTimingFilter(craneConfig.isServerTiming()));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        registration.setDispatcherTypes(DispatcherType.REQUEST);
+        return registration;
+    }
+
+    /**
+     * Registered as {@link MappedInterceptor} (instead of using addInterceptors), such that every handler mapping picks
+     * it up, including the {@link RepositoryHandlerMapping}.
+     */
+    @Bean
+    public MappedInterceptor requestTimingInterceptor() {
+        return new MappedInterceptor(null, new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(@Nonnull HttpServletRequest request, @Nonnull HttpServletResponse response, @Nonnull Object handler) {
+                RequestTimings timings = RequestTimings.get(request);
+                if (timings != null) {
+                    timings.endSecurityPhase();
+                }
+                return true;
+            }
+        });
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         LoadInMemoryResolver resolver = new LoadInMemoryResolver();
@@ -0,0 +1,94 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Configuration of the aggregation of audit events (`app.audit-aggregation`).
+ * Events matching the rule are not recorded individually, instead one summary event (containing the number of
+ * events) is recorded per window for every combination of type, principal, repository, path and status.
+ */
+public class AuditAggregation {
+
+    /**
+     * Security relevant events are always recorded individually.
+     */
+    public static final Set<String> NEVER_AGGREGATED = Set.of("AUTHORIZATION_FAILURE", "UPLOAD", "LOGOUT");
+
+    private boolean enabled = false;
+    private Duration window = Duration.ofMinutes(1);
+    private List<String> types = new ArrayList<>(List.of("REPOSITORY_HANDLER"));
+    private boolean anonymousOnly = true;
+    private boolean publicRepositoriesOnly = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-aggregation.window must be positive");
+        }
+        this.window = window;
+    }
+
+    public List<String> getTypes() {
+        return types;
+    }
+
+    public void setTypes(List<String> types) {
+        for (String type : types) {
+            if (NEVER_AGGREGATED.contains(type)) {
+                throw new IllegalArgumentException(String.format("Incorrect configuration detected: app.audit-aggregation.types cannot contain %s", type));
+            }
+        }
+        this.types = types;
+    }
+
+    public boolean isAnonymousOnly() {
+        return anonymousOnly;
+    }
+
+    public void setAnonymousOnly(boolean anonymousOnly) {
+        this.anonymousOnly = anonymousOnly;
+    }
+
+    public boolean isPublicRepositoriesOnly() {
+        return publicRepositoriesOnly;
+    }
+
+    public void setPublicRepositoriesOnly(boolean publicRepositoriesOnly) {
+        this.publicRepositoriesOnly = publicRepositoriesOnly;
+    }
+
+}
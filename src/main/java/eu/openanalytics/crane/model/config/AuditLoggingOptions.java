@@ -0,0 +1,210 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the asynchronous audit log writer (`app.audit-logging-options`).
+ */
+public class AuditLoggingOptions {
+
+    private int queueCapacity = 65_536;
+    private Durability durability = Durability.FLUSH;
+    private BackpressurePolicy backpressure = BackpressurePolicy.BLOCK;
+    private Duration flushInterval = Duration.ofSeconds(1);
+    private int maxBatchSize = 1024;
+    private DataSize bufferSize = DataSize.ofKilobytes(64);
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+    private Duration segmentMaxAge;
+    private Compression compression = Compression.GZIP;
+    private Encoding encoding = Encoding.JSON;
+    private Duration retentionMaxAge;
+    private DataSize retentionMaxSize;
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-logging-options.queue-capacity must be at least 1");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    public BackpressurePolicy getBackpressure() {
+        return backpressure;
+    }
+
+    public void setBackpressure(BackpressurePolicy backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-logging-options.flush-interval must be positive");
+        }
+        this.flushInterval = flushInterval;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-logging-options.max-batch-size must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public DataSize getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(DataSize bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public DataSize getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+        if (segmentSize.toBytes() < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-logging-options.segment-size must be positive");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    public Duration getSegmentMaxAge() {
+        return segmentMaxAge;
+    }
+
+    public void setSegmentMaxAge(Duration segmentMaxAge) {
+        if (segmentMaxAge != null && (segmentMaxAge.isNegative() || segmentMaxAge.isZero())) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-logging-options.segment-max-age must be positive");
+        }
+        this.segmentMaxAge = segmentMaxAge;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    public Duration getRetentionMaxAge() {
+        return retentionMaxAge;
+    }
+
+    public void setRetentionMaxAge(Duration retentionMaxAge) {
+        if (retentionMaxAge != null && (retentionMaxAge.isNegative() || retentionMaxAge.isZero())) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-logging-options.retention-max-age must be positive");
+        }
+        this.retentionMaxAge = retentionMaxAge;
+    }
+
+    public DataSize getRetentionMaxSize() {
+        return retentionMaxSize;
+    }
+
+    public void setRetentionMaxSize(DataSize retentionMaxSize) {
+        if (retentionMaxSize != null && retentionMaxSize.toBytes() < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-logging-options.retention-max-size must be positive");
+        }
+        this.retentionMaxSize = retentionMaxSize;
+    }
+
+    public enum Durability {
+        /**
+         * Events are written when the buffer is full or when the flush-interval elapsed.
+         */
+        NONE,
+        /**
+         * Events are handed to the operating system as soon as the queue is drained (or max-batch-size is reached).
+         */
+        FLUSH,
+        /**
+         * Like FLUSH, but additionally waits until the events are persisted on disk.
+         */
+        FSYNC
+    }
+
+    public enum BackpressurePolicy {
+        /**
+         * Request threads wait until there is room in the queue.
+         */
+        BLOCK,
+        /**
+         * Events are dropped when the queue is full.
+         */
+        DROP
+    }
+
+    public enum Compression {
+        /**
+         * Closed segments are kept as plain JSON lines.
+         */
+        NONE,
+        /**
+         * Closed segments are compressed using gzip by a background thread.
+         */
+        GZIP
+    }
+
+    public enum Encoding {
+        /**
+         * Every event is written as a line of JSON.
+         */
+        JSON,
+        /**
+         * Compact length-prefixed binary records, using a dictionary for repeated strings.
+         */
+        BINARY
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+/**
+ * Configuration of the Redis Streams audit backend (`app.audit-redis`).
+ * The connection to Redis is configured using the `spring.data.redis` properties.
+ */
+public class AuditRedis {
+
+    private boolean enabled = false;
+    private String streamKey = "crane:audit-events";
+    private long maxLength = 10_000_000;
+    private int queryBatchSize = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getStreamKey() {
+        return streamKey;
+    }
+
+    public void setStreamKey(String streamKey) {
+        this.streamKey = streamKey;
+    }
+
+    public long getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(long maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-redis.max-length must be at least 1");
+        }
+        this.maxLength = maxLength;
+    }
+
+    public int getQueryBatchSize() {
+        return queryBatchSize;
+    }
+
+    public void setQueryBatchSize(int queryBatchSize) {
+        if (queryBatchSize < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.audit-redis.query-batch-size must be at least 1");
+        }
+        this.queryBatchSize = queryBatchSize;
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the local cache in front of the OAuth2 authorized clients stored in Redis
+ * (`app.authorized-client-cache`).
+ * A client is kept until its access token expires, with an upper bound of `max-ttl`. When a client is saved or removed,
+ * the other replicas are notified (using Redis pub/sub) to evict their copy. Pub/sub does not guarantee delivery: when
+ * the message is lost (e.g. after a logout), another replica keeps using its copy of the client until `max-ttl`
+ * expires. Therefore, `max-ttl` should be kept low.
+ */
+public class AuthorizedClientCache {
+
+    private boolean enabled = true;
+    private long maximumSize = 10_000;
+    private Duration maxTtl = Duration.ofMinutes(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.authorized-client-cache.maximum-size must be positive");
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getMaxTtl() {
+        return maxTtl;
+    }
+
+    public void setMaxTtl(Duration maxTtl) {
+        if (maxTtl.isNegative() || maxTtl.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.authorized-client-cache.max-ttl must be positive");
+        }
+        this.maxTtl = maxTtl;
+    }
+
+}
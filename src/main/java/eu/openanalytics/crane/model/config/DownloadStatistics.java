@@ -0,0 +1,108 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the download statistics (`app.download-statistics`).
+ * The statistics are persisted in Redis when Redis is used for the sessions, otherwise in the file configured using
+ * `storage-location` (when set).
+ */
+public class DownloadStatistics {
+
+    private boolean enabled = false;
+    private String storageLocation;
+    private String redisKeyPrefix = "crane:download-statistics";
+    private Duration snapshotInterval = Duration.ofMinutes(1);
+    private Duration bucketDuration = Duration.ofHours(1);
+    private int bucketCount = 168;
+    private int maxTrackedFiles = 100_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getStorageLocation() {
+        return storageLocation;
+    }
+
+    public void setStorageLocation(String storageLocation) {
+        this.storageLocation = storageLocation;
+    }
+
+    public String getRedisKeyPrefix() {
+        return redisKeyPrefix;
+    }
+
+    public void setRedisKeyPrefix(String redisKeyPrefix) {
+        this.redisKeyPrefix = redisKeyPrefix;
+    }
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(Duration snapshotInterval) {
+        if (snapshotInterval.isNegative() || snapshotInterval.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.download-statistics.snapshot-interval must be positive");
+        }
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public Duration getBucketDuration() {
+        return bucketDuration;
+    }
+
+    public void setBucketDuration(Duration bucketDuration) {
+        if (bucketDuration.toMillis() < 1000) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.download-statistics.bucket-duration must be at least one second");
+        }
+        this.bucketDuration = bucketDuration;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    public void setBucketCount(int bucketCount) {
+        if (bucketCount < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.download-statistics.bucket-count must be at least 1");
+        }
+        this.bucketCount = bucketCount;
+    }
+
+    public int getMaxTrackedFiles() {
+        return maxTrackedFiles;
+    }
+
+    public void setMaxTrackedFiles(int maxTrackedFiles) {
+        if (maxTrackedFiles < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.download-statistics.max-tracked-files must be at least 1");
+        }
+        this.maxTrackedFiles = maxTrackedFiles;
+    }
+
+}
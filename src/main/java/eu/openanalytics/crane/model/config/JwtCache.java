@@ -0,0 +1,66 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the cache of authenticated bearer tokens (`app.jwt-cache`).
+ * A token is only decoded and verified the first time it's used, afterward the converted authentication is re-used
+ * until the token expires, with an upper bound of `max-ttl`.
+ */
+public class JwtCache {
+
+    private boolean enabled = true;
+    private long maximumSize = 10_000;
+    private Duration maxTtl = Duration.ofHours(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.jwt-cache.maximum-size must be positive");
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getMaxTtl() {
+        return maxTtl;
+    }
+
+    public void setMaxTtl(Duration maxTtl) {
+        if (maxTtl.isNegative() || maxTtl.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.jwt-cache.max-ttl must be positive");
+        }
+        this.maxTtl = maxTtl;
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the background fetching of the OpenID metadata and JSON Web Key Set (`app.oidc-metadata`).
+ * The startup waits at most `startup-wait` for the initial fetch, the keys are refreshed every `refresh-interval`
+ * and a token signed with an unknown key causes a new fetch at most once every `min-refetch-interval`.
+ */
+public class OidcMetadata {
+
+    private Duration startupWait = Duration.ofSeconds(5);
+    private Duration refreshInterval = Duration.ofMinutes(5);
+    private Duration minRefetchInterval = Duration.ofSeconds(30);
+    private Duration fetchTimeout = Duration.ofSeconds(10);
+
+    public Duration getStartupWait() {
+        return startupWait;
+    }
+
+    public void setStartupWait(Duration startupWait) {
+        if (startupWait.isNegative()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.oidc-metadata.startup-wait must be positive");
+        }
+        this.startupWait = startupWait;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.oidc-metadata.refresh-interval must be positive");
+        }
+        this.refreshInterval = refreshInterval;
+    }
+
+    public Duration getMinRefetchInterval() {
+        return minRefetchInterval;
+    }
+
+    public void setMinRefetchInterval(Duration minRefetchInterval) {
+        if (minRefetchInterval.isNegative()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.oidc-metadata.min-refetch-interval must be positive");
+        }
+        this.minRefetchInterval = minRefetchInterval;
+    }
+
+    public Duration getFetchTimeout() {
+        return fetchTimeout;
+    }
+
+    public void setFetchTimeout(Duration fetchTimeout) {
+        if (fetchTimeout.isNegative() || fetchTimeout.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.oidc-metadata.fetch-timeout must be positive");
+        }
+        this.fetchTimeout = fetchTimeout;
+    }
+
+}
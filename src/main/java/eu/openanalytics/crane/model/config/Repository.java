@@ -21,6 +21,7 @@
 package eu.openanalytics.crane.model.config;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -33,6 +34,12 @@ public class Repository extends PathComponent {
     private String onErrorExpression;
     private boolean posixAccessControl;
     private List<RewriteRule> rewrites;
+    private DeliveryMode deliveryMode = DeliveryMode.PROXY;
+    private Duration presignedUrlDuration = Duration.ofMinutes(1);
+    private boolean presignedUploads;
+    // all part URLs of a multipart upload are created upfront, therefore they must remain valid until the last part is uploaded
+    private Duration presignedUploadUrlDuration = Duration.ofHours(1);
+    private S3Upload s3Upload;
 
     public String getIndexFileName() {
         return indexFileName;
@@ -122,4 +129,69 @@ public class Repository extends PathComponent {
     public void setRewrites(List<RewriteRule> redirects) {
         this.rewrites = redirects;
     }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public void setDeliveryMode(DeliveryMode deliveryMode) {
+        this.deliveryMode = deliveryMode;
+    }
+
+    public Duration getPresignedUrlDuration() {
+        return presignedUrlDuration;
+    }
+
+    public void setPresignedUrlDuration(Duration presignedUrlDuration) {
+        if (presignedUrlDuration.isNegative() || presignedUrlDuration.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: the presigned-url-duration of a repository must be positive");
+        }
+        // S3 does not accept presigned URLs that are valid for more than 7 days
+        if (presignedUrlDuration.compareTo(Duration.ofDays(7)) > 0) {
+            throw new IllegalArgumentException("Incorrect configuration detected: the presigned-url-duration of a repository may not be greater than 7 days");
+        }
+        this.presignedUrlDuration = presignedUrlDuration;
+    }
+
+    public boolean hasPresignedUploads() {
+        return presignedUploads;
+    }
+
+    public void setPresignedUploads(boolean presignedUploads) {
+        this.presignedUploads = presignedUploads;
+    }
+
+    public Duration getPresignedUploadUrlDuration() {
+        return presignedUploadUrlDuration;
+    }
+
+    public void setPresignedUploadUrlDuration(Duration presignedUploadUrlDuration) {
+        if (presignedUploadUrlDuration.isNegative() || presignedUploadUrlDuration.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: the presigned-upload-url-duration of a repository must be positive");
+        }
+        // S3 does not accept presigned URLs that are valid for more than 7 days
+        if (presignedUploadUrlDuration.compareTo(Duration.ofDays(7)) > 0) {
+            throw new IllegalArgumentException("Incorrect configuration detected: the presigned-upload-url-duration of a repository may not be greater than 7 days");
+        }
+        this.presignedUploadUrlDuration = presignedUploadUrlDuration;
+    }
+
+    public S3Upload getS3Upload() {
+        return s3Upload;
+    }
+
+    public void setS3Upload(S3Upload s3Upload) {
+        this.s3Upload = s3Upload;
+    }
+
+    public enum DeliveryMode {
+        /**
+         * The content of files is streamed by Crane.
+         */
+        PROXY,
+        /**
+         * After authorization, Crane redirects to a short-lived presigned S3 URL (only for S3 storage locations).
+         */
+        PRESIGNED_REDIRECT
+    }
 }
@@ -0,0 +1,104 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the S3 clients shared by downloads, listings and uploads (`app.s3-client`).
+ */
+public class S3ClientOptions {
+
+    private int maxConnections = 200;
+    private Duration connectionTimeout = Duration.ofSeconds(2);
+    private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+    private Duration socketTimeout = Duration.ofSeconds(30);
+    private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+    private boolean tcpKeepAlive = true;
+    private Duration healthCheckInterval = Duration.ofSeconds(30);
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.s3-client.max-connections must be at least 1");
+        }
+        this.maxConnections = maxConnections;
+    }
+
+    public Duration getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(Duration connectionTimeout) {
+        this.connectionTimeout = requirePositive(connectionTimeout, "connection-timeout");
+    }
+
+    public Duration getConnectionAcquisitionTimeout() {
+        return connectionAcquisitionTimeout;
+    }
+
+    public void setConnectionAcquisitionTimeout(Duration connectionAcquisitionTimeout) {
+        this.connectionAcquisitionTimeout = requirePositive(connectionAcquisitionTimeout, "connection-acquisition-timeout");
+    }
+
+    public Duration getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(Duration socketTimeout) {
+        this.socketTimeout = requirePositive(socketTimeout, "socket-timeout");
+    }
+
+    public Duration getConnectionMaxIdleTime() {
+        return connectionMaxIdleTime;
+    }
+
+    public void setConnectionMaxIdleTime(Duration connectionMaxIdleTime) {
+        this.connectionMaxIdleTime = requirePositive(connectionMaxIdleTime, "connection-max-idle-time");
+    }
+
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    public void setTcpKeepAlive(boolean tcpKeepAlive) {
+        this.tcpKeepAlive = tcpKeepAlive;
+    }
+
+    public Duration getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(Duration healthCheckInterval) {
+        this.healthCheckInterval = requirePositive(healthCheckInterval, "health-check-interval");
+    }
+
+    private Duration requirePositive(Duration duration, String option) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException(String.format("Incorrect configuration detected: app.s3-client.%s must be positive", option));
+        }
+        return duration;
+    }
+
+}
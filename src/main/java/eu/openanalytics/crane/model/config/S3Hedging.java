@@ -0,0 +1,105 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import java.time.Duration;
+
+/**
+ * Configuration of hedged S3 requests (`app.s3-hedging`).
+ * When a HEAD, GET or List request did not answer within the configured percentile of the recently observed latency
+ * of that operation, a duplicate request is sent and the first response wins.
+ */
+public class S3Hedging {
+
+    private boolean enabled = false;
+    private double percentile = 0.95;
+    private Duration minDelay = Duration.ofMillis(20);
+    private Duration maxDelay = Duration.ofSeconds(2);
+    private int minSamples = 50;
+    private double maxHedgeRatio = 0.05;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.s3-hedging.percentile must be between 0 and 1 (exclusive)");
+        }
+        this.percentile = percentile;
+    }
+
+    public Duration getMinDelay() {
+        return minDelay;
+    }
+
+    public void setMinDelay(Duration minDelay) {
+        if (minDelay.isNegative()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.s3-hedging.min-delay must be positive");
+        }
+        this.minDelay = minDelay;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public void setMaxDelay(Duration maxDelay) {
+        if (maxDelay.isNegative() || maxDelay.isZero()) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.s3-hedging.max-delay must be positive");
+        }
+        this.maxDelay = maxDelay;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public double getMaxHedgeRatio() {
+        return maxHedgeRatio;
+    }
+
+    public void setMaxHedgeRatio(double maxHedgeRatio) {
+        if (maxHedgeRatio < 0 || maxHedgeRatio > 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.s3-hedging.max-hedge-ratio must be between 0 and 1");
+        }
+        this.maxHedgeRatio = maxHedgeRatio;
+    }
+
+    public void validate() {
+        if (minDelay.compareTo(maxDelay) > 0) {
+            throw new IllegalArgumentException("Incorrect configuration detected: app.s3-hedging.min-delay must be smaller than app.s3-hedging.max-delay");
+        }
+    }
+
+}
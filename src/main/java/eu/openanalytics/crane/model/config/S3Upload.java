@@ -0,0 +1,69 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.config;
+
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+
+/**
+ * Configuration of the S3 upload pipeline of a repository (`app.repositories[name].s3-upload`).
+ */
+public class S3Upload {
+
+    // limits imposed by S3 on the size of a part in a multipart upload
+    private static final DataSize MIN_PART_SIZE = DataSize.ofMegabytes(5);
+    private static final DataSize MAX_PART_SIZE = DataSize.ofGigabytes(5);
+
+    private DataSize partSize = DataSize.ofMegabytes(8);
+    private int maxInFlightParts = 8;
+    private ChecksumAlgorithm checksumAlgorithm;
+
+    public DataSize getPartSize() {
+        return partSize;
+    }
+
+    public void setPartSize(DataSize partSize) {
+        if (partSize.compareTo(MIN_PART_SIZE) < 0 || partSize.compareTo(MAX_PART_SIZE) > 0) {
+            throw new IllegalArgumentException("Incorrect configuration detected: the part-size of s3-upload must be between 5MB and 5GB");
+        }
+        this.partSize = partSize;
+    }
+
+    public int getMaxInFlightParts() {
+        return maxInFlightParts;
+    }
+
+    public void setMaxInFlightParts(int maxInFlightParts) {
+        if (maxInFlightParts < 1) {
+            throw new IllegalArgumentException("Incorrect configuration detected: the max-in-flight-parts of s3-upload must be at least 1");
+        }
+        this.maxInFlightParts = maxInFlightParts;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.model.runtime;
+
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.security.PathTraversalFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable representation of a path in a repository, parsed once per request and shared by the access control
+ * services, the SpEL context and the controllers.
+ * Empty segments are ignored (e.g. `/a//b/` has the segments `a` and `b`), the remaining segments are not normalized
+ * (i.e. `.` and `..` are kept, these are already rejected by the {@link PathTraversalFilter}).
+ */
+public final class CranePath {
+
+    private static final String ATTRIBUTE = CranePath.class.getName();
+
+    private final Repository repository;
+    private final String requestPath;
+    private final List<String> segments;
+    private final String path;
+    private final boolean trailingSlash;
+    private volatile Path storagePath;
+
+    private CranePath(Repository repository, String requestPath, List<String> segments) {
+        this.repository = repository;
+        this.requestPath = requestPath;
+        this.segments = segments;
+        this.path = "/" + String.join("/", segments);
+        this.trailingSlash = !segments.isEmpty() && requestPath.endsWith("/");
+    }
+
+    /**
+     * Parses the given path (relative to the root of the repository).
+     */
+    public static CranePath of(Repository repository, String requestPath) {
+        return new CranePath(repository, requestPath, split(requestPath));
+    }
+
+    /**
+     * Returns the {@link CranePath} of the given path of the current request.
+     * The result is cached on the request, such that the path is only parsed once, even though it's used by multiple
+     * stages (e.g. access control and the controller).
+     */
+    public static CranePath forCurrentRequest(Repository repository, String requestPath) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servletRequestAttributes) {
+            return forRequest(servletRequestAttributes.getRequest(), repository, requestPath);
+        }
+        return of(repository, requestPath);
+    }
+
+    public static CranePath forRequest(HttpServletRequest request, Repository repository, String requestPath) {
+        if (request.getAttribute(ATTRIBUTE) instanceof CranePath cached && cached.repository == repository && cached.requestPath.equals(requestPath)) {
+            return cached;
+        }
+        CranePath cranePath = new CranePath(repository, requestPath, segments(request, repository, requestPath));
+        request.setAttribute(ATTRIBUTE, cranePath);
+        return cranePath;
+    }
+
+    /**
+     * Re-uses the segments parsed by the {@link PathTraversalFilter} when the request path of the (original) request
+     * corresponds to the repository and path.
+     */
+    private static List<String> segments(HttpServletRequest request, Repository repository, String requestPath) {
+        List<String> requestSegments = PathTraversalFilter.getPathSegments(request);
+        if (requestSegments != null && !requestSegments.isEmpty() && requestSegments.get(0).equals(repository.getName())) {
+            List<String> segments = requestSegments.subList(1, requestSegments.size());
+            if (matches(requestPath, segments)) {
+                return segments;
+            }
+        }
+        return split(requestPath);
+    }
+
+    private static boolean matches(String requestPath, List<String> segments) {
+        int position = 0;
+        for (String segment : segments) {
+            if (position >= requestPath.length() || requestPath.charAt(position) != '/' || !requestPath.startsWith(segment, position + 1)) {
+                return false;
+            }
+            position += segment.length() + 1;
+        }
+        // the remainder is either empty or a trailing slash
+        return position == requestPath.length() || (position == requestPath.length() - 1 && requestPath.charAt(position) == '/');
+    }
+
+    private static List<String> split(String requestPath) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= requestPath.length(); i++) {
+            if (i == requestPath.length() || requestPath.charAt(i) == '/') {
+                if (i > start) {
+                    segments.add(requestPath.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return the path as received in the request (e.g. `/a//b/`)
+     */
+    public String getRequestPath() {
+        return requestPath;
+    }
+
+    /**
+     * @return the (unmodifiable) segments of the path
+     */
+    public List<String> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return the normalized path, starting with a slash and without trailing slash (e.g. `/a/b`), `/` for the root of
+     * the repository
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the normalized path without leading slash (e.g. `a/b`), empty for the root of the repository
+     */
+    public String getRelativePath() {
+        return path.substring(1);
+    }
+
+    public boolean isRoot() {
+        return segments.isEmpty();
+    }
+
+    public boolean hasTrailingSlash() {
+        return trailingSlash;
+    }
+
+    /**
+     * @return the path in the storage of the repository (resolved on first use)
+     */
+    public Path getStoragePath() {
+        Path result = storagePath;
+        if (result == null) {
+            result = repository.getStoragePath().resolve(getRelativePath());
+            storagePath = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CranePath other)) {
+            return false;
+        }
+        return repository == other.repository && path.equals(other.path) && trailingSlash == other.trailingSlash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(repository.getName(), path, trailingSlash);
+    }
+
+    @Override
+    public String toString() {
+        return repository.getName() + path + (trailingSlash ? "/" : "");
+    }
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.s3;
+
+import org.carlspring.cloud.storage.s3fs.S3Factory;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+/**
+ * {@link S3Factory} used by s3fs, such that the file systems use the clients of the {@link S3ClientManager} (and the
+ * manager knows the region and credentials resolved by s3fs). s3fs
+ * instantiates the factory itself (using the `s3fs.amazon.s3.factory.class` property), therefore the manager is passed
+ * using {@link #configure}.
+ */
+public class CraneS3Factory extends S3Factory {
+
+    private static volatile S3ClientManager s3ClientManager;
+
+    public static void configure(S3ClientManager s3ClientManager) {
+        CraneS3Factory.s3ClientManager = s3ClientManager;
+    }
+
+    @Override
+    protected S3Client createS3Client(S3ClientBuilder builder) {
+        if (s3ClientManager == null) {
+            return builder.build();
+        }
+        S3Client client = s3ClientManager.configure(builder).build();
+        s3ClientManager.register(client);
+        return client;
+    }
+
+}
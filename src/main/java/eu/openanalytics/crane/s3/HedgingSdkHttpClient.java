@@ -0,0 +1,377 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.s3;
+
+import eu.openanalytics.crane.model.config.S3Hedging;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link SdkHttpClient} that hedges idempotent S3 requests (HEAD, GET and List).
+ * When the request did not answer within the configured percentile of the latency recently observed for the same
+ * operation, a duplicate request is sent. The first successful response is returned, the other attempt is aborted.
+ * The number of hedges is capped to a fraction of the total number of requests, such that a slow object store is not
+ * overloaded by the duplicate requests.
+ * A server error (5xx) only wins when no other attempt is pending, such that a fast error from a degraded node doesn't
+ * replace the slow response the hedge is waiting for.
+ */
+public class HedgingSdkHttpClient implements SdkHttpClient {
+
+    private static final int SAMPLE_SIZE = 256;
+    private static final int RECOMPUTE_INTERVAL = 32;
+    // the budget is expressed in thousandths of a hedge, in order to allow fractional ratios
+    private static final long HEDGE_COST = 1000;
+    private static final long MAX_BUDGET = 10 * HEDGE_COST;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final SdkHttpClient delegate;
+    private final S3Hedging settings;
+    private final ThreadPoolExecutor executor;
+    private final Map<Operation, OperationStatistics> statistics = new EnumMap<>(Operation.class);
+    private final AtomicLong budget = new AtomicLong(MAX_BUDGET);
+    private final long budgetPerRequest;
+
+    /**
+     * @param maxThreads the maximum number of attempts in flight, when reached requests are executed without hedging
+     */
+    public HedgingSdkHttpClient(SdkHttpClient delegate, S3Hedging settings, int maxThreads, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.budgetPerRequest = Math.round(settings.getMaxHedgeRatio() * HEDGE_COST);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "crane-s3-hedging-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Operation operation : Operation.values()) {
+            statistics.put(operation, new OperationStatistics(operation, meterRegistry));
+        }
+    }
+
+    @Override
+    public ExecutableHttpRequest prepareRequest(HttpExecuteRequest request) {
+        Operation operation = Operation.of(request.httpRequest());
+        if (operation == null) {
+            return delegate.prepareRequest(request);
+        }
+        return new HedgedRequest(request, statistics.get(operation));
+    }
+
+    @Override
+    public String clientName() {
+        return delegate.clientName();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        delegate.close();
+    }
+
+    private boolean acquireHedge() {
+        while (true) {
+            long current = budget.get();
+            if (current < HEDGE_COST) {
+                return false;
+            }
+            if (budget.compareAndSet(current, current - HEDGE_COST)) {
+                return true;
+            }
+        }
+    }
+
+    private void replenishBudget(long amount) {
+        budget.accumulateAndGet(amount, (current, increment) -> Math.min(MAX_BUDGET, current + increment));
+    }
+
+    enum Operation {
+        HEAD, GET, LIST;
+
+        static Operation of(SdkHttpRequest request) {
+            if (request.method() == SdkHttpMethod.HEAD) {
+                return HEAD;
+            }
+            if (request.method() == SdkHttpMethod.GET) {
+                Map<String, ?> parameters = request.rawQueryParameters();
+                if (parameters.containsKey("list-type") || parameters.containsKey("prefix") || parameters.containsKey("delimiter")) {
+                    return LIST;
+                }
+                return GET;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Keeps track of the latency of the recent requests of a single operation and the derived hedge delay.
+     */
+    private class OperationStatistics {
+
+        private final AtomicLongArray samples = new AtomicLongArray(SAMPLE_SIZE);
+        private final AtomicLong sampleCount = new AtomicLong();
+        private volatile long hedgeDelayNanos;
+        private final Counter requests;
+        private final Counter hedges;
+        private final Counter hedgeWins;
+        private final Counter hedgesSkipped;
+
+        OperationStatistics(Operation operation, MeterRegistry meterRegistry) {
+            String tag = operation.name().toLowerCase();
+            hedgeDelayNanos = settings.getMaxDelay().toNanos();
+            requests = meterRegistry.counter("crane.s3.hedging.requests", "operation", tag);
+            hedges = meterRegistry.counter("crane.s3.hedging.hedges", "operation", tag);
+            hedgeWins = meterRegistry.counter("crane.s3.hedging.wins", "operation", tag);
+            hedgesSkipped = meterRegistry.counter("crane.s3.hedging.skipped", "operation", tag);
+            Gauge.builder("crane.s3.hedging.delay", this, s -> s.hedgeDelayNanos / 1_000_000.0)
+                .tag("operation", tag)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        }
+
+        void record(long latencyNanos) {
+            long count = sampleCount.getAndIncrement();
+            samples.set((int) (count % SAMPLE_SIZE), latencyNanos);
+            if ((count + 1) % RECOMPUTE_INTERVAL == 0 && count + 1 >= settings.getMinSamples()) {
+                recompute(Math.min(count + 1, SAMPLE_SIZE));
+            }
+        }
+
+        private void recompute(long size) {
+            long[] sorted = new long[(int) size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            long percentile = sorted[(int) Math.min(size - 1, Math.ceil(settings.getPercentile() * size) - 1)];
+            hedgeDelayNanos = Math.max(settings.getMinDelay().toNanos(), Math.min(settings.getMaxDelay().toNanos(), percentile));
+        }
+
+    }
+
+    private class HedgedRequest implements ExecutableHttpRequest {
+
+        private final HttpExecuteRequest request;
+        private final OperationStatistics statistics;
+        private final CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        private final AtomicInteger pendingAttempts = new AtomicInteger();
+        private volatile Attempt primary;
+        private volatile Attempt hedge;
+        // a server error received while another attempt was still pending
+        private volatile Attempt serverError;
+
+        HedgedRequest(HttpExecuteRequest request, OperationStatistics statistics) {
+            this.request = request;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public HttpExecuteResponse call() throws IOException {
+            statistics.requests.increment();
+            replenishBudget(budgetPerRequest);
+            try {
+                primary = start();
+            } catch (RejectedExecutionException e) {
+                // all threads are busy, don't wait for a thread but execute the request without hedging
+                statistics.hedgesSkipped.increment();
+                return delegate.prepareRequest(request).call();
+            }
+            try {
+                Attempt result;
+                try {
+                    result = winner.get(statistics.hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (acquireHedge() && startHedge()) {
+                        statistics.hedges.increment();
+                        logger.debug("Hedging S3 {} request after {} ms", request.httpRequest().method(), statistics.hedgeDelayNanos / 1_000_000);
+                    } else {
+                        statistics.hedgesSkipped.increment();
+                    }
+                    result = winner.get();
+                }
+                if (result == hedge) {
+                    statistics.hedgeWins.increment();
+                }
+                cancelOthers(result);
+                return result.response;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abort();
+                throw new InterruptedIOException("Interrupted while waiting for S3 response");
+            } catch (ExecutionException e) {
+                abort();
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        private Attempt start() {
+            Attempt attempt = new Attempt(delegate.prepareRequest(request));
+            pendingAttempts.incrementAndGet();
+            try {
+                executor.execute(() -> attempt.run(this));
+            } catch (RejectedExecutionException e) {
+                pendingAttempts.decrementAndGet();
+                throw e;
+            }
+            return attempt;
+        }
+
+        private boolean startHedge() {
+            try {
+                hedge = start();
+                return true;
+            } catch (RejectedExecutionException e) {
+                // return the budget, the hedge wasn't sent
+                replenishBudget(HEDGE_COST);
+                return false;
+            }
+        }
+
+        private void completed(Attempt attempt) {
+            int pending = pendingAttempts.decrementAndGet();
+            if (attempt.response.httpResponse().statusCode() >= 500) {
+                if (pending > 0) {
+                    // another attempt may still succeed, only use this response when it fails as well
+                    serverError = attempt;
+                    return;
+                }
+            } else {
+                // server errors are not recorded, since fast errors would lower the hedge delay
+                statistics.record(attempt.latencyNanos);
+            }
+            if (!winner.complete(attempt)) {
+                // another attempt already won, release the connection of this attempt
+                attempt.close();
+            }
+        }
+
+        private void failed(Attempt attempt, Throwable throwable) {
+            // only fail when no other attempt can still succeed
+            if (pendingAttempts.decrementAndGet() == 0) {
+                Attempt fallback = serverError;
+                if (fallback == null) {
+                    winner.completeExceptionally(throwable);
+                } else if (!winner.complete(fallback)) {
+                    fallback.close();
+                }
+            }
+        }
+
+        private void cancelOthers(Attempt result) {
+            for (Attempt attempt : new Attempt[]{primary, hedge}) {
+                if (attempt != null && attempt != result) {
+                    attempt.cancel();
+                }
+            }
+        }
+
+        @Override
+        public void abort() {
+            for (Attempt attempt : new Attempt[]{primary, hedge}) {
+                if (attempt != null) {
+                    attempt.cancel();
+                }
+            }
+        }
+    }
+
+    private static class Attempt {
+
+        private final ExecutableHttpRequest executableRequest;
+        private volatile HttpExecuteResponse response;
+        private volatile boolean finished;
+        private volatile boolean cancelled;
+        private long latencyNanos;
+
+        Attempt(ExecutableHttpRequest executableRequest) {
+            this.executableRequest = executableRequest;
+        }
+
+        void run(HedgedRequest hedgedRequest) {
+            long start = System.nanoTime();
+            try {
+                response = executableRequest.call();
+                latencyNanos = System.nanoTime() - start;
+                finished = true;
+                if (cancelled) {
+                    close();
+                }
+                hedgedRequest.completed(this);
+            } catch (Throwable t) {
+                finished = true;
+                hedgedRequest.failed(this, t);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (finished) {
+                close();
+            } else {
+                executableRequest.abort();
+            }
+        }
+
+        void close() {
+            if (response != null) {
+                response.responseBody().ifPresent(body -> {
+                    body.abort();
+                    try {
+                        body.close();
+                    } catch (IOException ignored) {
+                    }
+                });
+            }
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.s3;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the metrics collected by the AWS SDK to Micrometer: the duration and outcome of every S3 operation and the
+ * state of the connection pools of the HTTP clients.
+ */
+public class MicrometerMetricPublisher implements MetricPublisher {
+
+    private final MeterRegistry meterRegistry;
+    private final Meter.MeterProvider<Timer> callTimer;
+    private final Meter.MeterProvider<Counter> retryCounter;
+    private final Map<String, PoolState> pools = new ConcurrentHashMap<>();
+
+    public MicrometerMetricPublisher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.callTimer = Timer.builder("crane.s3.client.calls").withRegistry(meterRegistry);
+        this.retryCounter = Counter.builder("crane.s3.client.retries").withRegistry(meterRegistry);
+    }
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        String operation = first(metricCollection, CoreMetric.OPERATION_NAME, "unknown");
+        Duration duration = first(metricCollection, CoreMetric.API_CALL_DURATION, null);
+        if (duration != null) {
+            callTimer.withTags("operation", operation, "successful", String.valueOf(first(metricCollection, CoreMetric.API_CALL_SUCCESSFUL, false)))
+                .record(duration);
+        }
+        Integer retries = first(metricCollection, CoreMetric.RETRY_COUNT, 0);
+        if (retries > 0) {
+            retryCounter.withTags("operation", operation).increment(retries);
+        }
+        publishHttpMetrics(metricCollection);
+    }
+
+    private void publishHttpMetrics(MetricCollection metricCollection) {
+        // the HTTP metrics are reported in the (nested) collection of every attempt
+        for (MetricCollection child : metricCollection.children()) {
+            if (!child.metricValues(HttpMetric.HTTP_CLIENT_NAME).isEmpty()) {
+                String client = first(child, HttpMetric.HTTP_CLIENT_NAME, "unknown");
+                PoolState pool = pools.computeIfAbsent(client, this::registerPool);
+                pool.leased.set(first(child, HttpMetric.LEASED_CONCURRENCY, pool.leased.get()));
+                pool.available.set(first(child, HttpMetric.AVAILABLE_CONCURRENCY, pool.available.get()));
+                pool.pending.set(first(child, HttpMetric.PENDING_CONCURRENCY_ACQUIRES, pool.pending.get()));
+                pool.max.set(first(child, HttpMetric.MAX_CONCURRENCY, pool.max.get()));
+                Duration acquireDuration = first(child, HttpMetric.CONCURRENCY_ACQUIRE_DURATION, null);
+                if (acquireDuration != null) {
+                    pool.acquireDuration.record(acquireDuration);
+                }
+            }
+            publishHttpMetrics(child);
+        }
+    }
+
+    private PoolState registerPool(String client) {
+        PoolState pool = new PoolState(Timer.builder("crane.s3.client.pool.acquire")
+            .tag("client", client)
+            .register(meterRegistry));
+        Gauge.builder("crane.s3.client.pool.leased", pool.leased, AtomicInteger::get).tag("client", client).register(meterRegistry);
+        Gauge.builder("crane.s3.client.pool.available", pool.available, AtomicInteger::get).tag("client", client).register(meterRegistry);
+        Gauge.builder("crane.s3.client.pool.pending", pool.pending, AtomicInteger::get).tag("client", client).register(meterRegistry);
+        Gauge.builder("crane.s3.client.pool.max", pool.max, AtomicInteger::get).tag("client", client).register(meterRegistry);
+        return pool;
+    }
+
+    private static <T> T first(MetricCollection metricCollection, SdkMetric<T> metric, T defaultValue) {
+        List<T> values = metricCollection.metricValues(metric);
+        if (values.isEmpty() || values.get(0) == null) {
+            return defaultValue;
+        }
+        return values.get(0);
+    }
+
+    /**
+     * @return the last observed state of the connection pool of every HTTP client
+     */
+    public Map<String, Map<String, Integer>> getPoolStates() {
+        Map<String, Map<String, Integer>> result = new TreeMap<>();
+        pools.forEach((client, pool) -> result.put(client, Map.of(
+            "leased", pool.leased.get(),
+            "available", pool.available.get(),
+            "pending", pool.pending.get(),
+            "max", pool.max.get()
+        )));
+        return result;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static class PoolState {
+        private final AtomicInteger leased = new AtomicInteger();
+        private final AtomicInteger available = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger();
+        private final Timer acquireDuration;
+
+        PoolState(Timer acquireDuration) {
+            this.acquireDuration = acquireDuration;
+        }
+    }
+
+}
@@ -0,0 +1,210 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.s3;
+
+import eu.openanalytics.crane.model.config.S3ClientOptions;
+import eu.openanalytics.crane.model.config.S3Hedging;
+import eu.openanalytics.crane.model.config.S3Upload;
+import io.micrometer.core.instrument.MeterRegistry;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.providers.DefaultAwsRegionProviderChain;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.S3ServiceClientConfiguration;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+
+/**
+ * Owns the S3 clients used by Crane, such that downloads, listings (through s3fs) and uploads share the same tuned
+ * connection pools and report their metrics to Micrometer. The clients are only created when S3 is used.
+ */
+public class S3ClientManager implements AutoCloseable {
+
+    private final S3ClientOptions options;
+    private final S3Hedging hedging;
+    private final URI endpoint;
+    private final MeterRegistry meterRegistry;
+    private final MicrometerMetricPublisher metricPublisher;
+    private SdkHttpClient httpClient;
+    private SdkAsyncHttpClient asyncHttpClient;
+    private S3AsyncClient asyncClient;
+    private S3ServiceClientConfiguration clientConfiguration;
+    private S3Presigner presigner;
+
+    public S3ClientManager(S3ClientOptions options, S3Hedging hedging, URI endpoint, MeterRegistry meterRegistry) {
+        this.options = options;
+        this.hedging = hedging;
+        this.endpoint = endpoint;
+        this.meterRegistry = meterRegistry;
+        this.metricPublisher = new MicrometerMetricPublisher(meterRegistry);
+    }
+
+    /**
+     * Applies the shared HTTP client and metric publisher to a client created by s3fs.
+     */
+    public S3ClientBuilder configure(S3ClientBuilder builder) {
+        return builder
+            .httpClient(getHttpClient())
+            .overrideConfiguration(builder.overrideConfiguration().toBuilder().addMetricPublisher(metricPublisher).build());
+    }
+
+    /**
+     * Keeps the configuration (region and credentials) of a client created by s3fs, such that URLs are presigned with
+     * the same configuration.
+     */
+    public synchronized void register(S3Client client) {
+        if (clientConfiguration == null) {
+            clientConfiguration = client.serviceClientConfiguration();
+        }
+    }
+
+    /**
+     * @return the presigner, using the region, credentials and endpoint of the clients created by s3fs
+     */
+    public synchronized S3Presigner getPresigner() {
+        if (presigner == null) {
+            S3Presigner.Builder builder = S3Presigner.builder();
+            if (clientConfiguration != null) {
+                builder.region(clientConfiguration.region()).credentialsProvider(clientConfiguration.credentialsProvider());
+            } else {
+                builder.region(getDefaultRegion());
+            }
+            if (hasCustomEndpoint()) {
+                // custom endpoints (e.g. MinIO) generally do not support virtual-hosted-style requests
+                builder.endpointOverride(endpoint)
+                    .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+            }
+            presigner = builder.build();
+        }
+        return presigner;
+    }
+
+    private Region getDefaultRegion() {
+        try {
+            return DefaultAwsRegionProviderChain.builder().build().getRegion();
+        } catch (SdkClientException e) {
+            return Region.US_EAST_1;
+        }
+    }
+
+    public synchronized SdkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            SdkHttpClient apacheHttpClient = ApacheHttpClient.builder()
+                .maxConnections(options.getMaxConnections())
+                .connectionTimeout(options.getConnectionTimeout())
+                .connectionAcquisitionTimeout(options.getConnectionAcquisitionTimeout())
+                .socketTimeout(options.getSocketTimeout())
+                .connectionMaxIdleTime(options.getConnectionMaxIdleTime())
+                .tcpKeepAlive(options.isTcpKeepAlive())
+                .build();
+            if (hedging != null && hedging.isEnabled()) {
+                httpClient = new HedgingSdkHttpClient(apacheHttpClient, hedging, options.getMaxConnections(), meterRegistry);
+            } else {
+                httpClient = apacheHttpClient;
+            }
+        }
+        return httpClient;
+    }
+
+    private synchronized SdkAsyncHttpClient getAsyncHttpClient() {
+        if (asyncHttpClient == null) {
+            asyncHttpClient = NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(options.getMaxConnections())
+                .connectionTimeout(options.getConnectionTimeout())
+                .connectionAcquisitionTimeout(options.getConnectionAcquisitionTimeout())
+                .readTimeout(options.getSocketTimeout())
+                .writeTimeout(options.getSocketTimeout())
+                .connectionMaxIdleTime(options.getConnectionMaxIdleTime())
+                .tcpKeepAlive(options.isTcpKeepAlive())
+                .build();
+        }
+        return asyncHttpClient;
+    }
+
+    /**
+     * @return the shared asynchronous client (used for uploads), with multipart support enabled
+     */
+    public synchronized S3AsyncClient getAsyncClient() {
+        if (asyncClient == null) {
+            asyncClient = createAsyncClient(null);
+        }
+        return asyncClient;
+    }
+
+    /**
+     * Creates an asynchronous client with the multipart configuration of a repository. The client shares the connection
+     * pool of the other clients. The caller has to close the client.
+     */
+    public S3AsyncClient createAsyncClient(S3Upload s3Upload) {
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+            .httpClient(getAsyncHttpClient())
+            .overrideConfiguration(c -> c.addMetricPublisher(metricPublisher))
+            .multipartEnabled(true);
+        if (s3Upload != null) {
+            long partSize = s3Upload.getPartSize().toBytes();
+            builder.multipartConfiguration(MultipartConfiguration.builder()
+                .minimumPartSizeInBytes(partSize)
+                .thresholdInBytes(partSize)
+                // bounds the number of parts buffered (and therefore in flight) for a single upload
+                .apiCallBufferSizeInBytes(partSize * s3Upload.getMaxInFlightParts())
+                .build());
+        }
+        if (hasCustomEndpoint()) {
+            builder.endpointOverride(endpoint).forcePathStyle(true);
+        }
+        return builder.build();
+    }
+
+    private boolean hasCustomEndpoint() {
+        return endpoint != null && endpoint.getHost() != null;
+    }
+
+    public MicrometerMetricPublisher getMetricPublisher() {
+        return metricPublisher;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (presigner != null) {
+            presigner.close();
+        }
+        if (asyncClient != null) {
+            asyncClient.close();
+        }
+        if (asyncHttpClient != null) {
+            asyncHttpClient.close();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+}
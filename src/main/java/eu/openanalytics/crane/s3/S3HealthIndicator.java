@@ -0,0 +1,129 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.s3;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.Repository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.carlspring.cloud.storage.s3fs.S3Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reports whether the buckets used by the repositories are reachable, together with the state of the S3 connection
+ * pools. The buckets are checked in the background (every `app.s3-client.health-check-interval`), the health endpoint
+ * only reports the result of the last check. The indicator (`s3`) is not part of the liveness and readiness probes,
+ * to include it in the readiness probe set `management.endpoint.health.group.readiness.include` to
+ * `readinessState,s3`.
+ */
+@Component
+public class S3HealthIndicator implements HealthIndicator {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final CraneConfig craneConfig;
+    private final Set<String> buckets = new TreeSet<>();
+    private ScheduledExecutorService executor;
+    private volatile Map<String, String> bucketStates;
+
+    public S3HealthIndicator(CraneConfig craneConfig) {
+        this.craneConfig = craneConfig;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (Repository repository : craneConfig.getRepositories()) {
+            if (repository.getStoragePath() instanceof S3Path s3Path) {
+                buckets.add(s3Path.getBucketName());
+            }
+        }
+        if (buckets.isEmpty()) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crane-s3-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = craneConfig.getS3Client().getHealthCheckInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::checkBuckets, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (buckets.isEmpty()) {
+            return Health.unknown().withDetail("message", "S3 is not used").build();
+        }
+        Map<String, String> states = bucketStates;
+        if (states == null) {
+            return Health.unknown().withDetail("message", "Buckets not yet checked").build();
+        }
+        Health.Builder builder = states.containsValue("DOWN") ? Health.down() : Health.up();
+        return builder
+            .withDetail("buckets", states)
+            .withDetail("pools", craneConfig.getS3ClientManager().getMetricPublisher().getPoolStates())
+            .build();
+    }
+
+    private void checkBuckets() {
+        Map<String, String> states = new TreeMap<>();
+        for (String bucket : buckets) {
+            try {
+                craneConfig.getS3ClientManager().getAsyncClient().headBucket(req -> req.bucket(bucket)).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                states.put(bucket, "UP");
+            } catch (ExecutionException | TimeoutException e) {
+                logger.debug("Health check of bucket '{}' failed", bucket, e);
+                states.put(bucket, "DOWN");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // an exception would cancel the scheduled checks
+                logger.warn("Health check of bucket '{}' failed", bucket, e);
+                states.put(bucket, "DOWN");
+            }
+        }
+        bucketStates = states;
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.s3;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import org.carlspring.cloud.storage.s3fs.S3Path;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.awscore.presigner.PresignedRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates presigned S3 URLs, such that clients can directly access the object store after Crane authorized the
+ * request.
+ */
+@Service
+public class S3PresignService {
+
+    /**
+     * Headers signed into a presigned PUT, the client has to send them with the request. `If-None-Match: *` makes the
+     * write conditional, such that an existing object (e.g. uploaded using the same URL) is never overwritten.
+     */
+    public static final Map<String, String> CONDITIONAL_PUT_HEADERS = Map.of("If-None-Match", "*");
+
+    /**
+     * User metadata signed into a presigned PUT, the object can only be uploaded together with this token. Completing
+     * the upload requires the same token, such that only the client that negotiated the upload can complete it.
+     */
+    public static final String UPLOAD_TOKEN_METADATA = "crane-upload-token";
+
+    private final CraneConfig craneConfig;
+
+    public S3PresignService(CraneConfig craneConfig) {
+        this.craneConfig = craneConfig;
+    }
+
+    public URI presignGetObject(S3Path path, Duration duration, String cacheControl, String contentType, String contentDisposition) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+            .bucket(path.getBucketName())
+            .key(path.getKey())
+            .responseCacheControl(cacheControl)
+            .responseContentType(contentType)
+            .responseContentDisposition(contentDisposition)
+            .build();
+        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
+            .signatureDuration(duration)
+            .getObjectRequest(getObjectRequest)
+            .build();
+        return toURI(getPresigner().presignGetObject(presignRequest));
+    }
+
+    public URI presignPutObject(S3Path path, Duration duration, String uploadToken) {
+        PutObjectPresignRequest presignRequest = PutObjectPresignRequest.builder()
+            .signatureDuration(duration)
+            .putObjectRequest(PutObjectRequest.builder()
+                .bucket(path.getBucketName())
+                .key(path.getKey())
+                .metadata(Map.of(UPLOAD_TOKEN_METADATA, uploadToken))
+                .overrideConfiguration(c -> CONDITIONAL_PUT_HEADERS.forEach(c::putHeader))
+                .build())
+            .build();
+        return toURI(getPresigner().presignPutObject(presignRequest));
+    }
+
+    /**
+     * @return the headers the client has to send with a PUT presigned using {@link #presignPutObject}
+     */
+    public static Map<String, String> getPutHeaders(String uploadToken) {
+        Map<String, String> headers = new HashMap<>(CONDITIONAL_PUT_HEADERS);
+        headers.put("x-amz-meta-" + UPLOAD_TOKEN_METADATA, uploadToken);
+        return headers;
+    }
+
+    public URI presignUploadPart(S3Path path, String uploadId, int partNumber, Duration duration) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+            .bucket(path.getBucketName())
+            .key(path.getKey())
+            .uploadId(uploadId)
+            .partNumber(partNumber)
+            .build();
+        UploadPartPresignRequest presignRequest = UploadPartPresignRequest.builder()
+            .signatureDuration(duration)
+            .uploadPartRequest(uploadPartRequest)
+            .build();
+        return toURI(getPresigner().presignUploadPart(presignRequest));
+    }
+
+    private URI toURI(PresignedRequest presignedRequest) {
+        try {
+            return presignedRequest.url().toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Presigned S3 URL is not a valid URI", e);
+        }
+    }
+
+    private S3Presigner getPresigner() {
+        return craneConfig.getS3ClientManager().getPresigner();
+    }
+
+}
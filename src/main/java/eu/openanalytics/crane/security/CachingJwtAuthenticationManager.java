@@ -0,0 +1,185 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import eu.openanalytics.crane.model.config.JwtCache;
+import eu.openanalytics.crane.security.CraneJwtAuthenticationConverter.CraneOAuth2Token;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.AuthenticationEventPublisher;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * {@link AuthenticationManager} for bearer tokens that caches the converted authentication of a token.
+ * API clients (e.g. a CI job installing many packages) typically send many requests with the same token, without this
+ * cache the signature of the token is verified and the claims are parsed for every request.
+ * The cache is keyed by the SHA-256 hash of the token (the token itself is never stored as key) and an entry is valid
+ * until the token expires (bounded by the configured max TTL). An optional {@link JwtRevocationChecker} is consulted on
+ * every request.
+ * Since this manager replaces the {@link org.springframework.security.authentication.ProviderManager} of the resource
+ * server, it publishes the authentication success and failure events itself, both for cached and verified tokens.
+ */
+public class CachingJwtAuthenticationManager implements AuthenticationManager {
+
+    private final JwtAuthenticationProvider delegate;
+    private final JwtRevocationChecker revocationChecker;
+    private final AuthenticationEventPublisher eventPublisher;
+    private final Clock clock;
+    private final Cache<String, CraneOAuth2Token> cache;
+    private final Counter revoked;
+
+    public CachingJwtAuthenticationManager(JwtDecoder jwtDecoder, CraneJwtAuthenticationConverter converter, JwtCache settings, JwtRevocationChecker revocationChecker,
+                                           AuthenticationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this(jwtDecoder, converter, settings, revocationChecker, eventPublisher, meterRegistry, Clock.systemUTC());
+    }
+
+    public CachingJwtAuthenticationManager(JwtDecoder jwtDecoder, CraneJwtAuthenticationConverter converter, JwtCache settings, JwtRevocationChecker revocationChecker,
+                                           AuthenticationEventPublisher eventPublisher, MeterRegistry meterRegistry, Clock clock) {
+        this.delegate = new JwtAuthenticationProvider(jwtDecoder);
+        this.delegate.setJwtAuthenticationConverter(converter);
+        this.revocationChecker = revocationChecker;
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+            .scheduler(Scheduler.systemScheduler())
+            .maximumSize(settings.getMaximumSize())
+            .expireAfter(new TokenExpiry(settings.getMaxTtl()))
+            .recordStats()
+            .build();
+        this.revoked = Counter.builder("crane.jwt.revoked")
+            .description("Number of requests rejected because the bearer token was revoked")
+            .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt-authentication");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!(authentication instanceof BearerTokenAuthenticationToken bearer)) {
+            return null;
+        }
+        try {
+            Authentication result = authenticate(bearer);
+            eventPublisher.publishAuthenticationSuccess(result);
+            return result;
+        } catch (AuthenticationException e) {
+            eventPublisher.publishAuthenticationFailure(e, bearer);
+            throw e;
+        }
+    }
+
+    private Authentication authenticate(BearerTokenAuthenticationToken bearer) {
+        String key = hash(bearer.getToken());
+        CraneOAuth2Token token = cache.getIfPresent(key);
+        if (token == null || isExpired(token.getToken())) {
+            // decodes and verifies the token, throws when the token is not valid
+            token = (CraneOAuth2Token) delegate.authenticate(bearer);
+            if (!isExpired(token.getToken())) {
+                cache.put(key, token.withDetails(null));
+            }
+        }
+        if (revocationChecker != null && revocationChecker.isRevoked(token.getToken())) {
+            cache.invalidate(key);
+            revoked.increment();
+            throw new InvalidBearerTokenException("Token has been revoked");
+        }
+        return token.withDetails(bearer.getDetails());
+    }
+
+    /**
+     * Removes the given token from the cache, e.g. after it has been revoked.
+     */
+    public void invalidate(String token) {
+        cache.invalidate(hash(token));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private boolean isExpired(Jwt jwt) {
+        return jwt.getExpiresAt() != null && !jwt.getExpiresAt().isAfter(clock.instant());
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Expires an entry when the token expires, bounded by the max TTL.
+     */
+    private class TokenExpiry implements Expiry<String, CraneOAuth2Token> {
+
+        private final Duration maxTtl;
+
+        TokenExpiry(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, CraneOAuth2Token value, long currentTime) {
+            Instant expiresAt = value.getToken().getExpiresAt();
+            if (expiresAt == null) {
+                return maxTtl.toNanos();
+            }
+            Duration remaining = Duration.between(clock.instant(), expiresAt);
+            if (remaining.isNegative()) {
+                return 0;
+            }
+            return remaining.compareTo(maxTtl) < 0 ? remaining.toNanos() : maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CraneOAuth2Token value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CraneOAuth2Token value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+}
@@ -66,6 +66,17 @@ public class CraneJwtAuthenticationConverter implements Converter<Jwt, AbstractA
             return getToken().getClaims();
         }
 
+        /**
+         * @return a copy of this authentication with the given details, such that a cached authentication is never
+         * modified
+         */
+        public CraneOAuth2Token withDetails(Object details) {
+            CraneOAuth2Token copy = new CraneOAuth2Token(getToken(), getPrincipal(), getCredentials(), getAuthorities());
+            copy.setDetails(details);
+            copy.setAuthenticated(isAuthenticated());
+            return copy;
+        }
+
     }
 
 }
@@ -0,0 +1,35 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Optional hook to reject bearer tokens that were revoked before they expire.
+ * When a bean of this type exists, it's consulted for every request authenticated using a bearer token, including
+ * requests that are served from the {@link CachingJwtAuthenticationManager}. Implementations must therefore be fast
+ * (e.g. a lookup of the `jti` claim in a local set).
+ */
+public interface JwtRevocationChecker {
+
+    boolean isRevoked(Jwt jwt);
+
+}
@@ -0,0 +1,221 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.OidcMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Fetches the OpenID metadata (i.e. the location of the JSON Web Key Set) and the key set in the background and acts
+ * as the {@link JWKSource} of the {@link JwtDecoder} used for bearer tokens.
+ * - the initial fetch is started when the application starts, the startup only waits for it up to a bounded time
+ * - the key set is refreshed proactively, such that requests never wait for the keys (when the refresh fails, the
+ * previous keys remain in use)
+ * - when a token is signed with an unknown key (i.e. the keys were rotated), the key set is fetched again; concurrent
+ * requests share a single fetch and these fetches are rate limited
+ */
+public class OidcMetadataManager implements JWKSource<SecurityContext>, DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final OidcMetadata settings;
+    private final MeterRegistry meterRegistry;
+    private final Supplier<String> jwkSetUriResolver;
+    private final Function<String, String> jwkSetFetcher;
+    private final ScheduledExecutorService executor;
+    private final AtomicReference<CompletableFuture<JWKSet>> inflight = new AtomicReference<>();
+    private final Counter unknownKeyRefetches;
+    private volatile String jwkSetUri;
+    private volatile JWKSet jwkSet;
+    private volatile long lastFetch = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    public OidcMetadataManager(CraneConfig config, MeterRegistry meterRegistry) {
+        this(config.getOidcMetadata(), meterRegistry, config::getJwksUri, createFetcher(config.getOidcMetadata()));
+    }
+
+    public OidcMetadataManager(OidcMetadata settings, MeterRegistry meterRegistry, Supplier<String> jwkSetUriResolver, Function<String, String> jwkSetFetcher) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        this.jwkSetUriResolver = jwkSetUriResolver;
+        this.jwkSetFetcher = jwkSetFetcher;
+        this.unknownKeyRefetches = Counter.builder("crane.oidc.jwks.unknown-key")
+            .description("Number of times the key set was fetched because a token was signed with an unknown key")
+            .register(meterRegistry);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crane-oidc-metadata");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<JWKSet> initialFetch = refresh();
+        long interval = settings.getRefreshInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        try {
+            initialFetch.get(settings.getStartupWait().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("OpenID key set not available after {}, continuing startup while fetching in the background", settings.getStartupWait());
+        } catch (ExecutionException e) {
+            logger.warn("Initial fetch of the OpenID key set failed, retrying in the background", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return a {@link JwtDecoder} that uses the keys of this manager, the token is validated in the same way as a
+     * decoder created by {@link NimbusJwtDecoder#withJwkSetUri}
+     */
+    public JwtDecoder createJwtDecoder() {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, this));
+        // the claims are validated by the JwtDecoder
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        return new NimbusJwtDecoder(jwtProcessor);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        JWKSet current = jwkSet;
+        if (current == null) {
+            return jwkSelector.select(await(refresh()));
+        }
+        List<JWK> keys = jwkSelector.select(current);
+        if (keys.isEmpty() && System.nanoTime() - lastFetch >= settings.getMinRefetchInterval().toNanos()) {
+            unknownKeyRefetches.increment();
+            try {
+                keys = jwkSelector.select(await(refresh()));
+            } catch (KeySourceException e) {
+                logger.warn("Failed to fetch the OpenID key set after a token was signed with an unknown key", e);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Fetches the key set (and the metadata if not yet known), concurrent calls share the same fetch.
+     */
+    CompletableFuture<JWKSet> refresh() {
+        CompletableFuture<JWKSet> future = new CompletableFuture<>();
+        CompletableFuture<JWKSet> existing = inflight.compareAndExchange(null, future);
+        if (existing != null) {
+            return existing;
+        }
+        executor.execute(() -> {
+            try {
+                JWKSet result = fetch();
+                jwkSet = result;
+                lastFetch = System.nanoTime();
+                inflight.set(null);
+                future.complete(result);
+            } catch (Exception e) {
+                lastFetch = System.nanoTime();
+                inflight.set(null);
+                future.completeExceptionally(e);
+                if (jwkSet == null) {
+                    // nothing to fall back to, retry sooner than the regular refresh
+                    logger.warn("Failed to fetch the OpenID key set, retrying in {}", settings.getMinRefetchInterval(), e);
+                    executor.schedule(this::refresh, settings.getMinRefetchInterval().toMillis(), TimeUnit.MILLISECONDS);
+                } else {
+                    logger.warn("Failed to refresh the OpenID key set, the previous keys remain in use", e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private JWKSet fetch() throws Exception {
+        if (jwkSetUri == null) {
+            jwkSetUri = record("metadata", jwkSetUriResolver::get);
+        }
+        return JWKSet.parse(record("jwks", () -> jwkSetFetcher.apply(jwkSetUri)));
+    }
+
+    private <T> T record(String type, Supplier<T> supplier) {
+        long start = System.nanoTime();
+        String result = "failure";
+        try {
+            T value = supplier.get();
+            result = "success";
+            return value;
+        } finally {
+            Timer.builder("crane.oidc.fetch")
+                .tags("type", type, "result", result)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private JWKSet await(CompletableFuture<JWKSet> future) throws KeySourceException {
+        try {
+            return future.get(settings.getFetchTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new KeySourceException("Timeout while fetching the OpenID key set", e);
+        } catch (ExecutionException e) {
+            throw new KeySourceException("Failed to fetch the OpenID key set", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KeySourceException("Interrupted while fetching the OpenID key set", e);
+        }
+    }
+
+    private static Function<String, String> createFetcher(OidcMetadata settings) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) settings.getFetchTimeout().toMillis());
+        requestFactory.setReadTimeout((int) settings.getFetchTimeout().toMillis());
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        return uri -> restTemplate.getForObject(uri, String.class);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+}
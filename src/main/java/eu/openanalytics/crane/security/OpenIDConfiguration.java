@@ -20,12 +20,16 @@
  */
 package eu.openanalytics.crane.security;
 
+import eu.openanalytics.crane.config.CraneConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.servlet.filter.OrderedRequestContextFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.security.oauth2.client.InMemoryOAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
@@ -45,8 +49,17 @@ public class OpenIDConfiguration {
 
     @Bean
     @ConditionalOnProperty(name = "spring.session.store-type", havingValue = "redis")
-    public OAuth2AuthorizedClientService redisOAuth2AuthorizedClientService(RedisTemplate<String, OAuth2AuthorizedClient> oAuth2AuthorizedClientRedisTemplate) {
-        return new RedisOAuth2AuthorizedClientService(oAuth2AuthorizedClientRedisTemplate);
+    public RedisOAuth2AuthorizedClientService redisOAuth2AuthorizedClientService(RedisTemplate<String, OAuth2AuthorizedClient> oAuth2AuthorizedClientRedisTemplate, CraneConfig craneConfig, MeterRegistry meterRegistry) {
+        return new RedisOAuth2AuthorizedClientService(oAuth2AuthorizedClientRedisTemplate, craneConfig.getAuthorizedClientCache(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnExpression("'${spring.session.store-type:none}' == 'redis' and ${app.authorized-client-cache.enabled:true}")
+    public RedisMessageListenerContainer oAuth2AuthorizedClientInvalidationListenerContainer(RedisConnectionFactory connectionFactory, RedisOAuth2AuthorizedClientService redisOAuth2AuthorizedClientService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(redisOAuth2AuthorizedClientService, RedisOAuth2AuthorizedClientService.INVALIDATION_TOPIC);
+        return container;
     }
 
     @Bean
@@ -64,8 +77,13 @@ public class OpenIDConfiguration {
     }
 
     @Bean
-    public OpenIdReAuthorizeFilter openIdReAuthorizeFilter(OAuth2AuthorizedClientManager oAuth2AuthorizedClientManager, OAuth2AuthorizedClientService oAuth2AuthorizedClientService) {
-        return new OpenIdReAuthorizeFilter(oAuth2AuthorizedClientManager, oAuth2AuthorizedClientService);
+    public OpenIdReAuthorizeFilter openIdReAuthorizeFilter(OAuth2AuthorizedClientManager oAuth2AuthorizedClientManager, OAuth2AuthorizedClientService oAuth2AuthorizedClientService, MeterRegistry meterRegistry) {
+        return new OpenIdReAuthorizeFilter(oAuth2AuthorizedClientManager, oAuth2AuthorizedClientService, meterRegistry);
+    }
+
+    @Bean
+    public OidcMetadataManager oidcMetadataManager(CraneConfig craneConfig, MeterRegistry meterRegistry) {
+        return new OidcMetadataManager(craneConfig, meterRegistry);
     }
 
     @Bean
@@ -20,6 +20,10 @@
  */
 package eu.openanalytics.crane.security;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Nonnull;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -35,6 +39,11 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 import java.time.Clock;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 public class OpenIdReAuthorizeFilter extends OncePerRequestFilter {
@@ -48,9 +57,26 @@ public class OpenIdReAuthorizeFilter extends OncePerRequestFilter {
     // use clock skew of 40 seconds instead of 60 seconds. Otherwise, if the access token is valid for 1 minute, it would get refreshed at each request.
     private final Duration clockSkew = Duration.ofSeconds(40);
 
-    public OpenIdReAuthorizeFilter(OAuth2AuthorizedClientManager oAuth2AuthorizedClientManager, OAuth2AuthorizedClientService oAuth2AuthorizedClientService) {
+    // how long a request waits for a refresh of the same client started by another request
+    private final Duration refreshWait = Duration.ofSeconds(10);
+
+    // refreshes in progress, per client registration and principal
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> refreshes = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+
+    private final Meter.MeterProvider<Timer> refreshTimer;
+
+    private final Meter.MeterProvider<Counter> refreshWaits;
+
+    public OpenIdReAuthorizeFilter(OAuth2AuthorizedClientManager oAuth2AuthorizedClientManager, OAuth2AuthorizedClientService oAuth2AuthorizedClientService, MeterRegistry meterRegistry) {
         this.oAuth2AuthorizedClientService = oAuth2AuthorizedClientService;
         this.oAuth2AuthorizedClientManager = oAuth2AuthorizedClientManager;
+        this.meterRegistry = meterRegistry;
+        this.refreshTimer = Timer.builder("crane.oidc.token.refresh")
+            .description("Duration of refreshing OpenID access tokens")
+            .withRegistry(meterRegistry);
+        this.refreshWaits = Counter.builder("crane.oidc.token.refresh.waits").withRegistry(meterRegistry);
     }
 
     @Override
@@ -75,23 +101,92 @@ public class OpenIdReAuthorizeFilter extends OncePerRequestFilter {
         if (authorizedClient == null) {
             invalidateSession(request, response, auth);
         } else {
-            if (accessTokenExpired(authorizedClient)) {
-                OAuth2AuthorizeRequest authorizeRequest = OAuth2AuthorizeRequest
-                        .withAuthorizedClient(authorizedClient)
-                        .principal(auth)
-                        .build();
-
-                try {
-                    oAuth2AuthorizedClientManager.authorize(authorizeRequest);
-                    logger.info(String.format("OpenID access token refreshed [user: %s, request: %s]", auth.getName(), request.getServletPath()));
-                } catch (ClientAuthorizationException ex) {
-                    invalidateSession(request, response, auth);
-                }
+            if (accessTokenExpired(authorizedClient) && !refresh(request, clientId, auth)) {
+                invalidateSession(request, response, auth);
             }
         }
         chain.doFilter(request, response);
     }
 
+    /**
+     * Refreshes the access token, such that concurrent requests of the same user (e.g. a page loading many resources)
+     * cause a single request to the token endpoint. The other requests wait for the result of this refresh.
+     *
+     * @return false when the refresh failed and the session should be invalidated
+     */
+    private boolean refresh(HttpServletRequest request, String clientId, Authentication auth) {
+        String key = clientId + '_' + auth.getName();
+        CompletableFuture<Boolean> refresh = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = refreshes.putIfAbsent(key, refresh);
+        if (existing != null) {
+            return awaitRefresh(existing, clientId, auth);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "failure";
+        try {
+            // the token may have been refreshed between loading the client and starting this refresh
+            OAuth2AuthorizedClient authorizedClient = oAuth2AuthorizedClientService.loadAuthorizedClient(clientId, auth.getName());
+            if (authorizedClient == null) {
+                refresh.complete(false);
+                return false;
+            }
+            if (!accessTokenExpired(authorizedClient)) {
+                result = "skipped";
+                refresh.complete(true);
+                return true;
+            }
+            OAuth2AuthorizeRequest authorizeRequest = OAuth2AuthorizeRequest
+                    .withAuthorizedClient(authorizedClient)
+                    .principal(auth)
+                    .build();
+            try {
+                oAuth2AuthorizedClientManager.authorize(authorizeRequest);
+            } catch (ClientAuthorizationException ex) {
+                refresh.complete(false);
+                return false;
+            }
+            logger.info(String.format("OpenID access token refreshed [user: %s, request: %s]", auth.getName(), request.getServletPath()));
+            result = "success";
+            refresh.complete(true);
+            return true;
+        } catch (RuntimeException ex) {
+            refresh.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            refreshes.remove(key, refresh);
+            sample.stop(refreshTimer.withTags("result", result));
+        }
+    }
+
+    private boolean awaitRefresh(CompletableFuture<Boolean> refresh, String clientId, Authentication auth) {
+        String result = "failure";
+        try {
+            boolean refreshed = refresh.get(refreshWait.toMillis(), TimeUnit.MILLISECONDS);
+            result = refreshed ? "success" : "failure";
+            return refreshed;
+        } catch (TimeoutException e) {
+            // don't block the request any longer, the session is only kept when the token has been refreshed meanwhile
+            result = "timeout";
+            logger.warn(String.format("Timeout while waiting for refresh of OpenID access token [user: %s]", auth.getName()));
+            return isRefreshed(clientId, auth);
+        } catch (ExecutionException e) {
+            // the refresh failed because of an unexpected error, which has been reported by the refreshing request
+            return isRefreshed(clientId, auth);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return isRefreshed(clientId, auth);
+        } finally {
+            refreshWaits.withTags("result", result).increment();
+        }
+    }
+
+    /**
+     * @return whether the stored access token is valid, used when the result of the refresh is not known
+     */
+    private boolean isRefreshed(String clientId, Authentication auth) {
+        return !accessTokenExpired(oAuth2AuthorizedClientService.loadAuthorizedClient(clientId, auth.getName()));
+    }
+
     /**
      * See {@link RefreshTokenOAuth2AuthorizedClientProvider}
      */
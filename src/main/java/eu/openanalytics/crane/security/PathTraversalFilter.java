@@ -31,55 +31,102 @@ import org.springframework.security.web.firewall.StrictHttpFirewall;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.UrlPathHelper;
 
-import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Filter that protects against path traversal.
  * This does not replace {@link StrictHttpFirewall} but works as a second-layer defence.
  * It's also more strict, any path containing "%" is rejected.
  *
+ * The path is validated lexically (i.e. without accessing the filesystem): it must be absolute and may not contain
+ * "." or ".." segments, empty segments (except for a trailing slash), "%", backslashes or control characters.
+ * The segments of the path (without the context path) are stored in the {@link #PATH_SEGMENTS_ATTRIBUTE} attribute of
+ * the request, such that later stages don't have to parse the path again.
+ *
  * In order to test this filter properly, the built-in firewall must be disabled.
  * Many HTTP clients (browser, curl, OkHttp) canonicalize the request before sending.
  * Disable these features when testing, e.g. curl --path-as-is ...
  */
 public class PathTraversalFilter extends OncePerRequestFilter {
 
+    public static final String PATH_SEGMENTS_ATTRIBUTE = PathTraversalFilter.class.getName() + ".PATH_SEGMENTS";
+
     private final UrlPathHelper urlPathHelper = new UrlPathHelper();
 
     @Override
     protected void doFilterInternal(@Nonnull HttpServletRequest request, @Nonnull HttpServletResponse response, @Nonnull FilterChain chain) throws ServletException, IOException {
-        if (!check(request)) {
+        List<String> segments = parseSegments(urlPathHelper.getRequestUri(request));
+        if (segments == null) {
             request.setAttribute(RequestDispatcher.ERROR_STATUS_CODE, HttpStatus.BAD_REQUEST.value());
             request.getRequestDispatcher("/error").forward(request, response);
             return;
         }
 
+        int contextPathSegments = countContextPathSegments(request.getContextPath());
+        request.setAttribute(PATH_SEGMENTS_ATTRIBUTE, segments.subList(Math.min(contextPathSegments, segments.size()), segments.size()));
         chain.doFilter(request, response);
     }
 
-    private boolean check(@Nonnull HttpServletRequest request) {
-        String path = urlPathHelper.getRequestUri(request);
-        if (path.contains("%")) {
-            // don't support (double) encoded paths
-            return false;
+    /**
+     * @return the segments of the path as parsed by this filter, or null when the filter was not applied to the request
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> getPathSegments(HttpServletRequest request) {
+        return (List<String>) request.getAttribute(PATH_SEGMENTS_ATTRIBUTE);
+    }
+
+    /**
+     * Validates the (decoded) path and splits it into segments, in a single pass over the path.
+     *
+     * @param path the path to validate
+     * @return the (unmodifiable) list of segments, or null when the path is not valid
+     */
+    public static List<String> parseSegments(String path) {
+        int length = path.length();
+        if (length == 0 || path.charAt(0) != '/') {
+            return null;
+        }
+        List<String> segments = new ArrayList<>();
+        int start = 1;
+        for (int i = 1; i <= length; i++) {
+            char c = i < length ? path.charAt(i) : '/';
+            if (c == '/') {
+                int segmentLength = i - start;
+                if (segmentLength == 0) {
+                    if (i < length) {
+                        // empty segment, only a trailing slash is allowed
+                        return null;
+                    }
+                } else if (isDotSegment(path, start, segmentLength)) {
+                    return null;
+                } else {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            } else if (c == '%' || c == '\\' || Character.isISOControl(c)) {
+                // don't support (double) encoded paths, backslashes and control characters
+                return null;
+            }
         }
+        return Collections.unmodifiableList(segments);
+    }
 
-        File absolutePath = new File(path);
+    private static boolean isDotSegment(String path, int start, int length) {
+        return (length == 1 && path.charAt(start) == '.')
+            || (length == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.');
+    }
 
-        try {
-            String canonicalPath = absolutePath.getCanonicalPath();
-            if (!new File(canonicalPath).isAbsolute()) {
-                return false;
+    private static int countContextPathSegments(String contextPath) {
+        int count = 0;
+        for (int i = 0; i < contextPath.length(); i++) {
+            if (contextPath.charAt(i) == '/') {
+                count++;
             }
-            if (!absolutePath.getAbsolutePath().equals(canonicalPath)) {
-                return false;
-            }
-        } catch (IOException e) {
-            return false;
         }
-
-        return true;
+        return count;
     }
 
 }
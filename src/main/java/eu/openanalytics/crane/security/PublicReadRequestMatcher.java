@@ -0,0 +1,116 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security;
+
+import eu.openanalytics.crane.config.RepositoryRouter;
+import eu.openanalytics.crane.model.config.AccessControl;
+import eu.openanalytics.crane.model.config.PathComponent;
+import eu.openanalytics.crane.model.config.Repository;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Matches anonymous read requests (GET and HEAD) of files that are public, i.e. every path component that applies to
+ * the file has public read access. These requests can be handled by a stateless filter chain, since the response
+ * does not depend on the user.
+ * A request is not matched when:
+ * - it contains a session cookie or an Authorization header (the user might be logged in)
+ * - it is a directory listing (i.e. ends with `/`), since the index page contains a CSRF token
+ * - the repository has rewrite rules, since these can point to a path that is not public
+ * - the path is not valid, such that it's rejected by the regular filter chain
+ */
+public class PublicReadRequestMatcher implements RequestMatcher {
+
+    private final RepositoryRouter router;
+    private final Set<String> sessionCookieNames;
+
+    public PublicReadRequestMatcher(RepositoryRouter router, Set<String> sessionCookieNames) {
+        this.router = router;
+        this.sessionCookieNames = sessionCookieNames;
+    }
+
+    @Override
+    public boolean matches(HttpServletRequest request) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return false;
+        }
+        String method = request.getMethod();
+        if (!HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method)) {
+            return false;
+        }
+        if (request.getHeader(HttpHeaders.AUTHORIZATION) != null || hasSessionCookie(request)) {
+            return false;
+        }
+        Repository repository = router.route(request);
+        if (repository == null || repository.getRewrites() != null || repository.hasPosixAccessControl()) {
+            return false;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.endsWith("/")) {
+            return false;
+        }
+        List<String> segments = PathTraversalFilter.parseSegments(path);
+        return segments != null && isPublic(repository, segments);
+    }
+
+    /**
+     * @param segments the segments of the path, including the name of the repository
+     */
+    public static boolean isPublic(Repository repository, List<String> segments) {
+        PathComponent component = repository;
+        for (int index = 1; ; index++) {
+            AccessControl readAccess = component.getReadAccess();
+            if (readAccess == null || !readAccess.getPublic()) {
+                return false;
+            }
+            if (!component.hasPaths() || index >= segments.size()) {
+                return true;
+            }
+            Optional<PathComponent> next = component.getPath(segments.get(index));
+            if (next.isEmpty()) {
+                return true;
+            }
+            component = next.get();
+        }
+    }
+
+    private boolean hasSessionCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (sessionCookieNames.contains(cookie.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -20,27 +20,70 @@
  */
 package eu.openanalytics.crane.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import eu.openanalytics.crane.model.config.AuthorizedClientCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 
-public class RedisOAuth2AuthorizedClientService implements OAuth2AuthorizedClientService {
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Stores the {@link OAuth2AuthorizedClient}s in Redis.
+ * When the {@link AuthorizedClientCache} is enabled, the clients are kept in a local cache, such that most requests
+ * don't need a round-trip to Redis. The cached client expires together with its access token. When a client is saved
+ * or removed, the other replicas are notified (using Redis pub/sub) to evict their copy.
+ */
+public class RedisOAuth2AuthorizedClientService implements OAuth2AuthorizedClientService, MessageListener {
+
+    public static final ChannelTopic INVALIDATION_TOPIC = new ChannelTopic("crane_oauth_authorized_clients_invalidation");
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final RedisTemplate<String, OAuth2AuthorizedClient> redisTemplate;
 
+    private final Cache<Key, OAuth2AuthorizedClient> cache;
+
+    private final Clock clock = Clock.systemUTC();
+
+    // used to ignore the invalidation messages sent by this instance
+    private final String instanceId = UUID.randomUUID().toString();
+
     private String redisKey;
 
     private HashOperations<String, String, OAuth2AuthorizedClient> ops;
 
-    public RedisOAuth2AuthorizedClientService(RedisTemplate<String, OAuth2AuthorizedClient> redisTemplate) {
+    public RedisOAuth2AuthorizedClientService(RedisTemplate<String, OAuth2AuthorizedClient> redisTemplate, AuthorizedClientCache settings, MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
+        if (settings.isEnabled()) {
+            this.cache = Caffeine.newBuilder()
+                .scheduler(Scheduler.systemScheduler())
+                .maximumSize(settings.getMaximumSize())
+                .expireAfter(new AccessTokenExpiry(settings.getMaxTtl()))
+                .recordStats()
+                .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "oauth2-authorized-clients");
+        } else {
+            this.cache = null;
+        }
     }
 
     @PostConstruct
@@ -51,20 +94,101 @@ public class RedisOAuth2AuthorizedClientService implements OAuth2AuthorizedClien
 
     @Override
     public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId, String principalName) {
+        if (cache == null) {
+            return cast(load(clientRegistrationId, principalName));
+        }
+        // concurrent loads of the same client share a single Redis request, an absent client is not cached
+        return cast(cache.get(new Key(clientRegistrationId, principalName), key -> load(key.clientRegistrationId, key.principalName)));
+    }
+
+    private OAuth2AuthorizedClient load(String clientRegistrationId, String principalName) {
         logger.debug("Load AuthorizedClient for {}", principalName);
-        return (T) ops.get(redisKey + '_' + clientRegistrationId, principalName);
+        return ops.get(redisKey + '_' + clientRegistrationId, principalName);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends OAuth2AuthorizedClient> T cast(OAuth2AuthorizedClient authorizedClient) {
+        return (T) authorizedClient;
     }
 
     @Override
     public void saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication principal) {
         logger.debug("Save AuthorizedClient for {}", principal.getName());
-        ops.put(redisKey + '_' + authorizedClient.getClientRegistration().getRegistrationId(), principal.getName(), authorizedClient);
+        String clientRegistrationId = authorizedClient.getClientRegistration().getRegistrationId();
+        ops.put(redisKey + '_' + clientRegistrationId, principal.getName(), authorizedClient);
+        if (cache != null) {
+            cache.put(new Key(clientRegistrationId, principal.getName()), authorizedClient);
+        }
+        publishInvalidation(clientRegistrationId, principal.getName());
     }
 
     @Override
     public void removeAuthorizedClient(String clientRegistrationId, String principalName) {
         logger.debug("Remove AuthorizedClient for {}", principalName);
         ops.delete(redisKey + '_' + clientRegistrationId, principalName);
+        if (cache != null) {
+            cache.invalidate(new Key(clientRegistrationId, principalName));
+        }
+        publishInvalidation(clientRegistrationId, principalName);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+        if (cache == null || parts.length != 3 || parts[0].equals(instanceId)) {
+            return;
+        }
+        logger.debug("Evict AuthorizedClient for {}", parts[2]);
+        cache.invalidate(new Key(parts[1], parts[2]));
+    }
+
+    private void publishInvalidation(String clientRegistrationId, String principalName) {
+        byte[] channel = INVALIDATION_TOPIC.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] body = (instanceId + '\n' + clientRegistrationId + '\n' + principalName).getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, body));
+        } catch (Exception e) {
+            // the cached copies on the other replicas expire at the latest after the max TTL
+            logger.warn("Failed to publish invalidation of AuthorizedClient for {}", principalName, e);
+        }
+    }
+
+    private record Key(String clientRegistrationId, String principalName) {
+    }
+
+    /**
+     * Expires an entry when the access token expires, bounded by the max TTL.
+     */
+    private class AccessTokenExpiry implements Expiry<Key, OAuth2AuthorizedClient> {
+
+        private final Duration maxTtl;
+
+        AccessTokenExpiry(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(Key key, OAuth2AuthorizedClient value, long currentTime) {
+            Instant expiresAt = value.getAccessToken() == null ? null : value.getAccessToken().getExpiresAt();
+            if (expiresAt == null) {
+                return maxTtl.toNanos();
+            }
+            Duration remaining = Duration.between(clock.instant(), expiresAt);
+            if (remaining.isNegative()) {
+                return 0;
+            }
+            return remaining.compareTo(maxTtl) < 0 ? remaining.toNanos() : maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, OAuth2AuthorizedClient value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, OAuth2AuthorizedClient value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 
 }
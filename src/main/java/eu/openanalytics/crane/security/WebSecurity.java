@@ -21,18 +21,28 @@
 package eu.openanalytics.crane.security;
 
 import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.config.RepositoryRouter;
 import eu.openanalytics.crane.security.auditing.AuditingService;
 import eu.openanalytics.crane.service.spel.SpecExpressionContext;
 import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.AuthenticationEventPublisher;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.annotation.web.configurers.oauth2.server.resource.OAuth2ResourceServerConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.authority.mapping.NullAuthoritiesMapper;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.web.DefaultRedirectStrategy;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.access.ExceptionTranslationFilter;
@@ -40,10 +50,13 @@ import org.springframework.security.web.authentication.SavedRequestAwareAuthenti
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.authentication.logout.LogoutSuccessHandler;
 import org.springframework.security.web.authentication.logout.SimpleUrlLogoutSuccessHandler;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
 import org.springframework.security.web.savedrequest.HttpSessionRequestCache;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
@@ -66,11 +79,35 @@ public class WebSecurity {
         this.tokenParser = new TokenParser(config);
     }
 
+    /**
+     * Stateless filter chain for anonymous reads of public files (see {@link PublicReadRequestMatcher}).
+     * These requests never create a session and skip the CSRF, OAuth2 and re-authorization filters. Any other request
+     * (including requests to private repositories) is handled by {@link #filterChain}.
+     */
     @Bean
-    protected SecurityFilterChain filterChain(HttpSecurity http, SavedRequestAwareAuthenticationSuccessHandler successHandler, CraneConfig craneConfig) throws Exception {
+    @Order(1)
+    protected SecurityFilterChain publicReadFilterChain(HttpSecurity http, RepositoryRouter repositoryRouter, ServerProperties serverProperties) throws Exception {
+        http
+                .securityMatcher(new PublicReadRequestMatcher(repositoryRouter, getSessionCookieNames(serverProperties)))
+                .csrf(AbstractHttpConfigurer::disable)
+                .logout(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .securityContext(context -> context.securityContextRepository(new RequestAttributeSecurityContextRepository()))
+                .requestCache(cache -> cache.requestCache(new NullRequestCache()))
+                .authorizeHttpRequests(authz -> authz.anyRequest().permitAll())
+                .exceptionHandling(exception -> exception.accessDeniedPage("/error"))
+                .addFilterBefore(new PathTraversalFilter(), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new BlockInternalUrlFilter(), UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(new CustomExceptionTranslationFilter(), ExceptionTranslationFilter.class);
+        return http.build();
+    }
+
+    @Bean
+    protected SecurityFilterChain filterChain(HttpSecurity http, SavedRequestAwareAuthenticationSuccessHandler successHandler, CraneConfig craneConfig, RepositoryRouter repositoryRouter,
+                                              MeterRegistry meterRegistry, ObjectProvider<JwtRevocationChecker> revocationChecker, OidcMetadataManager oidcMetadataManager,
+                                              AuthenticationEventPublisher authenticationEventPublisher) throws Exception {
         HttpSessionRequestCache requestCache = new HttpSessionRequestCache();
         requestCache.setMatchingRequestParameterName(null);
-        List<String> repoMatchers = craneConfig.getRepositories().stream().map(r -> "/" + r.getName() + "/**").toList();
 
         http
                 .csrf(Customizer.withDefaults())
@@ -90,11 +127,11 @@ public class WebSecurity {
                                 "/error",
                                 "/logout-success"
                         ).permitAll()
-                        .requestMatchers(repoMatchers.toArray(new String[0])).permitAll()
+                        .requestMatchers(repositoryRouter.getRequestMatcher()).permitAll()
                         .anyRequest().authenticated())
                 .exceptionHandling(exception -> exception.accessDeniedPage("/error"))
                 .requestCache((cache) -> cache.requestCache(requestCache))
-                .oauth2ResourceServer(server -> server.jwt(jwt -> jwt.jwkSetUri(craneConfig.getJwksUri()).jwtAuthenticationConverter(new CraneJwtAuthenticationConverter(tokenParser, craneConfig))))
+                .oauth2ResourceServer(server -> server.jwt(jwt -> configureJwt(jwt, oidcMetadataManager.createJwtDecoder(), meterRegistry, revocationChecker.getIfAvailable(), authenticationEventPublisher)))
                 .oauth2Login(login -> login
                     .userInfoEndpoint(endpoint -> endpoint.userAuthoritiesMapper(new NullAuthoritiesMapper()).oidcUserService(new CraneOidcUserService(tokenParser, craneConfig)))
                     .successHandler(successHandler)
@@ -109,6 +146,16 @@ public class WebSecurity {
         return http.build();
     }
 
+    private void configureJwt(OAuth2ResourceServerConfigurer<HttpSecurity>.JwtConfigurer jwt, JwtDecoder jwtDecoder, MeterRegistry meterRegistry, JwtRevocationChecker revocationChecker,
+                              AuthenticationEventPublisher authenticationEventPublisher) {
+        CraneJwtAuthenticationConverter converter = new CraneJwtAuthenticationConverter(tokenParser, craneConfig);
+        if (!craneConfig.getJwtCache().isEnabled()) {
+            jwt.decoder(jwtDecoder).jwtAuthenticationConverter(converter);
+            return;
+        }
+        jwt.authenticationManager(new CachingJwtAuthenticationManager(jwtDecoder, converter, craneConfig.getJwtCache(), revocationChecker, authenticationEventPublisher, meterRegistry));
+    }
+
     public LogoutSuccessHandler getLogoutSuccessHandler() {
         return (httpServletRequest, httpServletResponse, authentication) -> {
             String resolvedLogoutUrl = "/logout-success";
@@ -146,4 +193,14 @@ public class WebSecurity {
         return savedRequestAwareAuthenticationSuccessHandler;
     }
 
+    private Set<String> getSessionCookieNames(ServerProperties serverProperties) {
+        // the servlet container uses JSESSIONID by default, Spring Session (i.e. Redis) uses SESSION
+        Set<String> names = new HashSet<>(Set.of("JSESSIONID", "SESSION"));
+        String configuredName = serverProperties.getServlet().getSession().getCookie().getName();
+        if (configuredName != null) {
+            names.add(configuredName);
+        }
+        return Set.copyOf(names);
+    }
+
 }
@@ -33,13 +33,26 @@ import java.util.Map;
 
 public abstract class AbstractAuditingService {
 
+    /**
+     * Request attribute that overrides the request path of the audit events, used when the request is rewritten
+     * without forwarding it.
+     */
+    public static final String REQUEST_PATH_ATTRIBUTE = AbstractAuditingService.class.getName() + ".REQUEST_PATH";
+
     private final UserService userService;
 
     protected final AuditEventRepository auditEventRepository;
 
+    private final AuditEventAggregator auditEventAggregator;
+
     public AbstractAuditingService(UserService userService, AuditEventRepository auditEventRepository) {
+        this(userService, auditEventRepository, null);
+    }
+
+    public AbstractAuditingService(UserService userService, AuditEventRepository auditEventRepository, AuditEventAggregator auditEventAggregator) {
         this.userService = userService;
         this.auditEventRepository = auditEventRepository;
+        this.auditEventAggregator = auditEventAggregator;
     }
 
     public void createErrorHandlerAuditEvent(HttpServletRequest request, HttpStatus status) {
@@ -63,7 +76,11 @@ public abstract class AbstractAuditingService {
     }
 
     public void createAuditEvent(String type, Map<String, Object> data) {
-        auditEventRepository.add(new AuditEvent(getPrincipal(), type, data));
+        String principal = getPrincipal();
+        if (auditEventAggregator != null && auditEventAggregator.aggregate(principal, type, data)) {
+            return;
+        }
+        auditEventRepository.add(new AuditEvent(principal, type, data));
     }
 
     public Map<String, Object> createData() {
@@ -79,13 +96,18 @@ public abstract class AbstractAuditingService {
         HttpServletRequest request = attributes.getRequest();
         return Map.of(
                 "request_method", request.getMethod(),
-                "request_path", preparePath(request.getRequestURI()),
+                "request_path", preparePath(request),
                 "response_status", 0,
                 "remote_address", request.getRemoteAddr()
         );
     }
 
-    private String preparePath(String requestURI) {
+    private String preparePath(HttpServletRequest request) {
+        Object requestPath = request.getAttribute(REQUEST_PATH_ATTRIBUTE);
+        if (requestPath != null) {
+            return requestPath.toString();
+        }
+        String requestURI = request.getRequestURI();
         if (requestURI.contains("__file")) {
             return requestURI.replaceFirst("/__file", "");
         }
@@ -95,7 +117,7 @@ public abstract class AbstractAuditingService {
     public Map<String, Object> createData(HttpServletRequest request, HttpStatus status) {
         return Map.of(
                 "request_method", request.getMethod(),
-                "request_path", preparePath(request.getRequestURI()),
+                "request_path", preparePath(request),
                 "response_status", status.value(),
                 "remote_address", request.getRemoteAddr()
         );
@@ -0,0 +1,212 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes audit events to an {@link AuditEventSink} using a single background thread.
+ * Request threads only add the event to a lock-free queue. The writer thread drains the queue and flushes the sink
+ * once per batch (group commit) instead of once per event.
+ */
+public class AsyncAuditWriter implements AutoCloseable {
+
+    private static final long BLOCKED_PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final AuditEventSink sink;
+    private final AuditLoggingOptions options;
+    private final ConcurrentLinkedQueue<AuditEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final Counter droppedEvents;
+    private final Counter writeErrors;
+    private final Thread writerThread;
+    private volatile boolean writerWaiting;
+    private volatile boolean closed;
+    // number of events that were taken from the queue but not yet flushed
+    private volatile int pendingFlush;
+
+    public AsyncAuditWriter(AuditEventSink sink, AuditLoggingOptions options, MeterRegistry meterRegistry, String name) {
+        this.sink = sink;
+        this.options = options;
+        Gauge.builder("crane.audit.queue.depth", queueSize, AtomicInteger::get)
+            .tag("sink", name)
+            .register(meterRegistry);
+        droppedEvents = meterRegistry.counter("crane.audit.dropped", "sink", name);
+        writeErrors = meterRegistry.counter("crane.audit.errors", "sink", name);
+        writerThread = new Thread(this::run, "crane-audit-writer-" + name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Adds the event to the queue. Depending on the backpressure policy, waits or drops the event when the queue is
+     * full.
+     */
+    public void submit(AuditEvent event) {
+        if (closed) {
+            droppedEvents.increment();
+            return;
+        }
+        while (true) {
+            int size = queueSize.get();
+            if (size < options.getQueueCapacity()) {
+                if (queueSize.compareAndSet(size, size + 1)) {
+                    break;
+                }
+                continue;
+            }
+            // the queue is never drained when the writer thread died
+            if (options.getBackpressure() == AuditLoggingOptions.BackpressurePolicy.DROP || closed || !writerThread.isAlive()) {
+                droppedEvents.increment();
+                return;
+            }
+            wakeUpWriter();
+            LockSupport.parkNanos(BLOCKED_PRODUCER_PARK_NANOS);
+        }
+        queue.offer(event);
+        if (writerWaiting) {
+            wakeUpWriter();
+        }
+        // the event was added after close() drained the queue
+        if (closed && !writerThread.isAlive() && queue.remove(event)) {
+            queueSize.decrementAndGet();
+            droppedEvents.increment();
+        }
+    }
+
+    private void wakeUpWriter() {
+        LockSupport.unpark(writerThread);
+    }
+
+    private void run() {
+        long flushIntervalNanos = options.getFlushInterval().toNanos();
+        long lastFlush = System.nanoTime();
+        int unflushed = 0;
+        while (true) {
+            AuditEvent event = queue.poll();
+            if (event != null) {
+                queueSize.decrementAndGet();
+                unflushed++;
+                pendingFlush = unflushed;
+                write(event);
+                if (unflushed >= options.getMaxBatchSize() || System.nanoTime() - lastFlush >= flushIntervalNanos) {
+                    flush();
+                    unflushed = 0;
+                    lastFlush = System.nanoTime();
+                }
+                continue;
+            }
+            // the queue is drained: commit the batch
+            if (unflushed > 0 && (options.getDurability() != AuditLoggingOptions.Durability.NONE || System.nanoTime() - lastFlush >= flushIntervalNanos)) {
+                flush();
+                unflushed = 0;
+                lastFlush = System.nanoTime();
+            }
+            pendingFlush = unflushed;
+            if (closed && queue.isEmpty()) {
+                if (unflushed > 0) {
+                    flush();
+                }
+                pendingFlush = 0;
+                return;
+            }
+            writerWaiting = true;
+            if (queue.isEmpty() && !closed) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            writerWaiting = false;
+        }
+    }
+
+    private void write(AuditEvent event) {
+        try {
+            sink.write(event);
+        } catch (Throwable e) {
+            // an Error must not stop the writer thread, since producers would wait forever for space in the queue
+            writeErrors.increment();
+            logger.error("Could not write audit event", e);
+        }
+    }
+
+    private void flush() {
+        try {
+            sink.flush(options.getDurability() == AuditLoggingOptions.Durability.FSYNC);
+        } catch (Throwable e) {
+            writeErrors.increment();
+            logger.error("Could not flush audit events", e);
+        }
+    }
+
+    /**
+     * Waits (at most the given duration) until all submitted events are flushed to the sink.
+     */
+    public void awaitFlushed(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while ((queueSize.get() > 0 || pendingFlush > 0) && System.nanoTime() < deadline && writerThread.isAlive()) {
+            wakeUpWriter();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        wakeUpWriter();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!writerThread.isAlive()) {
+            // events submitted concurrently with close() can be added after the writer thread stopped
+            int remaining = 0;
+            AuditEvent event;
+            while ((event = queue.poll()) != null) {
+                queueSize.decrementAndGet();
+                write(event);
+                remaining++;
+            }
+            if (remaining > 0) {
+                flush();
+            }
+        }
+        sink.close();
+    }
+
+}
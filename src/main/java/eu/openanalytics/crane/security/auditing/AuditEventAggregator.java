@@ -0,0 +1,184 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.AuditAggregation;
+import eu.openanalytics.crane.model.config.Repository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Folds high-volume audit events (see {@link AuditAggregation}) into counters, which are recorded as a single summary
+ * event per window. The summary event has the same type and principal as the aggregated events and contains the
+ * number of events in the `count` field.
+ */
+@Component
+public class AuditEventAggregator {
+
+    private static final String ANONYMOUS_USER = "anonymousUser";
+
+    private final AuditAggregation settings;
+    private final CraneConfig craneConfig;
+    private final AuditEventRepository auditEventRepository;
+    private final Set<String> types;
+    private final ConcurrentHashMap<Key, WindowCounter> counters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+    // counters removed from the map during the previous flush, a request thread might still have incremented them
+    private List<WindowCounter> retired = new ArrayList<>();
+    private Instant windowStart = Instant.now();
+
+    public AuditEventAggregator(CraneConfig craneConfig, AuditEventRepository auditEventRepository) {
+        this.settings = craneConfig.getAuditAggregation();
+        this.craneConfig = craneConfig;
+        this.auditEventRepository = auditEventRepository;
+        this.types = Set.copyOf(settings.getTypes());
+        if (settings.isEnabled()) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "crane-audit-aggregator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long window = settings.getWindow().toMillis();
+            executor.scheduleAtFixedRate(this::flush, window, window, TimeUnit.MILLISECONDS);
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * @return whether the event was aggregated (and thus must not be recorded individually)
+     */
+    public boolean aggregate(String principal, String type, Map<String, Object> data) {
+        if (!settings.isEnabled() || !types.contains(type) || AuditAggregation.NEVER_AGGREGATED.contains(type)) {
+            return false;
+        }
+        if (settings.isAnonymousOnly() && !ANONYMOUS_USER.equals(principal)) {
+            return false;
+        }
+        if (!(data.get("request_path") instanceof String path)) {
+            return false;
+        }
+        String repository = getRepositoryName(path);
+        if (settings.isPublicRepositoriesOnly() && !isPublicRepository(repository)) {
+            return false;
+        }
+        Key key = new Key(type, principal, repository, path, data.get("response_status"));
+        while (true) {
+            WindowCounter counter = counters.get(key);
+            if (counter == null) {
+                counter = counters.computeIfAbsent(key, WindowCounter::new);
+            }
+            if (!counter.retired) {
+                counter.count.increment();
+                return true;
+            }
+        }
+    }
+
+    private String getRepositoryName(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return end == -1 ? path.substring(start) : path.substring(start, end);
+    }
+
+    private boolean isPublicRepository(String name) {
+        Repository repository = craneConfig.getRepository(name);
+        return repository != null && repository.getReadAccess() != null && repository.getReadAccess().getPublic();
+    }
+
+    synchronized void flush() {
+        Instant windowEnd = Instant.now();
+        List<WindowCounter> nowRetired = new ArrayList<>();
+        for (WindowCounter counter : counters.values()) {
+            long count = counter.count.sumThenReset();
+            if (count > 0) {
+                counter.idle = false;
+                emit(counter.key, count, windowEnd);
+            } else if (counter.idle) {
+                // no events for two windows, remove the counter such that the map does not grow unbounded
+                counters.remove(counter.key, counter);
+                counter.retired = true;
+                nowRetired.add(counter);
+            } else {
+                counter.idle = true;
+            }
+        }
+        for (WindowCounter counter : retired) {
+            long count = counter.count.sumThenReset();
+            if (count > 0) {
+                emit(counter.key, count, windowEnd);
+            }
+        }
+        retired = nowRetired;
+        windowStart = windowEnd;
+    }
+
+    private void emit(Key key, long count, Instant windowEnd) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("repository", key.repository);
+        data.put("request_path", key.path);
+        data.put("response_status", key.status);
+        data.put("count", count);
+        data.put("window_start", windowStart.toString());
+        data.put("window_end", windowEnd.toString());
+        auditEventRepository.add(new AuditEvent(windowEnd, key.principal, key.type, data));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            flush();
+        }
+    }
+
+    private record Key(String type, String principal, String repository, String path, Object status) {
+    }
+
+    private static class WindowCounter {
+
+        private final Key key;
+        private final LongAdder count = new LongAdder();
+        private volatile boolean retired;
+        private boolean idle;
+
+        WindowCounter(Key key) {
+            this.key = key;
+        }
+
+    }
+
+}
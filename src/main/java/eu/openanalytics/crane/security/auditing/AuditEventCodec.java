@@ -0,0 +1,91 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encoding of audit events in the audit log files. The encoding of a file is detected using its first byte, therefore
+ * files (or segments) written using different encodings can be read transparently.
+ */
+public abstract class AuditEventCodec {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    public static AuditEventCodec of(AuditLoggingOptions.Encoding encoding, ObjectMapper objectMapper) {
+        return switch (encoding) {
+            case JSON -> new JsonAuditEventCodec(objectMapper);
+            case BINARY -> new BinaryAuditEventCodec(objectMapper);
+        };
+    }
+
+    /**
+     * @return the encoding of the given stream, or null when the stream is empty
+     */
+    public static AuditLoggingOptions.Encoding detect(InputStream inputStream) throws IOException {
+        int firstByte = inputStream.read();
+        if (firstByte == -1) {
+            return null;
+        }
+        return firstByte == BinaryAuditEventCodec.MAGIC[0] ? AuditLoggingOptions.Encoding.BINARY : AuditLoggingOptions.Encoding.JSON;
+    }
+
+    /**
+     * Reads the events (and their byte offset) from a stream positioned at the start of the file, skipping events
+     * before the seek offset and stopping at the end offset.
+     */
+    public static void read(InputStream inputStream, long seekOffset, long endOffset, ObjectMapper objectMapper, EventConsumer consumer) throws IOException {
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, READ_BUFFER_SIZE);
+        bufferedInputStream.mark(1);
+        AuditLoggingOptions.Encoding encoding = detect(bufferedInputStream);
+        if (encoding == null) {
+            return;
+        }
+        bufferedInputStream.reset();
+        of(encoding, objectMapper).decode(bufferedInputStream, seekOffset, endOffset, consumer);
+    }
+
+    public abstract AuditLoggingOptions.Encoding getEncoding();
+
+    /**
+     * @param newFile whether the stream is at the start of a new file
+     */
+    public abstract Encoder newEncoder(OutputStream outputStream, boolean newFile) throws IOException;
+
+    protected abstract void decode(InputStream inputStream, long seekOffset, long endOffset, EventConsumer consumer) throws IOException;
+
+    public interface Encoder {
+        void write(AuditEvent event) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface EventConsumer {
+        void accept(long offset, AuditEvent event);
+    }
+
+}
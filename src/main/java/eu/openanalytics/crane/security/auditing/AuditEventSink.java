@@ -0,0 +1,46 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the {@link AsyncAuditWriter}. A sink is only used by the single writer thread and therefore does not
+ * need to be thread-safe.
+ */
+public interface AuditEventSink extends Closeable {
+
+    /**
+     * Writes the event, the sink may buffer it until {@link #flush} is called.
+     */
+    void write(AuditEvent event) throws IOException;
+
+    /**
+     * Makes all written events visible to readers.
+     *
+     * @param sync whether to wait until the events are persisted
+     */
+    void flush(boolean sync) throws IOException;
+
+}
@@ -0,0 +1,90 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Command line tool to convert audit log files (or segments) between the JSON and binary encoding, for example to
+ * inspect a binary audit log:
+ * <pre>
+ * java -cp crane.jar -Dloader.main=eu.openanalytics.crane.security.auditing.AuditLogConverter \
+ *   org.springframework.boot.loader.launch.PropertiesLauncher audit.log.000001.gz audit.json json
+ * </pre>
+ * The encoding of the input is detected automatically, files ending with `.gz` are (de)compressed.
+ * When replacing a segment by a converted file, remove the `.idx` file of the segment, such that it is rebuilt.
+ */
+public class AuditLogConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: AuditLogConverter <input> <output> <json|binary>");
+            System.exit(1);
+        }
+        AuditLoggingOptions.Encoding encoding = AuditLoggingOptions.Encoding.valueOf(args[2].toUpperCase(Locale.ROOT));
+        long count = convert(Path.of(args[0]), Path.of(args[1]), encoding);
+        System.out.printf("Converted %d audit events%n", count);
+    }
+
+    public static long convert(Path input, Path output, AuditLoggingOptions.Encoding encoding) throws IOException {
+        ObjectMapper objectMapper = FileAuditEventRepository.createObjectMapper();
+        AuditEventCodec codec = AuditEventCodec.of(encoding, objectMapper);
+        long[] count = {0};
+        try (InputStream inputStream = open(input); OutputStream outputStream = create(output)) {
+            AuditEventCodec.Encoder encoder = codec.newEncoder(outputStream, true);
+            AuditEventCodec.read(inputStream, 0, Long.MAX_VALUE, objectMapper, (offset, event) -> {
+                try {
+                    encoder.write(event);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not write audit event to " + output, e);
+                }
+            });
+        }
+        return count[0];
+    }
+
+    private static InputStream open(Path path) throws IOException {
+        InputStream inputStream = Files.newInputStream(path);
+        return isCompressed(path) ? new GZIPInputStream(inputStream) : inputStream;
+    }
+
+    private static OutputStream create(Path path) throws IOException {
+        OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path));
+        return isCompressed(path) ? new GZIPOutputStream(outputStream) : outputStream;
+    }
+
+    private static boolean isCompressed(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+
+}
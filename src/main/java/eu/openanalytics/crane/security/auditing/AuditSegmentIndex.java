@@ -0,0 +1,160 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Summary and sparse index of a segment of the audit log. Every {@link #INTERVAL} events, the byte offset of the event
+ * is stored together with the maximum timestamp of all events before that offset. Since events are not necessarily
+ * written in timestamp order, this prefix-maximum allows to skip everything before an offset when searching for events
+ * after a given time.
+ */
+public class AuditSegmentIndex {
+
+    public static final int INTERVAL = 256;
+    // when a segment contains more principals, the principals are not tracked
+    private static final int MAX_PRINCIPALS = 1024;
+
+    private long eventCount;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private Set<String> principals = new TreeSet<>();
+    private Set<String> types = new TreeSet<>();
+    private List<long[]> entries = new ArrayList<>();
+
+    public void record(long offset, Instant timestamp, String principal, String type) {
+        if (eventCount % INTERVAL == 0) {
+            entries.add(new long[]{offset, maxTimestamp});
+        }
+        eventCount++;
+        long millis = timestamp.toEpochMilli();
+        minTimestamp = Math.min(minTimestamp, millis);
+        maxTimestamp = Math.max(maxTimestamp, millis);
+        if (principals != null) {
+            principals.add(principal);
+            if (principals.size() > MAX_PRINCIPALS) {
+                principals = null;
+            }
+        }
+        types.add(type);
+    }
+
+    /**
+     * @return false when the segment certainly does not contain any event matching the query
+     */
+    public boolean mayContain(String principal, Instant after, String type) {
+        if (eventCount == 0) {
+            return false;
+        }
+        if (after != null && maxTimestamp < after.toEpochMilli()) {
+            return false;
+        }
+        if (principal != null && principals != null && !principals.contains(principal)) {
+            return false;
+        }
+        return type == null || types.contains(type);
+    }
+
+    /**
+     * @return the offset from which to read in order to find all events after the given time
+     */
+    public long seekOffset(Instant after) {
+        if (after == null) {
+            return 0;
+        }
+        long afterMillis = after.toEpochMilli();
+        long offset = 0;
+        for (long[] entry : entries) {
+            // all events before this entry have a timestamp smaller than the requested time
+            if (entry[1] < afterMillis) {
+                offset = entry[0];
+            } else {
+                break;
+            }
+        }
+        return offset;
+    }
+
+    public AuditSegmentIndex copy() {
+        AuditSegmentIndex copy = new AuditSegmentIndex();
+        copy.eventCount = eventCount;
+        copy.minTimestamp = minTimestamp;
+        copy.maxTimestamp = maxTimestamp;
+        copy.principals = principals == null ? null : new TreeSet<>(principals);
+        copy.types = new TreeSet<>(types);
+        copy.entries = new ArrayList<>(entries);
+        return copy;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public void setMinTimestamp(long minTimestamp) {
+        this.minTimestamp = minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public void setMaxTimestamp(long maxTimestamp) {
+        this.maxTimestamp = maxTimestamp;
+    }
+
+    public Set<String> getPrincipals() {
+        return principals;
+    }
+
+    public void setPrincipals(Set<String> principals) {
+        this.principals = principals;
+    }
+
+    public Set<String> getTypes() {
+        return types;
+    }
+
+    public void setTypes(Set<String> types) {
+        this.types = types;
+    }
+
+    public List<long[]> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<long[]> entries) {
+        this.entries = entries;
+    }
+
+}
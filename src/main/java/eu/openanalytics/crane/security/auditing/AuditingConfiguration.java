@@ -21,21 +21,40 @@
 package eu.openanalytics.crane.security.auditing;
 
 import eu.openanalytics.crane.config.CraneConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.actuate.audit.AuditEventRepository;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.StringRedisTemplate;
 
 import java.io.IOException;
 
 @Configuration
 public class AuditingConfiguration {
 
+    @Configuration
+    @ConditionalOnProperty(value = "app.audit-redis.enabled", havingValue = "true")
+    @Import(RedisAutoConfiguration.class)
+    public static class RedisAuditingConfiguration {
+
+        @Bean
+        public AuditEventRepository redisAuditEventRepository(CraneConfig craneConfig, StringRedisTemplate redisTemplate, ObjectProvider<MeterRegistry> meterRegistry) {
+            return new RedisAuditEventRepository(redisTemplate, craneConfig.getAuditRedis(), craneConfig.getAuditLoggingOptions(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        }
+
+    }
+
     @Bean
     @ConditionalOnProperty(value = "app.audit-logging")
-    public AuditEventRepository auditEventRepository(CraneConfig craneConfig) throws IOException {
-        return new FileAuditEventRepository(craneConfig);
+    @ConditionalOnMissingBean
+    public AuditEventRepository auditEventRepository(CraneConfig craneConfig, ObjectProvider<MeterRegistry> meterRegistry) throws IOException {
+        return new FileAuditEventRepository(craneConfig, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
     }
 
     @Bean
@@ -30,8 +30,8 @@ import org.springframework.stereotype.Service;
 @Service
 public class AuditingService extends AbstractAuditingService {
 
-    public AuditingService(UserService userService, AuditEventRepository auditEventRepository) {
-        super(userService, auditEventRepository);
+    public AuditingService(UserService userService, AuditEventRepository auditEventRepository, AuditEventAggregator auditEventAggregator) {
+        super(userService, auditEventRepository, auditEventAggregator);
     }
 
     @EventListener
@@ -0,0 +1,328 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of audit events. A file starts with {@link #MAGIC} followed by length-prefixed records:
+ * <ul>
+ *     <li>`D`: adds a string to the dictionary of the file (the id of the string is its position in the dictionary)</li>
+ *     <li>`R`: clears the dictionary (written when appending to an existing file)</li>
+ *     <li>`E`: an audit event, repeated strings (principal, type, keys and values of the data) refer to the dictionary</li>
+ * </ul>
+ * Every record consists of the tag, the length of the payload (as varint) and the payload.
+ */
+public class BinaryAuditEventCodec extends AuditEventCodec {
+
+    static final byte[] MAGIC = {0, 'C', 'A', 'L', 1};
+
+    private static final byte RECORD_DICTIONARY = 'D';
+    private static final byte RECORD_RESET = 'R';
+    private static final byte RECORD_EVENT = 'E';
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING_REFERENCE = 1;
+    private static final byte VALUE_STRING = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_TRUE = 4;
+    private static final byte VALUE_FALSE = 5;
+    private static final byte VALUE_DOUBLE = 6;
+    private static final byte VALUE_JSON = 7;
+
+    private static final int MAX_DICTIONARY_SIZE = 65_536;
+    private static final int MAX_DICTIONARY_STRING_LENGTH = 512;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ObjectMapper objectMapper;
+
+    public BinaryAuditEventCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public AuditLoggingOptions.Encoding getEncoding() {
+        return AuditLoggingOptions.Encoding.BINARY;
+    }
+
+    @Override
+    public Encoder newEncoder(OutputStream outputStream, boolean newFile) throws IOException {
+        if (newFile) {
+            outputStream.write(MAGIC);
+        } else {
+            writeRecord(outputStream, RECORD_RESET, new byte[0], 0);
+        }
+        return new BinaryEncoder(outputStream);
+    }
+
+    @Override
+    protected void decode(InputStream inputStream, long seekOffset, long endOffset, EventConsumer consumer) throws IOException {
+        byte[] magic = inputStream.readNBytes(MAGIC.length);
+        long offset = magic.length;
+        List<String> dictionary = new ArrayList<>();
+        byte[] payload = new byte[512];
+        int tag;
+        // the dictionary is built from the start of the file, events before the seek offset are skipped without decoding
+        while (offset < endOffset && (tag = inputStream.read()) != -1) {
+            long recordOffset = offset;
+            Input lengthInput = new Input(inputStream);
+            int length = (int) lengthInput.readVarLong();
+            offset += 1 + lengthInput.read;
+            if (tag == RECORD_EVENT && recordOffset < seekOffset) {
+                inputStream.skipNBytes(length);
+                offset += length;
+                continue;
+            }
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            if (inputStream.readNBytes(payload, 0, length) < length) {
+                // incomplete record at the end of the file
+                return;
+            }
+            offset += length;
+            switch (tag) {
+                case RECORD_DICTIONARY -> dictionary.add(new String(payload, 0, length, StandardCharsets.UTF_8));
+                case RECORD_RESET -> dictionary.clear();
+                case RECORD_EVENT -> {
+                    try {
+                        consumer.accept(recordOffset, decodeEvent(new Input(payload, length), dictionary));
+                    } catch (IOException | RuntimeException e) {
+                        logger.debug("Skipping invalid audit log record at offset {}", recordOffset);
+                    }
+                }
+                default -> throw new IOException("Invalid audit log record at offset " + recordOffset);
+            }
+        }
+    }
+
+    private AuditEvent decodeEvent(Input input, List<String> dictionary) throws IOException {
+        Instant timestamp = Instant.ofEpochSecond(zigZagDecode(input.readVarLong()), input.readVarLong());
+        String principal = (String) input.readValue(dictionary);
+        String type = (String) input.readValue(dictionary);
+        int size = (int) input.readVarLong();
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            data.put((String) input.readValue(dictionary), input.readValue(dictionary));
+        }
+        return new AuditEvent(timestamp, principal, type, data);
+    }
+
+    private static void writeRecord(OutputStream outputStream, byte tag, byte[] payload, int length) throws IOException {
+        outputStream.write(tag);
+        writeVarLong(outputStream, length);
+        outputStream.write(payload, 0, length);
+    }
+
+    private static void writeVarLong(OutputStream outputStream, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            outputStream.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        outputStream.write((int) value);
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private class BinaryEncoder implements Encoder {
+
+        private final OutputStream outputStream;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final ExposedByteArrayOutputStream payload = new ExposedByteArrayOutputStream();
+
+        BinaryEncoder(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void write(AuditEvent event) throws IOException {
+            payload.reset();
+            writeVarLong(payload, zigZagEncode(event.getTimestamp().getEpochSecond()));
+            writeVarLong(payload, event.getTimestamp().getNano());
+            writeValue(event.getPrincipal());
+            writeValue(event.getType());
+            writeVarLong(payload, event.getData().size());
+            for (Map.Entry<String, Object> entry : event.getData().entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+            // dictionary records are written while encoding the payload, therefore they precede the event
+            writeRecord(outputStream, RECORD_EVENT, payload.buffer(), payload.size());
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                payload.write(VALUE_NULL);
+            } else if (value instanceof String string) {
+                writeString(string);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                payload.write(VALUE_LONG);
+                writeVarLong(payload, zigZagEncode(((Number) value).longValue()));
+            } else if (value instanceof Boolean bool) {
+                payload.write(bool ? VALUE_TRUE : VALUE_FALSE);
+            } else if (value instanceof Double || value instanceof Float) {
+                payload.write(VALUE_DOUBLE);
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                for (int i = 0; i < 8; i++) {
+                    payload.write((int) (bits >>> (8 * i)));
+                }
+            } else {
+                payload.write(VALUE_JSON);
+                writeBytes(objectMapper.writeValueAsBytes(value));
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            Integer id = dictionary.get(value);
+            if (id == null && dictionary.size() < MAX_DICTIONARY_SIZE && value.length() <= MAX_DICTIONARY_STRING_LENGTH) {
+                id = dictionary.size();
+                dictionary.put(value, id);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeRecord(outputStream, RECORD_DICTIONARY, bytes, bytes.length);
+            }
+            if (id != null) {
+                payload.write(VALUE_STRING_REFERENCE);
+                writeVarLong(payload, id);
+            } else {
+                payload.write(VALUE_STRING);
+                writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            writeVarLong(payload, bytes.length);
+            payload.write(bytes);
+        }
+    }
+
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Reads from either a stream or a byte array, keeping track of the number of bytes read.
+     */
+    private class Input {
+
+        private final InputStream inputStream;
+        private final byte[] bytes;
+        private final int length;
+        private int read;
+
+        Input(InputStream inputStream) {
+            this.inputStream = inputStream;
+            this.bytes = null;
+            this.length = Integer.MAX_VALUE;
+        }
+
+        Input(byte[] bytes, int length) {
+            this.inputStream = null;
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        int readByte() throws IOException {
+            if (read >= length) {
+                throw new EOFException();
+            }
+            int b = inputStream != null ? inputStream.read() : bytes[read] & 0xFF;
+            if (b == -1) {
+                throw new EOFException();
+            }
+            read++;
+            return b;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid varint in audit log");
+        }
+
+        private byte[] readBytes() throws IOException {
+            int size = (int) readVarLong();
+            if (size > length - read) {
+                throw new EOFException();
+            }
+            byte[] result = new byte[size];
+            System.arraycopy(bytes, read, result, 0, size);
+            read += size;
+            return result;
+        }
+
+        Object readValue(List<String> dictionary) throws IOException {
+            int tag = readByte();
+            return switch (tag) {
+                case VALUE_NULL -> null;
+                case VALUE_STRING_REFERENCE -> dictionary.get((int) readVarLong());
+                case VALUE_STRING -> new String(readBytes(), StandardCharsets.UTF_8);
+                case VALUE_LONG -> {
+                    long value = zigZagDecode(readVarLong());
+                    // same types as when parsing JSON
+                    yield value == (int) value ? (Object) (int) value : (Object) value;
+                }
+                case VALUE_TRUE -> true;
+                case VALUE_FALSE -> false;
+                case VALUE_DOUBLE -> {
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits |= (long) readByte() << (8 * i);
+                    }
+                    yield Double.longBitsToDouble(bits);
+                }
+                case VALUE_JSON -> objectMapper.readValue(readBytes(), Object.class);
+                default -> throw new IOException("Invalid value type in audit log: " + tag);
+            };
+        }
+    }
+
+}
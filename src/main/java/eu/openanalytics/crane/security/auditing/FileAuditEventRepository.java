@@ -20,45 +20,35 @@
  */
 package eu.openanalytics.crane.security.auditing;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import eu.openanalytics.crane.config.CraneConfig;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.boot.actuate.audit.AuditEventRepository;
-import org.springframework.scheduling.annotation.Async;
 
-import java.io.*;
-import java.nio.file.Path;
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 public class FileAuditEventRepository implements AuditEventRepository, AutoCloseable {
-    private final Path auditLogFileName;
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .registerModule(new JavaTimeModule())
-            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
-            .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
-    private final FileWriter writer;
+    private static final Duration FIND_FLUSH_TIMEOUT = Duration.ofSeconds(1);
+    private final ObjectMapper objectMapper = createObjectMapper();
+    private final SegmentedAuditLog auditLog;
+    private final AsyncAuditWriter writer;
 
-    public FileAuditEventRepository(CraneConfig craneConfig) throws IOException {
-        auditLogFileName = craneConfig.getAuditLoggingPath();
-        writer = new FileWriter(auditLogFileName.toFile(), true);
+    public FileAuditEventRepository(CraneConfig craneConfig, MeterRegistry meterRegistry) throws IOException {
+        auditLog = new SegmentedAuditLog(craneConfig.getAuditLoggingPath(), objectMapper, craneConfig.getAuditLoggingOptions());
+        writer = new AsyncAuditWriter(auditLog, craneConfig.getAuditLoggingOptions(), meterRegistry, "file");
     }
 
-    @Async
     @Override
-    public synchronized void add(AuditEvent event) {
-        try {
-            writer.write(this.objectMapper.writeValueAsString(event) + "\n");
-            writer.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    public void add(AuditEvent event) {
+        writer.submit(event);
     }
 
     @Override
@@ -68,33 +58,16 @@ public class FileAuditEventRepository implements AuditEventRepository, AutoClose
 
     @Override
     public List<AuditEvent> find(String principal, Instant after, String type) {
-        if (!auditLogFileName.toFile().exists()) {
-            return new ArrayList<>();
-        }
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(auditLogFileName.toFile()));
-            return reader.lines().map((eventString) -> {
-                try {
-                    return objectMapper.readValue(eventString, AuditEventData.class).auditEvent();
-                } catch (JsonProcessingException e) {
-                    throw new RuntimeException(e);
-                }
-            }).filter(auditEvent -> {
-                boolean condition = true;
-                if (principal != null) {
-                    condition = auditEvent.getPrincipal().equals(principal);
-                }
-                if (after != null) {
-                    condition = condition && auditEvent.getTimestamp().isAfter(after);
-                }
-                if (type != null) {
-                    condition = condition && auditEvent.getType().equals(type);
-                }
-                return condition;
-            }).toList();
-        } catch (FileNotFoundException e) {
-            return new ArrayList<>();
-        }
+        // make sure the events that are still queued are included
+        writer.awaitFlushed(FIND_FLUSH_TIMEOUT);
+        return auditLog.find(principal, after, type);
+    }
+
+    public static ObjectMapper createObjectMapper() {
+        return new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
     }
 
     public static class AuditEventData extends AuditEvent {
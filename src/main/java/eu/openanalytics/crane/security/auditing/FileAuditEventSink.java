@@ -0,0 +1,76 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import com.google.common.io.CountingOutputStream;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends audit events to a file (using the given {@link AuditEventCodec}), using a buffer that is only written to the
+ * file on {@link #flush}.
+ */
+public class FileAuditEventSink implements AuditEventSink {
+
+    private final FileChannel channel;
+    private final CountingOutputStream outputStream;
+    private final long initialSize;
+    private final AuditEventCodec.Encoder encoder;
+
+    public FileAuditEventSink(Path path, AuditEventCodec codec, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.initialSize = channel.size();
+        this.outputStream = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize));
+        this.encoder = codec.newEncoder(outputStream, initialSize == 0);
+    }
+
+    @Override
+    public void write(AuditEvent event) throws IOException {
+        encoder.write(event);
+    }
+
+    @Override
+    public void flush(boolean sync) throws IOException {
+        outputStream.flush();
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * @return the size of the file, including the events that are not yet flushed
+     */
+    public long size() {
+        return initialSize + outputStream.getCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes every audit event as a line of JSON.
+ */
+public class JsonAuditEventCodec extends AuditEventCodec {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ObjectMapper objectMapper;
+
+    public JsonAuditEventCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper.copy()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Override
+    public AuditLoggingOptions.Encoding getEncoding() {
+        return AuditLoggingOptions.Encoding.JSON;
+    }
+
+    @Override
+    public Encoder newEncoder(OutputStream outputStream, boolean newFile) {
+        return event -> {
+            objectMapper.writeValue(outputStream, event);
+            outputStream.write('\n');
+        };
+    }
+
+    @Override
+    protected void decode(InputStream inputStream, long seekOffset, long endOffset, EventConsumer consumer) throws IOException {
+        inputStream.skipNBytes(seekOffset);
+        ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+        long offset = seekOffset;
+        long lineStart = seekOffset;
+        int b;
+        while (offset < endOffset && (b = inputStream.read()) != -1) {
+            offset++;
+            if (b == '\n') {
+                if (line.size() > 0) {
+                    AuditEvent event = parse(line.toString(StandardCharsets.UTF_8));
+                    if (event != null) {
+                        consumer.accept(lineStart, event);
+                    }
+                }
+                line.reset();
+                lineStart = offset;
+            } else {
+                line.write(b);
+            }
+        }
+    }
+
+    private AuditEvent parse(String line) {
+        try {
+            return objectMapper.readValue(line, FileAuditEventRepository.AuditEventData.class).auditEvent();
+        } catch (IOException e) {
+            logger.debug("Skipping invalid audit log line: {}", line);
+            return null;
+        }
+    }
+
+}
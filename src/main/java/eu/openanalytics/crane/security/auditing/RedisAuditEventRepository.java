@@ -0,0 +1,182 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import eu.openanalytics.crane.model.config.AuditRedis;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link AuditEventRepository} storing the events in a Redis Stream, such that the events of all Crane instances can be
+ * queried. Events are written asynchronously (using {@link AsyncAuditWriter}), every batch is sent as a single
+ * pipeline of `XADD` commands. The length of the stream is capped (approximately) to the configured max-length.
+ */
+public class RedisAuditEventRepository implements AuditEventRepository, AutoCloseable {
+
+    private static final Duration FIND_FLUSH_TIMEOUT = Duration.ofSeconds(1);
+    // allowed difference between the clocks of the Crane instances and of Redis
+    private static final Duration CLOCK_SKEW_TOLERANCE = Duration.ofMinutes(1);
+    private static final TypeReference<Map<String, Object>> DATA_TYPE = new TypeReference<>() {
+    };
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final StringRedisTemplate redisTemplate;
+    private final AuditRedis settings;
+    private final ObjectMapper objectMapper = FileAuditEventRepository.createObjectMapper();
+    private final AsyncAuditWriter writer;
+
+    public RedisAuditEventRepository(StringRedisTemplate redisTemplate, AuditRedis settings, AuditLoggingOptions options, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.settings = settings;
+        this.writer = new AsyncAuditWriter(new RedisStreamSink(), options, meterRegistry, "redis");
+    }
+
+    @Override
+    public void add(AuditEvent event) {
+        writer.submit(event);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public List<AuditEvent> find(String principal, Instant after, String type) {
+        // make sure the events that are still queued are included
+        writer.awaitFlushed(FIND_FLUSH_TIMEOUT);
+        // the id of an entry is the time it was added, which is not before the timestamp of the event (apart from clock skew)
+        String start = after == null ? "-" : after.minus(CLOCK_SKEW_TOLERANCE).toEpochMilli() + "-0";
+        List<AuditEvent> result = new ArrayList<>();
+        while (true) {
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(settings.getStreamKey(),
+                Range.rightUnbounded(Range.Bound.inclusive(start)), Limit.limit().count(settings.getQueryBatchSize()));
+            if (records == null || records.isEmpty()) {
+                return result;
+            }
+            for (MapRecord<String, Object, Object> record : records) {
+                AuditEvent event = parse(record);
+                if (event != null && matches(event, principal, after, type)) {
+                    result.add(event);
+                }
+            }
+            if (records.size() < settings.getQueryBatchSize()) {
+                return result;
+            }
+            RecordId last = records.get(records.size() - 1).getId();
+            start = last.getTimestamp() + "-" + (last.getSequence() + 1);
+        }
+    }
+
+    private AuditEvent parse(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> value = record.getValue();
+        try {
+            Map<String, Object> data = objectMapper.readValue((String) value.get("data"), DATA_TYPE);
+            return new AuditEvent(Instant.parse((String) value.get("timestamp")), (String) value.get("principal"), (String) value.get("type"), data);
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.debug("Skipping invalid audit event {} in Redis stream", record.getId());
+            return null;
+        }
+    }
+
+    private boolean matches(AuditEvent event, String principal, Instant after, String type) {
+        if (principal != null && !event.getPrincipal().equals(principal)) {
+            return false;
+        }
+        if (after != null && !event.getTimestamp().isAfter(after)) {
+            return false;
+        }
+        return type == null || event.getType().equals(type);
+    }
+
+    /**
+     * Collects the events of a batch and sends them to Redis in a single pipeline when the batch is flushed.
+     */
+    private class RedisStreamSink implements AuditEventSink {
+
+        private final List<Map<byte[], byte[]>> batch = new ArrayList<>();
+
+        @Override
+        public void write(AuditEvent event) throws IOException {
+            Map<byte[], byte[]> fields = new HashMap<>();
+            fields.put(bytes("timestamp"), bytes(event.getTimestamp().toString()));
+            fields.put(bytes("principal"), bytes(event.getPrincipal()));
+            fields.put(bytes("type"), bytes(event.getType()));
+            fields.put(bytes("data"), objectMapper.writeValueAsBytes(event.getData()));
+            batch.add(fields);
+        }
+
+        @Override
+        public void flush(boolean sync) throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            byte[] key = bytes(settings.getStreamKey());
+            RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions.maxlen(settings.getMaxLength()).approximateTrimming(true);
+            try {
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Map<byte[], byte[]> fields : batch) {
+                        connection.streamCommands().xAdd(StreamRecords.rawBytes(fields).withStreamKey(key), options);
+                    }
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                throw new IOException("Could not write audit events to Redis", e);
+            } finally {
+                // the writer logs and counts the failure, the events are not retried
+                batch.clear();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private byte[] bytes(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,446 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.security.auditing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Audit log stored as a sequence of segments. Events are appended to the active segment (the file configured using
+ * `app.audit-logging`), once it exceeds the segment size or age it is renamed to `<file>.<sequence>` and a new active
+ * segment is started. Every segment has an {@link AuditSegmentIndex} (stored next to the segment as `<segment>.idx`),
+ * which allows queries to skip segments and to seek to the requested time range.
+ * Closed segments are compressed and removed (according to the retention settings) by a background thread.
+ */
+public class SegmentedAuditLog implements AuditEventSink {
+
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Duration RETENTION_INTERVAL = Duration.ofMinutes(1);
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Path activePath;
+    private final ObjectMapper objectMapper;
+    private final AuditLoggingOptions options;
+    private final AuditEventCodec codec;
+    private final Pattern segmentPattern;
+    private final ScheduledExecutorService maintenanceExecutor;
+    // protects the segments, the active index and the rolling of the active segment
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private FileAuditEventSink activeSink;
+    private AuditSegmentIndex activeIndex;
+    private long activeSequence;
+    private Instant activeCreated;
+    private volatile long flushedSize;
+
+    public SegmentedAuditLog(Path activePath, ObjectMapper objectMapper, AuditLoggingOptions options) throws IOException {
+        this.activePath = activePath;
+        this.objectMapper = objectMapper;
+        this.options = options;
+        this.codec = AuditEventCodec.of(options.getEncoding(), objectMapper);
+        this.segmentPattern = Pattern.compile("^" + Pattern.quote(activePath.getFileName().toString()) + "\\.(\\d+)(" + Pattern.quote(GZIP_SUFFIX) + ")?$");
+        loadSegments();
+        activeSequence = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        activeIndex = Files.exists(activePath) ? buildIndex(activePath) : new AuditSegmentIndex();
+        if (Files.exists(activePath) && detectEncoding(activePath) != codec.getEncoding()) {
+            // the encoding was changed, events of different encodings cannot be mixed in a single segment
+            closeActiveSegment();
+        }
+        activeSink = new FileAuditEventSink(activePath, codec, bufferSize());
+        activeCreated = Instant.now();
+        flushedSize = activeSink.size();
+
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crane-audit-log-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Segment segment : segments.values()) {
+            if (!segment.isCompressed()) {
+                maintenanceExecutor.execute(() -> compress(segment.sequence));
+            }
+        }
+        maintenanceExecutor.execute(this::enforceRetention);
+        if (options.getRetentionMaxAge() != null) {
+            long interval = RETENTION_INTERVAL.toMillis();
+            maintenanceExecutor.scheduleWithFixedDelay(this::enforceRetention, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private int bufferSize() {
+        return (int) options.getBufferSize().toBytes();
+    }
+
+    private void loadSegments() throws IOException {
+        Path directory = activePath.toAbsolutePath().getParent();
+        Set<Long> sequences = new HashSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String fileName = file.getFileName().toString();
+                if (fileName.startsWith(activePath.getFileName().toString()) && fileName.endsWith(TEMP_SUFFIX)) {
+                    // left behind by an interrupted compression
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                Matcher matcher = segmentPattern.matcher(fileName);
+                if (matcher.matches()) {
+                    sequences.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        for (long sequence : sequences) {
+            Path plain = segmentPath(sequence);
+            Path compressed = compressedPath(plain);
+            Path segment = plain;
+            if (Files.exists(compressed)) {
+                // the compressed file is only created once it is complete
+                Files.deleteIfExists(plain);
+                segment = compressed;
+            }
+            segments.put(sequence, new Segment(sequence, segment, loadIndex(plain, segment)));
+        }
+    }
+
+    private AuditSegmentIndex loadIndex(Path plain, Path segment) throws IOException {
+        Path indexPath = indexPath(plain);
+        if (Files.exists(indexPath)) {
+            try {
+                return objectMapper.readValue(indexPath.toFile(), AuditSegmentIndex.class);
+            } catch (IOException e) {
+                logger.warn("Could not read audit log index '{}', rebuilding it", indexPath, e);
+            }
+        }
+        AuditSegmentIndex index = buildIndex(segment);
+        objectMapper.writeValue(indexPath.toFile(), index);
+        return index;
+    }
+
+    private AuditSegmentIndex buildIndex(Path segment) throws IOException {
+        AuditSegmentIndex index = new AuditSegmentIndex();
+        try (InputStream inputStream = openFile(segment)) {
+            AuditEventCodec.read(inputStream, 0, Long.MAX_VALUE, objectMapper,
+                (offset, event) -> index.record(offset, event.getTimestamp(), event.getPrincipal(), event.getType()));
+        }
+        return index;
+    }
+
+    private Path indexPath(Path plainSegment) {
+        return plainSegment.resolveSibling(plainSegment.getFileName() + INDEX_SUFFIX);
+    }
+
+    private Path compressedPath(Path plainSegment) {
+        return plainSegment.resolveSibling(plainSegment.getFileName() + GZIP_SUFFIX);
+    }
+
+    private Path segmentPath(long sequence) {
+        return activePath.resolveSibling("%s.%06d".formatted(activePath.getFileName(), sequence));
+    }
+
+    @Override
+    public void write(AuditEvent event) throws IOException {
+        lock.writeLock().lock();
+        try {
+            activeIndex.record(activeSink.size(), event.getTimestamp(), event.getPrincipal(), event.getType());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        activeSink.write(event);
+    }
+
+    @Override
+    public void flush(boolean sync) throws IOException {
+        activeSink.flush(sync);
+        flushedSize = activeSink.size();
+        if (flushedSize >= options.getSegmentSize().toBytes() || isActiveSegmentExpired()) {
+            roll();
+        }
+    }
+
+    private boolean isActiveSegmentExpired() {
+        return options.getSegmentMaxAge() != null
+            && activeIndex.getEventCount() > 0
+            && !activeCreated.plus(options.getSegmentMaxAge()).isAfter(Instant.now());
+    }
+
+    private void roll() throws IOException {
+        long sequence;
+        lock.writeLock().lock();
+        try {
+            activeSink.close();
+            sequence = closeActiveSegment();
+            activeSink = new FileAuditEventSink(activePath, codec, bufferSize());
+            activeCreated = Instant.now();
+            flushedSize = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maintenanceExecutor.execute(() -> {
+            compress(sequence);
+            enforceRetention();
+        });
+    }
+
+    private long closeActiveSegment() throws IOException {
+        long sequence = activeSequence;
+        Path segmentPath = segmentPath(sequence);
+        objectMapper.writeValue(indexPath(segmentPath).toFile(), activeIndex);
+        Files.move(activePath, segmentPath, StandardCopyOption.ATOMIC_MOVE);
+        segments.put(sequence, new Segment(sequence, segmentPath, activeIndex));
+        activeSequence++;
+        activeIndex = new AuditSegmentIndex();
+        return sequence;
+    }
+
+    private AuditLoggingOptions.Encoding detectEncoding(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            AuditLoggingOptions.Encoding encoding = AuditEventCodec.detect(inputStream);
+            return encoding == null ? codec.getEncoding() : encoding;
+        }
+    }
+
+    private void compress(long sequence) {
+        if (options.getCompression() != AuditLoggingOptions.Compression.GZIP) {
+            return;
+        }
+        Segment segment;
+        lock.readLock().lock();
+        try {
+            segment = segments.get(sequence);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (segment == null || segment.isCompressed()) {
+            return;
+        }
+        Path compressed = compressedPath(segment.path);
+        Path temp = compressed.resolveSibling(compressed.getFileName() + TEMP_SUFFIX);
+        try {
+            try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(temp), COMPRESSION_BUFFER_SIZE)) {
+                Files.copy(segment.path, outputStream);
+            }
+            Files.move(temp, compressed, StandardCopyOption.ATOMIC_MOVE);
+            lock.writeLock().lock();
+            try {
+                if (segments.containsKey(sequence)) {
+                    segments.put(sequence, new Segment(sequence, compressed, segment.index));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // readers that already opened the plain file can continue reading it
+            Files.delete(segment.path);
+        } catch (IOException e) {
+            logger.warn("Could not compress audit log segment '{}'", segment.path, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void enforceRetention() {
+        if (options.getRetentionMaxAge() == null && options.getRetentionMaxSize() == null) {
+            return;
+        }
+        List<Segment> expired = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            long totalSize = flushedSize;
+            for (Segment segment : segments.values()) {
+                totalSize += segment.size();
+            }
+            long minTimestamp = options.getRetentionMaxAge() == null ? Long.MIN_VALUE : Instant.now().minus(options.getRetentionMaxAge()).toEpochMilli();
+            long maxSize = options.getRetentionMaxSize() == null ? Long.MAX_VALUE : options.getRetentionMaxSize().toBytes();
+            // remove the oldest segments first, the active segment is never removed
+            for (Segment segment : segments.values()) {
+                if (segment.index.getMaxTimestamp() >= minTimestamp && totalSize <= maxSize) {
+                    break;
+                }
+                expired.add(segment);
+                totalSize -= segment.size();
+            }
+            for (Segment segment : expired) {
+                segments.remove(segment.sequence);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (Segment segment : expired) {
+            logger.info("Removing audit log segment '{}' because of the retention settings", segment.path);
+            try {
+                Files.deleteIfExists(segment.path);
+                Files.deleteIfExists(indexPath(segmentPath(segment.sequence)));
+            } catch (IOException e) {
+                logger.warn("Could not remove audit log segment '{}'", segment.path, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        activeSink.close();
+        maintenanceExecutor.shutdown();
+        try {
+            if (!maintenanceExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                maintenanceExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public List<AuditEvent> find(String principal, Instant after, String type) {
+        List<Segment> snapshot = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            snapshot.addAll(segments.values());
+            snapshot.add(new Segment(activeSequence, activePath, activeIndex.copy(), flushedSize));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<AuditEvent> result = new ArrayList<>();
+        for (Segment segment : snapshot) {
+            if (!segment.index.mayContain(principal, after, type)) {
+                continue;
+            }
+            try (InputStream inputStream = open(segment)) {
+                AuditEventCodec.read(inputStream, segment.index.seekOffset(after), segment.length, objectMapper, (offset, event) -> {
+                    if (matches(event, principal, after, type)) {
+                        result.add(event);
+                    }
+                });
+            } catch (NoSuchFileException e) {
+                logger.debug("Audit log segment '{}' no longer exists", segment.path);
+            } catch (IOException e) {
+                logger.warn("Could not read audit log segment '{}'", segment.path, e);
+            }
+        }
+        return result;
+    }
+
+    private InputStream open(Segment segment) throws IOException {
+        if (segment.path.equals(activePath)) {
+            FileChannel channel = FileChannel.open(activePath);
+            lock.readLock().lock();
+            try {
+                if (segment.sequence == activeSequence) {
+                    return Channels.newInputStream(channel);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            // the segment was rolled in the meantime
+            channel.close();
+            return openFile(segmentPath(segment.sequence));
+        }
+        return openFile(segment.path);
+    }
+
+    /**
+     * Opens the (uncompressed) content of a segment. When the plain file was compressed in the meantime, the compressed
+     * file is opened instead.
+     */
+    private InputStream openFile(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(GZIP_SUFFIX)) {
+            return new GZIPInputStream(Files.newInputStream(path), COMPRESSION_BUFFER_SIZE);
+        }
+        try {
+            return Files.newInputStream(path);
+        } catch (NoSuchFileException e) {
+            return new GZIPInputStream(Files.newInputStream(compressedPath(path)), COMPRESSION_BUFFER_SIZE);
+        }
+    }
+
+    private boolean matches(AuditEvent event, String principal, Instant after, String type) {
+        if (principal != null && !event.getPrincipal().equals(principal)) {
+            return false;
+        }
+        if (after != null && !event.getTimestamp().isAfter(after)) {
+            return false;
+        }
+        return type == null || event.getType().equals(type);
+    }
+
+    private static class Segment {
+        private final long sequence;
+        private final Path path;
+        private final AuditSegmentIndex index;
+        private final long length;
+
+        Segment(long sequence, Path path, AuditSegmentIndex index) {
+            this(sequence, path, index, Long.MAX_VALUE);
+        }
+
+        Segment(long sequence, Path path, AuditSegmentIndex index, long length) {
+            this.sequence = sequence;
+            this.path = path;
+            this.index = index;
+            this.length = length;
+        }
+
+        boolean isCompressed() {
+            return path.getFileName().toString().endsWith(GZIP_SUFFIX);
+        }
+
+        long size() {
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+
+}
@@ -20,6 +20,8 @@
  */
 package eu.openanalytics.crane.service;
 
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.runtime.CranePath;
 import eu.openanalytics.crane.security.auditing.AbstractAuditingService;
 
 public abstract class AbstractAccessControlService {
@@ -29,7 +31,13 @@ public abstract class AbstractAccessControlService {
     protected UserService userService;
 
     public boolean canAccess(String repository, String path) {
-        boolean canAccess = pathAccessControlService.canAccess(repository, path) && posixAccessControlService.canAccess(repository, path);
+        Repository repositoryObject = pathAccessControlService.craneConfig.getRepository(repository);
+        boolean canAccess = false;
+        if (repositoryObject != null) {
+            // parsed once and shared by both services and the controller
+            CranePath cranePath = CranePath.forCurrentRequest(repositoryObject, path);
+            canAccess = pathAccessControlService.canAccess(cranePath) && posixAccessControlService.canAccess(cranePath);
+        }
         if (!canAccess) {
             auditingService.createAuthorizationDeniedEvent(userService.getUser());
         }
@@ -24,8 +24,13 @@ import eu.openanalytics.crane.config.CraneConfig;
 import eu.openanalytics.crane.model.config.AccessControl;
 import eu.openanalytics.crane.model.config.PathComponent;
 import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.runtime.CranePath;
 import eu.openanalytics.crane.service.spel.SpecExpressionContext;
 import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import eu.openanalytics.crane.timing.RequestTimings;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
@@ -33,20 +38,23 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.security.web.util.matcher.IpAddressMatcher;
 
-import java.nio.file.Path;
-import java.util.Iterator;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractPathAccessControlService {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
     protected final SpecExpressionResolver specExpressionResolver;
     protected final UserService userService;
     protected final CraneConfig craneConfig;
+    private final Meter.MeterProvider<Timer> accessControlTimer;
 
-    public AbstractPathAccessControlService(SpecExpressionResolver specExpressionResolver, UserService userService, CraneConfig craneConfig) {
+    public AbstractPathAccessControlService(SpecExpressionResolver specExpressionResolver, UserService userService, CraneConfig craneConfig, MeterRegistry meterRegistry, String access) {
         this.specExpressionResolver = specExpressionResolver;
         this.userService = userService;
         this.craneConfig = craneConfig;
+        this.accessControlTimer = Timer.builder("crane.access-control.duration")
+            .tags("type", "path", "access", access)
+            .withRegistry(meterRegistry);
     }
 
     protected abstract AccessControl getAccessControl(PathComponent pathComponent);
@@ -60,33 +68,47 @@ public abstract class AbstractPathAccessControlService {
     }
 
     public boolean canAccess(Repository repository, String fullPath) {
-        return canAccess(userService.getUser(), fullPath, repository, Path.of(fullPath).iterator());
+        return canAccess(CranePath.forCurrentRequest(repository, fullPath));
     }
 
-    public boolean canAccess(Authentication auth, String fullPath, PathComponent pathComponent, Iterator<Path> path) {
-        String accessPath = pathComponent.getName() + fullPath;
+    public boolean canAccess(CranePath path) {
+        long start = System.nanoTime();
+        boolean result;
+        try (RequestTimings.Phase ignored = RequestTimings.start("path-acl", path.getRepository().getName())) {
+            result = canAccess(userService.getUser(), path, path.getRepository(), 0);
+        }
+        accessControlTimer.withTags("repository", path.getRepository().getName(), "result", result ? "allowed" : "denied")
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    /**
+     * Checks whether the user can access the given path component and (recursively) the components matching the
+     * segments of the path, starting at the segment with the given index.
+     */
+    public boolean canAccess(Authentication auth, CranePath path, PathComponent pathComponent, int index) {
         if (!canAccess(auth, getAccessControl(pathComponent))) {
-            logger.debug("User {} cannot access path {} because they cannot access {}", auth.getName(), accessPath, pathComponent.getName());
+            logger.debug("User {} cannot access path {}{} because they cannot access {}", auth.getName(), pathComponent.getName(), path.getRequestPath(), pathComponent.getName());
             return false;
         }
         if (!pathComponent.hasPaths()) {
-            logger.debug("User {} can access path {}, because they can access {}", auth.getName(), accessPath, pathComponent.getName());
+            logger.debug("User {} can access path {}{}, because they can access {}", auth.getName(), pathComponent.getName(), path.getRequestPath(), pathComponent.getName());
             return true;
         }
-        if (!path.hasNext()) {
-            logger.debug("User {} can access path {}, because they can access {}", auth.getName(), accessPath, pathComponent.getName());
+        if (index >= path.getSegments().size()) {
+            logger.debug("User {} can access path {}{}, because they can access {}", auth.getName(), pathComponent.getName(), path.getRequestPath(), pathComponent.getName());
             return true;
         }
 
-        String nextPartOfRequestedPath = path.next().toString();
+        String nextPartOfRequestedPath = path.getSegments().get(index);
         Optional<PathComponent> nextPathComponent = pathComponent.getPath(nextPartOfRequestedPath);
 
         if (nextPathComponent.isEmpty()) {
-            logger.debug("User {} can access path {}, because there is no access-control for {}", auth.getName(), accessPath, nextPartOfRequestedPath);
+            logger.debug("User {} can access path {}{}, because there is no access-control for {}", auth.getName(), pathComponent.getName(), path.getRequestPath(), nextPartOfRequestedPath);
             return true;
         }
 
-        return canAccess(auth, fullPath, nextPathComponent.get(), path);
+        return canAccess(auth, path, nextPathComponent.get(), index + 1);
     }
 
     public boolean canAccess(Authentication auth, AccessControl accessControl) {
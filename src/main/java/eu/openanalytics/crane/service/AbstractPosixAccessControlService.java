@@ -22,7 +22,12 @@ package eu.openanalytics.crane.service;
 
 import eu.openanalytics.crane.config.CraneConfig;
 import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.runtime.CranePath;
 import eu.openanalytics.crane.security.CraneUser;
+import eu.openanalytics.crane.timing.RequestTimings;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
@@ -35,18 +40,23 @@ import java.nio.file.Path;
 import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractPosixAccessControlService {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
     protected final UserService userService;
     protected final CraneConfig craneConfig;
+    private final Meter.MeterProvider<Timer> accessControlTimer;
 
-    protected AbstractPosixAccessControlService(UserService userService, CraneConfig craneConfig) {
+    protected AbstractPosixAccessControlService(UserService userService, CraneConfig craneConfig, MeterRegistry meterRegistry, String access) {
         this.userService = userService;
         this.craneConfig = craneConfig;
+        this.accessControlTimer = Timer.builder("crane.access-control.duration")
+            .tags("type", "posix", "access", access)
+            .withRegistry(meterRegistry);
     }
 
     protected abstract PosixFilePermission getOwnerAccess();
@@ -54,15 +64,30 @@ public abstract class AbstractPosixAccessControlService {
     protected abstract PosixFilePermission getGroupAccess();
 
     public boolean canAccess(Repository repository, String stringPath) {
-        return canAccess(userService.getUser(), stringPath, repository);
+        if (repository == null) {
+            return false;
+        }
+        return canAccess(userService.getUser(), CranePath.forCurrentRequest(repository, stringPath));
     }
 
     public boolean canAccess(String repository, String path) {
-        return canAccess(userService.getUser(), path, craneConfig.getRepository(repository));
+        return canAccess(craneConfig.getRepository(repository), path);
+    }
+
+    public boolean canAccess(CranePath path) {
+        return canAccess(userService.getUser(), path);
     }
 
     public boolean canAccess(Authentication auth, String fullPath, Repository repository) {
-        if (auth == null || repository == null) {
+        if (repository == null) {
+            return false;
+        }
+        return canAccess(auth, CranePath.of(repository, fullPath));
+    }
+
+    public boolean canAccess(Authentication auth, CranePath path) {
+        Repository repository = path.getRepository();
+        if (auth == null) {
             return false;
         }
 
@@ -70,25 +95,39 @@ public abstract class AbstractPosixAccessControlService {
             return true;
         }
 
+        long start = System.nanoTime();
+        boolean result;
+        try (RequestTimings.Phase ignored = RequestTimings.start("posix-acl", repository.getName())) {
+            result = canAccessPath(auth, path);
+        }
+        accessControlTimer.withTags("repository", repository.getName(), "result", result ? "allowed" : "denied")
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private boolean canAccessPath(Authentication auth, CranePath path) {
+        Repository repository = path.getRepository();
         if (!pathSupportsPosix(repository.getStoragePath())) {
             logger.warn("File system is not posix compliant");
             return true;
         }
 
-        Iterator<Path> subsequentPaths = getSubsequentPaths(fullPath);
         Path currentPath = repository.getStoragePath();
-        while (subsequentPaths.hasNext()) {
+        for (String segment : getSegmentsToCheck(path)) {
             if (!canAccessPosix(auth, currentPath)) {
-                logger.debug("User {} cannot access path {} because they cannot access {}", auth.getName(), fullPath, currentPath);
+                logger.debug("User {} cannot access path {} because they cannot access {}", auth.getName(), path.getRequestPath(), currentPath);
                 return false;
             }
-            currentPath = currentPath.resolve(subsequentPaths.next());
+            currentPath = currentPath.resolve(segment);
         }
         return canAccessPosix(auth, currentPath);
     }
 
-    protected Iterator<Path> getSubsequentPaths(String path) {
-        return Path.of(path).iterator();
+    /**
+     * @return the segments of the path that have to be accessible, by default all segments
+     */
+    protected List<String> getSegmentsToCheck(CranePath path) {
+        return path.getSegments();
     }
 
     protected boolean pathSupportsPosix(Path storagePath) {
@@ -21,6 +21,7 @@
 package eu.openanalytics.crane.service;
 
 import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.runtime.CranePath;
 import eu.openanalytics.crane.model.runtime.CraneDirectory;
 import eu.openanalytics.crane.model.runtime.CraneFile;
 import eu.openanalytics.crane.model.runtime.CraneResource;
@@ -44,12 +45,14 @@ public class IndexPageService {
     private final PosixReadAccessControlService posixReadAccessControlService;
     private final PathWriteAccessControlService pathWriteAccessControlService;
     private final PosixWriteAccessControlService posixWriteAccessControlService;
+    private final StorageMetrics storageMetrics;
 
-    public IndexPageService(PathReadAccessControlService pathReadAccessControlService, PosixReadAccessControlService posixReadAccessControlService, PathWriteAccessControlService pathWriteAccessControlService, PosixWriteAccessControlService posixWriteAccessControlService) {
+    public IndexPageService(PathReadAccessControlService pathReadAccessControlService, PosixReadAccessControlService posixReadAccessControlService, PathWriteAccessControlService pathWriteAccessControlService, PosixWriteAccessControlService posixWriteAccessControlService, StorageMetrics storageMetrics) {
         this.pathReadAccessControlService = pathReadAccessControlService;
         this.posixReadAccessControlService = posixReadAccessControlService;
         this.pathWriteAccessControlService = pathWriteAccessControlService;
         this.posixWriteAccessControlService = posixWriteAccessControlService;
+        this.storageMetrics = storageMetrics;
     }
 
     public String getTemplateName(Repository repository) {
@@ -59,28 +62,32 @@ public class IndexPageService {
     public Map<String, Object> getTemplateVariables(Repository repository, Path path) throws IOException {
         List<CraneFile> craneFiles = new ArrayList<>();
         List<CraneDirectory> craneDirectories = new ArrayList<>();
-        try (Stream<Path> dirListing = Files.list(path)) {
-            dirListing.forEach(p -> {
-                CraneResource craneResource = CraneResource.createFromPath(p, repository);
-                if (craneResource == null) {
+        List<Path> dirListing = storageMetrics.record(repository, path, StorageMetrics.Operation.LIST, () -> {
+            try (Stream<Path> listing = Files.list(path)) {
+                return listing.toList();
+            }
+        });
+        dirListing.forEach(p -> {
+            CraneResource craneResource = CraneResource.createFromPath(p, repository);
+            if (craneResource == null) {
+                // TODO
+                return;
+            }
+            CranePath cranePath = CranePath.of(repository, p.toString().substring(repository.getStorageLocation().length()));
+            if (pathReadAccessControlService.canAccess(cranePath) && posixReadAccessControlService.canAccess(cranePath)) {
+                if (craneResource instanceof CraneFile craneFile) {
+                    craneFiles.add(craneFile);
+                } else if (craneResource instanceof CraneDirectory craneDirectory) {
+                    craneDirectories.add(craneDirectory);
+                } else {
                     // TODO
-                    return;
                 }
-                String fullPath = p.toString().substring(repository.getStorageLocation().length());
-                if (pathReadAccessControlService.canAccess(repository, fullPath) && posixReadAccessControlService.canAccess(repository, fullPath)) {
-                    if (craneResource instanceof CraneFile craneFile) {
-                        craneFiles.add(craneFile);
-                    } else if (craneResource instanceof CraneDirectory craneDirectory) {
-                        craneDirectories.add(craneDirectory);
-                    } else {
-                        // TODO
-                    }
-                }
-            });
-        }
+            }
+        });
 
         // check user write access
-        boolean hasWriteAccess = pathWriteAccessControlService.canAccess(repository, path.toString()) && posixWriteAccessControlService.canAccess(repository, path.toString());
+        CranePath writePath = CranePath.of(repository, path.toString());
+        boolean hasWriteAccess = pathWriteAccessControlService.canAccess(writePath) && posixWriteAccessControlService.canAccess(writePath);
 
         // breadcrumbs
         List<CraneResource> breadcrumbs = new ArrayList<>();
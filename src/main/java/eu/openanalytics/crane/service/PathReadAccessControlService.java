@@ -24,12 +24,13 @@ import eu.openanalytics.crane.config.CraneConfig;
 import eu.openanalytics.crane.model.config.AccessControl;
 import eu.openanalytics.crane.model.config.PathComponent;
 import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 
 @Service
 public class PathReadAccessControlService extends AbstractPathAccessControlService {
-    public PathReadAccessControlService(SpecExpressionResolver specExpressionResolver, UserService userService, CraneConfig craneConfig) {
-        super(specExpressionResolver, userService, craneConfig);
+    public PathReadAccessControlService(SpecExpressionResolver specExpressionResolver, UserService userService, CraneConfig craneConfig, MeterRegistry meterRegistry) {
+        super(specExpressionResolver, userService, craneConfig, meterRegistry, "read");
     }
 
     @Override
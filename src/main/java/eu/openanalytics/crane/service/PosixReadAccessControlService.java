@@ -21,14 +21,15 @@
 package eu.openanalytics.crane.service;
 
 import eu.openanalytics.crane.config.CraneConfig;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.attribute.PosixFilePermission;
 
 @Service
 public class PosixReadAccessControlService extends AbstractPosixAccessControlService {
-    public PosixReadAccessControlService(UserService userService, CraneConfig craneConfig) {
-        super(userService, craneConfig);
+    public PosixReadAccessControlService(UserService userService, CraneConfig craneConfig, MeterRegistry meterRegistry) {
+        super(userService, craneConfig, meterRegistry, "read");
     }
 
     @Override
@@ -0,0 +1,86 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.service;
+
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.timing.RequestTimings;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.carlspring.cloud.storage.s3fs.S3Path;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of the storage operations (stat, list and open) performed while handling a request, tagged by
+ * repository and backend (local or s3). Every operation is also recorded as a phase of the current request.
+ */
+@Component
+public class StorageMetrics {
+
+    private final Meter.MeterProvider<Timer> storageTimer;
+
+    public StorageMetrics(MeterRegistry meterRegistry) {
+        this.storageTimer = Timer.builder("crane.storage.duration").withRegistry(meterRegistry);
+    }
+
+    public static String getBackend(Path path) {
+        return path instanceof S3Path ? "s3" : "local";
+    }
+
+    public <T> T record(Repository repository, Path path, Operation operation, StorageOperation<T> storageOperation) throws IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try (RequestTimings.Phase ignored = RequestTimings.start(operation.getTag(), repository.getName())) {
+            T result = storageOperation.execute();
+            success = true;
+            return result;
+        } finally {
+            storageTimer.withTags("repository", repository.getName(), "backend", getBackend(path), "operation", operation.getTag(), "outcome", success ? "success" : "error")
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public enum Operation {
+        STAT("stat"),
+        LIST("list"),
+        OPEN("open");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    @FunctionalInterface
+    public interface StorageOperation<T> {
+        T execute() throws IOException;
+    }
+
+}
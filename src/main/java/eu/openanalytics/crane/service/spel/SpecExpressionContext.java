@@ -22,6 +22,7 @@ package eu.openanalytics.crane.service.spel;
 
 
 import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.runtime.CranePath;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.core.Authentication;
@@ -43,6 +44,8 @@ public class SpecExpressionContext {
 
     private Path path;
 
+    private CranePath cranePath;
+
     private Repository repository;
 
     private List<String> groups;
@@ -73,6 +76,9 @@ public class SpecExpressionContext {
             if (o instanceof Path) {
                 ctx.path = (Path) o;
             }
+            if (o instanceof CranePath) {
+                ctx.cranePath = (CranePath) o;
+            }
         }
         return ctx;
     }
@@ -94,9 +100,17 @@ public class SpecExpressionContext {
     }
 
     public Path getPath() {
+        if (path == null && cranePath != null) {
+            // only converted when the expression uses the path
+            path = Path.of(cranePath.getPath());
+        }
         return path;
     }
 
+    public CranePath getCranePath() {
+        return cranePath;
+    }
+
     public boolean parse(String pattern, String input) {
         Pattern compiledPattern = Pattern.compile(pattern);
         Matcher matcher = compiledPattern.matcher(input);
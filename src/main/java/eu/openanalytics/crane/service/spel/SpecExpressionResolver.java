@@ -23,6 +23,9 @@ package eu.openanalytics.crane.service.spel;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -42,6 +45,8 @@ import org.springframework.expression.spel.support.StandardTypeConverter;
 import org.springframework.expression.spel.support.StandardTypeLocator;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -50,11 +55,22 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class SpecExpressionResolver {
 
+    /**
+     * Maximum number of distinct expressions that get their own timer, any further expression is recorded under a
+     * shared timer in order to bound the cardinality of the metric.
+     */
+    private static final int MAX_TIMED_EXPRESSIONS = 100;
+    private static final int MAX_EXPRESSION_TAG_LENGTH = 100;
+
     private final ApplicationContext appContext;
     private final ExpressionParser expressionParser;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> expressionTimers = new ConcurrentHashMap<>();
+    private final Timer otherExpressionsTimer;
     private final Cache<SpecExpressionContext, StandardEvaluationContext> evaluationCache = Caffeine.newBuilder()
         .scheduler(Scheduler.systemScheduler())
         .expireAfterAccess(1, TimeUnit.MINUTES)
+        .recordStats()
         .build();
 
     private final ParserContext beanExpressionParserContext = new ParserContext() {
@@ -74,15 +90,27 @@ public class SpecExpressionResolver {
         }
     };
 
-    public SpecExpressionResolver(ApplicationContext appContext) {
+    public SpecExpressionResolver(ApplicationContext appContext, MeterRegistry meterRegistry) {
         this.appContext = appContext;
         this.expressionParser = new SpelExpressionParser();
+        this.meterRegistry = meterRegistry;
+        this.otherExpressionsTimer = createTimer("other");
+        CaffeineCacheMetrics.monitor(meterRegistry, evaluationCache, "spel-evaluation-context");
     }
 
     public Object evaluate(String expression, SpecExpressionContext context) {
         if (expression == null) return null;
         if (expression.isEmpty()) return "";
 
+        long start = System.nanoTime();
+        try {
+            return doEvaluate(expression, context);
+        } finally {
+            getTimer(expression).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Object doEvaluate(String expression, SpecExpressionContext context) {
         Expression expr = this.expressionParser.parseExpression(expression, this.beanExpressionParserContext);
 
         ConfigurableBeanFactory beanFactory = ((ConfigurableApplicationContext) appContext).getBeanFactory();
@@ -104,6 +132,23 @@ public class SpecExpressionResolver {
         return expr.getValue(sec);
     }
 
+    private Timer getTimer(String expression) {
+        Timer timer = expressionTimers.get(expression);
+        if (timer != null) {
+            return timer;
+        }
+        if (expressionTimers.size() >= MAX_TIMED_EXPRESSIONS) {
+            return otherExpressionsTimer;
+        }
+        return expressionTimers.computeIfAbsent(expression, e -> createTimer(e.length() > MAX_EXPRESSION_TAG_LENGTH ? e.substring(0, MAX_EXPRESSION_TAG_LENGTH) : e));
+    }
+
+    private Timer createTimer(String tag) {
+        return Timer.builder("crane.spel.duration")
+            .tag("expression", tag)
+            .register(meterRegistry);
+    }
+
     public String evaluateToString(String expression, SpecExpressionContext context) {
         return String.valueOf(evaluate(expression, context));
     }
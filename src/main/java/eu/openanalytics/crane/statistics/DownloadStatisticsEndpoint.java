@@ -0,0 +1,59 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.statistics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes the download statistics at `/actuator/downloadstatistics` (when the endpoint is exposed using
+ * `management.endpoints.web.exposure.include`).
+ */
+@Component
+@Endpoint(id = "downloadstatistics")
+public class DownloadStatisticsEndpoint {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final DownloadStatisticsService downloadStatisticsService;
+
+    public DownloadStatisticsEndpoint(DownloadStatisticsService downloadStatisticsService) {
+        this.downloadStatisticsService = downloadStatisticsService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> statistics(@Nullable String repository, @Nullable Integer limit) {
+        int top = limit == null ? DEFAULT_LIMIT : limit;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", downloadStatisticsService.isEnabled());
+        result.put("repositories", downloadStatisticsService.getRepositories());
+        result.put("topFiles", downloadStatisticsService.getTopFiles(repository, top));
+        result.put("topDirectories", downloadStatisticsService.getTopDirectories(repository, top));
+        result.put("buckets", downloadStatisticsService.getBuckets(repository));
+        return result;
+    }
+
+}
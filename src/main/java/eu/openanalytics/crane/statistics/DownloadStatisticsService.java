@@ -0,0 +1,352 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.statistics;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.DownloadStatistics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the downloads (requests and bytes) per file and per time bucket.
+ * Recording a download only increments striped counters ({@link LongAdder}). A background thread periodically moves
+ * the counts to the {@link DownloadStatisticsStore} (Redis when available, otherwise a file or memory).
+ */
+@Service
+public class DownloadStatisticsService {
+
+    /**
+     * Once max-tracked-files is reached, downloads of new files are counted using this path.
+     */
+    public static final String OTHER_FILES = "(other)";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final DownloadStatistics settings;
+    private final long bucketMillis;
+    private final DownloadStatisticsStore store;
+    private final ConcurrentHashMap<String, RepositoryCounters> repositories = new ConcurrentHashMap<>();
+    private final AtomicInteger trackedFiles = new AtomicInteger();
+    // buckets that are no longer current, but of which the counts are not yet moved to the store
+    private final Queue<Bucket> retiredBuckets = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService executor;
+    // counts that could not be written to the store, these are retried on the next snapshot
+    private DownloadStatisticsSnapshot unsaved = new DownloadStatisticsSnapshot();
+
+    public DownloadStatisticsService(CraneConfig craneConfig, ObjectProvider<StringRedisTemplate> redisTemplate) throws IOException {
+        this.settings = craneConfig.getDownloadStatistics();
+        this.bucketMillis = settings.getBucketDuration().toMillis();
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (!settings.isEnabled()) {
+            store = new InMemoryDownloadStatisticsStore();
+            executor = null;
+            return;
+        }
+        if (template != null) {
+            store = new RedisDownloadStatisticsStore(template, settings.getRedisKeyPrefix());
+        } else if (settings.getStorageLocation() != null) {
+            store = new FileDownloadStatisticsStore(Path.of(settings.getStorageLocation()));
+        } else {
+            store = new InMemoryDownloadStatisticsStore();
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crane-download-statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getSnapshotInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::snapshot, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Records a download, this is called on the request thread.
+     *
+     * @param path  the path of the file, relative to the repository
+     * @param bytes the number of bytes sent to the client (0 when the client was redirected)
+     */
+    public void record(String repository, String path, long bytes) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        RepositoryCounters counters = repositories.get(repository);
+        if (counters == null) {
+            counters = repositories.computeIfAbsent(repository, RepositoryCounters::new);
+        }
+        counters.record(path, bytes, System.currentTimeMillis());
+    }
+
+    synchronized void snapshot() {
+        DownloadStatisticsSnapshot delta = unsaved;
+        unsaved = new DownloadStatisticsSnapshot();
+        for (RepositoryCounters counters : repositories.values()) {
+            counters.files.forEach((path, counter) -> {
+                long requests = counter.requests.sumThenReset();
+                long bytes = counter.bytes.sumThenReset();
+                if (requests > 0 || bytes > 0) {
+                    delta.addFile(counters.name, path, requests, bytes);
+                }
+            });
+            counters.currentBucket.get().drainTo(delta);
+        }
+        Bucket bucket;
+        while ((bucket = retiredBuckets.poll()) != null) {
+            bucket.drainTo(delta);
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        try {
+            store.merge(delta, getMinBucketStart());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not store download statistics, retrying at the next snapshot", e);
+            unsaved.merge(delta);
+        }
+    }
+
+    private long getMinBucketStart() {
+        long now = System.currentTimeMillis();
+        return now - now % bucketMillis - (settings.getBucketCount() - 1) * bucketMillis;
+    }
+
+    /**
+     * @return the persisted statistics combined with the counts since the last snapshot
+     */
+    public synchronized DownloadStatisticsSnapshot getSnapshot() {
+        DownloadStatisticsSnapshot snapshot = loadStore();
+        snapshot.merge(unsaved);
+        for (RepositoryCounters counters : repositories.values()) {
+            counters.files.forEach((path, counter) -> {
+                long requests = counter.requests.sum();
+                long bytes = counter.bytes.sum();
+                if (requests > 0 || bytes > 0) {
+                    snapshot.addFile(counters.name, path, requests, bytes);
+                }
+            });
+            counters.currentBucket.get().addTo(snapshot);
+        }
+        retiredBuckets.forEach(bucket -> bucket.addTo(snapshot));
+        snapshot.pruneBuckets(getMinBucketStart());
+        return snapshot;
+    }
+
+    private DownloadStatisticsSnapshot loadStore() {
+        try {
+            return store.load();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not load download statistics", e);
+            return new DownloadStatisticsSnapshot();
+        }
+    }
+
+    public List<RepositoryStatistics> getRepositories() {
+        List<RepositoryStatistics> result = new ArrayList<>();
+        getSnapshot().getFiles().forEach((repository, files) -> {
+            long requests = 0;
+            long bytes = 0;
+            for (DownloadStatisticsSnapshot.Counts counts : files.values()) {
+                requests += counts.getRequests();
+                bytes += counts.getBytes();
+            }
+            result.add(new RepositoryStatistics(repository, requests, bytes));
+        });
+        result.sort(Comparator.comparingLong(RepositoryStatistics::requests).reversed());
+        return result;
+    }
+
+    /**
+     * @param repository the repository, or null for all repositories
+     */
+    public List<FileStatistics> getTopFiles(String repository, int limit) {
+        List<FileStatistics> result = new ArrayList<>();
+        getSnapshot().getFiles().forEach((name, files) -> {
+            if (repository == null || repository.equals(name)) {
+                files.forEach((path, counts) -> result.add(new FileStatistics(name, path, counts.getRequests(), counts.getBytes())));
+            }
+        });
+        return top(result, limit);
+    }
+
+    /**
+     * @param repository the repository, or null for all repositories
+     */
+    public List<FileStatistics> getTopDirectories(String repository, int limit) {
+        Map<String, Map<String, DownloadStatisticsSnapshot.Counts>> directories = new HashMap<>();
+        getSnapshot().getFiles().forEach((name, files) -> {
+            if (repository == null || repository.equals(name)) {
+                Map<String, DownloadStatisticsSnapshot.Counts> repositoryDirectories = directories.computeIfAbsent(name, n -> new HashMap<>());
+                files.forEach((path, counts) -> {
+                    // count the file in every parent directory
+                    for (int i = path.indexOf('/'); i != -1; i = path.indexOf('/', i + 1)) {
+                        repositoryDirectories.computeIfAbsent(path.substring(0, i + 1), d -> new DownloadStatisticsSnapshot.Counts()).add(counts.getRequests(), counts.getBytes());
+                    }
+                });
+            }
+        });
+        List<FileStatistics> result = new ArrayList<>();
+        directories.forEach((name, repositoryDirectories) -> repositoryDirectories.forEach((path, counts) ->
+            result.add(new FileStatistics(name, path, counts.getRequests(), counts.getBytes()))));
+        return top(result, limit);
+    }
+
+    private List<FileStatistics> top(List<FileStatistics> statistics, int limit) {
+        return statistics.stream()
+            .sorted(Comparator.comparingLong(FileStatistics::requests).reversed().thenComparing(FileStatistics::path))
+            .limit(limit)
+            .toList();
+    }
+
+    /**
+     * @param repository the repository, or null for all repositories
+     */
+    public List<BucketStatistics> getBuckets(String repository) {
+        Map<Long, DownloadStatisticsSnapshot.Counts> buckets = new HashMap<>();
+        getSnapshot().getBuckets().forEach((name, repositoryBuckets) -> {
+            if (repository == null || repository.equals(name)) {
+                repositoryBuckets.forEach((start, counts) -> buckets.computeIfAbsent(start, s -> new DownloadStatisticsSnapshot.Counts()).add(counts.getRequests(), counts.getBytes()));
+            }
+        });
+        return buckets.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(e -> new BucketStatistics(Instant.ofEpochMilli(e.getKey()), e.getValue().getRequests(), e.getValue().getBytes()))
+            .toList();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+            snapshot();
+        }
+    }
+
+    public record RepositoryStatistics(String repository, long requests, long bytes) {
+    }
+
+    public record FileStatistics(String repository, String path, long requests, long bytes) {
+    }
+
+    public record BucketStatistics(Instant start, long requests, long bytes) {
+    }
+
+    private class RepositoryCounters {
+
+        private final String name;
+        private final ConcurrentHashMap<String, Counter> files = new ConcurrentHashMap<>();
+        private final AtomicReference<Bucket> currentBucket = new AtomicReference<>();
+
+        RepositoryCounters(String name) {
+            this.name = name;
+            currentBucket.set(new Bucket(name, 0));
+        }
+
+        void record(String path, long bytes, long now) {
+            Counter counter = files.get(path);
+            if (counter == null) {
+                if (trackedFiles.get() >= settings.getMaxTrackedFiles()) {
+                    counter = files.computeIfAbsent(OTHER_FILES, p -> new Counter());
+                } else {
+                    counter = files.computeIfAbsent(path, p -> {
+                        trackedFiles.incrementAndGet();
+                        return new Counter();
+                    });
+                }
+            }
+            counter.add(bytes);
+
+            long start = now - now % bucketMillis;
+            Bucket bucket = currentBucket.get();
+            if (bucket.start != start) {
+                Bucket next = new Bucket(name, start);
+                if (currentBucket.compareAndSet(bucket, next)) {
+                    retiredBuckets.add(bucket);
+                }
+                bucket = currentBucket.get();
+            }
+            bucket.add(bytes);
+        }
+    }
+
+    private static class Counter {
+
+        protected final LongAdder requests = new LongAdder();
+        protected final LongAdder bytes = new LongAdder();
+
+        void add(long bytes) {
+            requests.increment();
+            if (bytes > 0) {
+                this.bytes.add(bytes);
+            }
+        }
+    }
+
+    private static class Bucket extends Counter {
+
+        private final String repository;
+        private final long start;
+
+        Bucket(String repository, long start) {
+            this.repository = repository;
+            this.start = start;
+        }
+
+        void drainTo(DownloadStatisticsSnapshot snapshot) {
+            long requests = this.requests.sumThenReset();
+            long bytes = this.bytes.sumThenReset();
+            if (requests > 0 || bytes > 0) {
+                snapshot.addBucket(repository, start, requests, bytes);
+            }
+        }
+
+        void addTo(DownloadStatisticsSnapshot snapshot) {
+            long requests = this.requests.sum();
+            long bytes = this.bytes.sum();
+            if (requests > 0 || bytes > 0) {
+                snapshot.addBucket(repository, start, requests, bytes);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.statistics;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Download counts per file and per time bucket, used both for the persisted statistics and for the changes since the
+ * previous snapshot.
+ */
+public class DownloadStatisticsSnapshot {
+
+    // repository -> path -> counts
+    private Map<String, Map<String, Counts>> files = new TreeMap<>();
+    // repository -> start of the bucket (epoch millis) -> counts
+    private Map<String, Map<Long, Counts>> buckets = new TreeMap<>();
+
+    public void addFile(String repository, String path, long requests, long bytes) {
+        files.computeIfAbsent(repository, r -> new TreeMap<>()).computeIfAbsent(path, p -> new Counts()).add(requests, bytes);
+    }
+
+    public void addBucket(String repository, long start, long requests, long bytes) {
+        buckets.computeIfAbsent(repository, r -> new TreeMap<>()).computeIfAbsent(start, s -> new Counts()).add(requests, bytes);
+    }
+
+    public void merge(DownloadStatisticsSnapshot other) {
+        other.files.forEach((repository, paths) -> paths.forEach((path, counts) -> addFile(repository, path, counts.requests, counts.bytes)));
+        other.buckets.forEach((repository, starts) -> starts.forEach((start, counts) -> addBucket(repository, start, counts.requests, counts.bytes)));
+    }
+
+    /**
+     * Removes the buckets that started before the given time.
+     */
+    public void pruneBuckets(long minStart) {
+        buckets.values().forEach(starts -> starts.keySet().removeIf(start -> start < minStart));
+    }
+
+    public DownloadStatisticsSnapshot copy() {
+        DownloadStatisticsSnapshot copy = new DownloadStatisticsSnapshot();
+        copy.merge(this);
+        return copy;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return files.isEmpty() && buckets.isEmpty();
+    }
+
+    public Map<String, Map<String, Counts>> getFiles() {
+        return files;
+    }
+
+    public void setFiles(Map<String, Map<String, Counts>> files) {
+        this.files = files;
+    }
+
+    public Map<String, Map<Long, Counts>> getBuckets() {
+        return buckets;
+    }
+
+    public void setBuckets(Map<String, Map<Long, Counts>> buckets) {
+        this.buckets = buckets;
+    }
+
+    public static class Counts {
+
+        private long requests;
+        private long bytes;
+
+        public void add(long requests, long bytes) {
+            this.requests += requests;
+            this.bytes += bytes;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public void setRequests(long requests) {
+            this.requests = requests;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.statistics;
+
+import java.io.IOException;
+
+/**
+ * Persistent storage of the download statistics.
+ */
+public interface DownloadStatisticsStore {
+
+    /**
+     * @return the statistics recorded by all Crane instances using this store
+     */
+    DownloadStatisticsSnapshot load() throws IOException;
+
+    /**
+     * Adds the counts recorded since the previous snapshot and removes the buckets that started before the given time.
+     */
+    void merge(DownloadStatisticsSnapshot delta, long minBucketStart) throws IOException;
+
+}
@@ -0,0 +1,57 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.statistics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores the download statistics as a JSON file. The file is replaced atomically on every snapshot.
+ */
+public class FileDownloadStatisticsStore extends InMemoryDownloadStatisticsStore {
+
+    private final Path path;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public FileDownloadStatisticsStore(Path path) throws IOException {
+        this.path = path;
+        if (Files.exists(path)) {
+            snapshot = objectMapper.readValue(path.toFile(), DownloadStatisticsSnapshot.class);
+        }
+    }
+
+    @Override
+    public synchronized void merge(DownloadStatisticsSnapshot delta, long minBucketStart) throws IOException {
+        DownloadStatisticsSnapshot merged = snapshot.copy();
+        merged.merge(delta);
+        merged.pruneBuckets(minBucketStart);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        objectMapper.writeValue(temp.toFile(), merged);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // only keep the changes once they are persisted, such that they are retried on the next snapshot
+        snapshot = merged;
+    }
+
+}
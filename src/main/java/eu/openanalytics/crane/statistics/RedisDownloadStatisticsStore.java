@@ -0,0 +1,115 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.statistics;
+
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores the download statistics in Redis hashes, such that the counts of all Crane instances are combined. Every
+ * snapshot increments the hashes using a single pipeline of `HINCRBY` commands.
+ */
+public class RedisDownloadStatisticsStore implements DownloadStatisticsStore {
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+
+    public RedisDownloadStatisticsStore(StringRedisTemplate redisTemplate, String keyPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+    }
+
+    private String repositoriesKey() {
+        return keyPrefix + ":repositories";
+    }
+
+    private String filesKey(String repository, String counter) {
+        return keyPrefix + ":files:" + counter + ":" + repository;
+    }
+
+    private String bucketsKey(String repository, String counter) {
+        return keyPrefix + ":buckets:" + counter + ":" + repository;
+    }
+
+    @Override
+    public DownloadStatisticsSnapshot load() {
+        DownloadStatisticsSnapshot snapshot = new DownloadStatisticsSnapshot();
+        Set<String> repositories = redisTemplate.opsForSet().members(repositoriesKey());
+        if (repositories == null) {
+            return snapshot;
+        }
+        for (String repository : repositories) {
+            Map<Object, Object> fileRequests = redisTemplate.opsForHash().entries(filesKey(repository, "requests"));
+            Map<Object, Object> fileBytes = redisTemplate.opsForHash().entries(filesKey(repository, "bytes"));
+            fileRequests.forEach((path, requests) -> snapshot.addFile(repository, (String) path, parse(requests), parse(fileBytes.get(path))));
+            Map<Object, Object> bucketRequests = redisTemplate.opsForHash().entries(bucketsKey(repository, "requests"));
+            Map<Object, Object> bucketBytes = redisTemplate.opsForHash().entries(bucketsKey(repository, "bytes"));
+            bucketRequests.forEach((start, requests) -> snapshot.addBucket(repository, Long.parseLong((String) start), parse(requests), parse(bucketBytes.get(start))));
+        }
+        return snapshot;
+    }
+
+    private long parse(Object value) {
+        return value == null ? 0 : Long.parseLong((String) value);
+    }
+
+    @Override
+    public void merge(DownloadStatisticsSnapshot delta, long minBucketStart) {
+        Map<String, List<String>> expiredBuckets = new HashMap<>();
+        for (String repository : delta.getBuckets().keySet()) {
+            for (Object start : redisTemplate.opsForHash().keys(bucketsKey(repository, "requests"))) {
+                if (Long.parseLong((String) start) < minBucketStart) {
+                    expiredBuckets.computeIfAbsent(repository, r -> new ArrayList<>()).add((String) start);
+                }
+            }
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            delta.getFiles().forEach((repository, paths) -> {
+                connection.setCommands().sAdd(bytes(repositoriesKey()), bytes(repository));
+                paths.forEach((path, counts) -> {
+                    connection.hashCommands().hIncrBy(bytes(filesKey(repository, "requests")), bytes(path), counts.getRequests());
+                    connection.hashCommands().hIncrBy(bytes(filesKey(repository, "bytes")), bytes(path), counts.getBytes());
+                });
+            });
+            delta.getBuckets().forEach((repository, starts) -> starts.forEach((start, counts) -> {
+                connection.hashCommands().hIncrBy(bytes(bucketsKey(repository, "requests")), bytes(start.toString()), counts.getRequests());
+                connection.hashCommands().hIncrBy(bytes(bucketsKey(repository, "bytes")), bytes(start.toString()), counts.getBytes());
+            }));
+            expiredBuckets.forEach((repository, starts) -> starts.forEach(start -> {
+                connection.hashCommands().hDel(bytes(bucketsKey(repository, "requests")), bytes(start));
+                connection.hashCommands().hDel(bytes(bucketsKey(repository, "bytes")), bytes(start));
+            }));
+            return null;
+        });
+    }
+
+    private byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
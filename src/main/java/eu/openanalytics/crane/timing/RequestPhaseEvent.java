@@ -0,0 +1,49 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.timing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for every phase (security, access control, storage, streaming ...) of a request.
+ */
+@Name("eu.openanalytics.crane.RequestPhase")
+@Label("Request Phase")
+@Category("Crane")
+@Description("A single phase of handling a request")
+@StackTrace(false)
+public class RequestPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Repository")
+    String repository;
+
+    @Label("Request URI")
+    String requestUri;
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.timing;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Keeps track of the phases of a single request. Every phase is emitted as a {@link RequestPhaseEvent}, when the
+ * `Server-Timing` header is enabled the durations are also accumulated per phase such that they can be added to the
+ * response.
+ */
+public class RequestTimings {
+
+    private static final String ATTRIBUTE = RequestTimings.class.getName();
+
+    private final String requestUri;
+    private final Map<String, Long> durations;
+    private Phase securityPhase;
+
+    private RequestTimings(String requestUri, boolean recordDurations) {
+        this.requestUri = requestUri;
+        this.durations = recordDurations ? new LinkedHashMap<>() : null;
+    }
+
+    static RequestTimings create(HttpServletRequest request, boolean recordDurations) {
+        RequestTimings timings = new RequestTimings(request.getRequestURI(), recordDurations);
+        request.setAttribute(ATTRIBUTE, timings);
+        timings.securityPhase = new Phase("security", null, timings);
+        return timings;
+    }
+
+    public static RequestTimings get(HttpServletRequest request) {
+        return (RequestTimings) request.getAttribute(ATTRIBUTE);
+    }
+
+    /**
+     * Starts a phase of the current request, the phase ends when the returned {@link Phase} is closed.
+     * When called outside a request, only the JFR event is emitted.
+     */
+    public static Phase start(String phase, String repository) {
+        RequestTimings timings = null;
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            timings = (RequestTimings) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+        return new Phase(phase, repository, timings);
+    }
+
+    /**
+     * Ends the phase in which the request passes the security filters, called once the request reaches a controller.
+     */
+    public void endSecurityPhase() {
+        if (securityPhase != null) {
+            securityPhase.close();
+            securityPhase = null;
+        }
+    }
+
+    private void record(String phase, long durationNanos) {
+        if (durations != null) {
+            durations.merge(phase, durationNanos, Long::sum);
+        }
+    }
+
+    /**
+     * @return the value of the `Server-Timing` header, containing the duration (in milliseconds) of each phase that ended so far
+     */
+    public String toServerTiming() {
+        if (durations == null) {
+            return "";
+        }
+        StringJoiner header = new StringJoiner(", ");
+        for (Map.Entry<String, Long> duration : durations.entrySet()) {
+            header.add(String.format(Locale.ROOT, "%s;dur=%.3f", duration.getKey(), duration.getValue() / 1_000_000.0));
+        }
+        return header.toString();
+    }
+
+    public static class Phase implements AutoCloseable {
+
+        private final RequestPhaseEvent event = new RequestPhaseEvent();
+        private final String phase;
+        private final String repository;
+        private final RequestTimings timings;
+        private final long start;
+
+        private Phase(String phase, String repository, RequestTimings timings) {
+            this.phase = phase;
+            this.repository = repository;
+            this.timings = timings;
+            event.begin();
+            start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            long duration = System.nanoTime() - start;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase;
+                event.repository = repository;
+                event.requestUri = timings != null ? timings.requestUri : null;
+                event.commit();
+            }
+            if (timings != null) {
+                timings.record(phase, duration);
+            }
+        }
+
+    }
+
+}
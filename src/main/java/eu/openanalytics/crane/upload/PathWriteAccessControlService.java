@@ -26,12 +26,13 @@ import eu.openanalytics.crane.model.config.PathComponent;
 import eu.openanalytics.crane.service.AbstractPathAccessControlService;
 import eu.openanalytics.crane.service.UserService;
 import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 
 @Service
 public class PathWriteAccessControlService extends AbstractPathAccessControlService {
-    public PathWriteAccessControlService(SpecExpressionResolver specExpressionResolver, UserService userService, CraneConfig craneConfig) {
-        super(specExpressionResolver, userService, craneConfig);
+    public PathWriteAccessControlService(SpecExpressionResolver specExpressionResolver, UserService userService, CraneConfig craneConfig, MeterRegistry meterRegistry) {
+        super(specExpressionResolver, userService, craneConfig, meterRegistry, "write");
     }
 
     @Override
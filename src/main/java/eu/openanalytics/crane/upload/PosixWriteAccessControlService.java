@@ -21,18 +21,19 @@
 package eu.openanalytics.crane.upload;
 
 import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.runtime.CranePath;
 import eu.openanalytics.crane.service.AbstractPosixAccessControlService;
 import eu.openanalytics.crane.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermission;
-import java.util.Iterator;
+import java.util.List;
 
 @Service
 public class PosixWriteAccessControlService extends AbstractPosixAccessControlService {
-    public PosixWriteAccessControlService(UserService userService, CraneConfig craneConfig) {
-        super(userService, craneConfig);
+    public PosixWriteAccessControlService(UserService userService, CraneConfig craneConfig, MeterRegistry meterRegistry) {
+        super(userService, craneConfig, meterRegistry, "write");
     }
 
     @Override
@@ -46,7 +47,9 @@ public class PosixWriteAccessControlService extends AbstractPosixAccessControlSe
     }
 
     @Override
-    protected Iterator<Path> getSubsequentPaths(String path) {
-        return Path.of(path).getParent().iterator();
+    protected List<String> getSegmentsToCheck(CranePath path) {
+        // a new file is written in the parent directory
+        List<String> segments = path.getSegments();
+        return segments.subList(0, Math.max(0, segments.size() - 1));
     }
 }
@@ -0,0 +1,133 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.upload;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * The content of a file uploaded through the API together with its length, when that length is known upfront. With a
+ * known length, the SDK uploads small files in a single request and plans the parts of large files upfront, instead of
+ * buffering the stream to find out its size.
+ */
+public class UploadBody {
+
+    private final InputStream inputStream;
+    private final Long contentLength;
+
+    private UploadBody(InputStream inputStream, @Nullable Long contentLength) {
+        this.inputStream = inputStream;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Multipart clients (browsers, curl ...) rarely declare the length of a single item, and the length of the request
+     * includes the other items and the multipart framing. Therefore, the length is learned by buffering up to
+     * {@code bufferSize} bytes: files that fit in the buffer have a known length, larger files are streamed with an
+     * unknown length. A length declared by the client is verified against the bytes that are actually streamed.
+     *
+     * @param declaredLength the length declared in the headers of the multipart item, or null
+     * @param bufferSize the maximum number of bytes to buffer in order to learn the length of the file
+     */
+    public static UploadBody of(InputStream inputStream, @Nullable Long declaredLength, int bufferSize) throws IOException {
+        if (declaredLength != null) {
+            return new UploadBody(new LengthVerifyingInputStream(inputStream, declaredLength), declaredLength);
+        }
+        // the buffer grows while reading, small files don't allocate the full buffer size
+        byte[] buffer = inputStream.readNBytes(bufferSize + 1);
+        if (buffer.length <= bufferSize) {
+            return new UploadBody(new ByteArrayInputStream(buffer), (long) buffer.length);
+        }
+        return new UploadBody(new SequenceInputStream(new ByteArrayInputStream(buffer), inputStream), null);
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * @return the length of the file, or null when unknown
+     */
+    public @Nullable Long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Fails when the stream is shorter or longer than the declared length. The check for additional bytes happens
+     * before the last declared byte is returned, so that a consumer never receives the complete declared length of a
+     * stream that turns out to be too long.
+     */
+    private static class LengthVerifyingInputStream extends InputStream {
+
+        private final InputStream in;
+        private final long declaredLength;
+        private long count;
+
+        private LengthVerifyingInputStream(InputStream in, long declaredLength) {
+            this.in = in;
+            this.declaredLength = declaredLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int read = in.read(b, off, (int) Math.min(len, Math.max(declaredLength - count, 1)));
+            if (read == -1) {
+                if (count != declaredLength) {
+                    throw mismatch(count);
+                }
+                return -1;
+            }
+            count += read;
+            if (count > declaredLength) {
+                throw mismatch(count);
+            }
+            if (count == declaredLength && in.read() != -1) {
+                throw mismatch(count + 1);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private IOException mismatch(long received) {
+            return new IOException("Upload size mismatch: %d bytes declared, received %s%d bytes".formatted(declaredLength, received > declaredLength ? "at least " : "", received));
+        }
+
+    }
+
+}
@@ -20,10 +20,21 @@
  */
 package eu.openanalytics.crane.upload;
 
+import com.google.common.io.CountingInputStream;
 import eu.openanalytics.crane.config.CraneConfig;
 import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.config.S3Upload;
 import eu.openanalytics.crane.model.dto.ApiResponse;
+import eu.openanalytics.crane.model.dto.CompleteUploadRequest;
+import eu.openanalytics.crane.model.runtime.CranePath;
+import eu.openanalytics.crane.s3.S3PresignService;
+import eu.openanalytics.crane.timing.RequestTimings;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import org.apache.commons.fileupload2.core.FileItemInput;
 import org.apache.commons.fileupload2.core.FileItemInputIterator;
@@ -41,36 +52,87 @@ import org.springframework.security.core.parameters.P;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.async.BlockingInputStreamAsyncRequestBody;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
 import software.amazon.awssdk.transfer.s3.model.Upload;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Controller
 public class UploadController {
 
+    // S3 allows at most 10000 parts per multipart upload
+    private static final int MAX_PARTS = 10_000;
+    private static final long MIN_PRESIGNED_PART_SIZE = 64 * 1024 * 1024;
+    // the part size of uploads to repositories without a custom s3-upload configuration
+    private static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    // the maximum number of bytes buffered per upload to learn the length of a file
+    private static final int MAX_LENGTH_BUFFER_SIZE = 8 * 1024 * 1024;
+
     protected final Logger logger = LoggerFactory.getLogger(getClass());
+    private S3AsyncClient s3AsyncClient;
     private S3TransferManager transferManager;
+    // transfer managers of repositories with a custom s3-upload configuration
+    private final Map<String, S3TransferManager> repositoryTransferManagers = new ConcurrentHashMap<>();
+    private final List<S3AsyncClient> repositoryClients = new ArrayList<>();
     private final CraneConfig config;
     private final UploadAuditing auditingService;
+    private final S3PresignService s3PresignService;
+    private final Meter.MeterProvider<Timer> uploadDuration;
+    private final Meter.MeterProvider<DistributionSummary> uploadSize;
+    private final Meter.MeterProvider<DistributionSummary> uploadThroughput;
 
-    public UploadController(CraneConfig config, UploadAuditing auditingService) {
+    public UploadController(CraneConfig config, UploadAuditing auditingService, S3PresignService s3PresignService, MeterRegistry meterRegistry) {
         this.config = config;
         this.auditingService = auditingService;
+        this.s3PresignService = s3PresignService;
+        this.uploadDuration = Timer.builder("crane.upload.duration").withRegistry(meterRegistry);
+        this.uploadSize = DistributionSummary.builder("crane.upload.size").baseUnit("bytes").withRegistry(meterRegistry);
+        this.uploadThroughput = DistributionSummary.builder("crane.upload.throughput").baseUnit("bytes/second").withRegistry(meterRegistry);
     }
 
     @PostConstruct
     private void init() {
         if (config.usesS3()) {
-            S3AsyncClient s3AsyncClient = S3AsyncClient.builder().multipartEnabled(true).build();
+            s3AsyncClient = config.getS3ClientManager().getAsyncClient();
             transferManager = S3TransferManager.builder().s3Client(s3AsyncClient).build();
+            for (Repository repository : config.getRepositories()) {
+                if (repository.getS3Upload() != null && repository.getStoragePath() instanceof S3Path) {
+                    S3AsyncClient repositoryClient = config.getS3ClientManager().createAsyncClient(repository.getS3Upload());
+                    repositoryClients.add(repositoryClient);
+                    repositoryTransferManagers.put(repository.getName(), S3TransferManager.builder().s3Client(repositoryClient).build());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    private void close() {
+        repositoryTransferManagers.values().forEach(S3TransferManager::close);
+        repositoryClients.forEach(S3AsyncClient::close);
+        if (transferManager != null) {
+            transferManager.close();
         }
     }
 
@@ -90,36 +152,46 @@ public class UploadController {
         JakartaServletFileUpload upload = new JakartaServletFileUpload();
 
         Repository repository = config.getRepository(stringRepository);
-        Path path = repository.getStoragePath().resolve(stringPath.substring(1));
+        Path path = CranePath.forRequest(request, repository, stringPath).getStoragePath();
 
-        if (Files.exists(path)) {
+        boolean exists;
+        try (RequestTimings.Phase ignored = RequestTimings.start("stat", repository.getName())) {
+            exists = Files.exists(path);
+        }
+        if (exists) {
             auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
             return ApiResponse.fail(Map.of("message", "File %s already exists".formatted(stringRepository + stringPath)));
         }
 
         try {
-            FileItemInput fileItemInput = getFileItemInput(upload.getItemIterator(request));
+            FileItemInput fileItemInput;
+            try (RequestTimings.Phase ignored = RequestTimings.start("multipart", repository.getName())) {
+                fileItemInput = getFileItemInput(upload.getItemIterator(request));
+            }
             if (fileItemInput == null) {
                 auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
                 return ApiResponse.fail(Map.of("message", "Upload failed. No parameter named `file` found"));
             }
+            long start = System.nanoTime();
+            CountingInputStream inputStream = new CountingInputStream(fileItemInput.getInputStream());
+            String backend;
             if (path.toString().startsWith("s3://")) {
-                writeFileToS3(fileItemInput, path);
+                backend = "s3";
+                try (RequestTimings.Phase ignored = RequestTimings.start("upload", repository.getName())) {
+                    writeFileToS3(repository, UploadBody.of(inputStream, getContentLength(fileItemInput), getLengthBufferSize(repository)), path);
+                }
             } else if (path.toString().startsWith("/")) {
-                FileUtils.copyInputStreamToFile(fileItemInput.getInputStream(), path.toFile());
+                backend = "file";
+                try (RequestTimings.Phase ignored = RequestTimings.start("upload", repository.getName())) {
+                    FileUtils.copyInputStreamToFile(inputStream, path.toFile());
+                }
                 if (repository.hasPosixAccessControl()) {
-                    Map<String, Object> pathAttributes = Files.readAttributes(path.getParent(), "unix:owner,uid,gid,permissions");
-                    for (String attr : pathAttributes.keySet()) {
-                        try {
-                            Files.setAttribute(path, "unix:" + attr, pathAttributes.get(attr));
-                        } catch (IOException e) {
-                            logger.warn("Crane could not set '{}' unix attribute of '{}'", attr, path);
-                        }
-                    }
+                    copyPosixAttributes(repository, path);
                 }
             } else {
                 throw new RuntimeException("Path type no supported %s!".formatted(path.toString()));
             }
+            recordUploadMetrics(repository, backend, inputStream.getCount(), System.nanoTime() - start);
             auditingService.createUploadAuditEvent(request);
             return ApiResponse.success(Map.of("message", "File upload succeeded"));
         } catch (IOException e) {
@@ -128,6 +200,177 @@ public class UploadController {
         }
     }
 
+    /**
+     * Negotiates a presigned upload: the client receives either a single presigned PUT URL or (for files larger than
+     * the part size) a multipart upload with a presigned URL per part. Once all bytes are uploaded, the client has to
+     * call the `complete-upload` endpoint, passing the `upload_token` (single uploads) or `upload_id` (multipart
+     * uploads) returned by this endpoint.
+     */
+    @PreAuthorize("@uploadAccessControlService.canAccess(#r, #p)")
+    @ResponseBody
+    @PostMapping(value = "/__file/{repository}/{*path}", params = "presign-upload", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ApiResponse<Map<String, Object>>> presignUpload(HttpServletRequest request,
+                                                                          @P("r") @PathVariable(name = "repository") String stringRepository,
+                                                                          @P("p") @PathVariable(name = "path") String stringPath,
+                                                                          @RequestParam(name = "size", required = false) Long size) {
+        Repository repository = config.getRepository(stringRepository);
+        if (!repository.hasPresignedUploads()) {
+            auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+            return ApiResponse.fail(Map.of("message", "Presigned uploads are not enabled for this repository"));
+        }
+        if (size != null && size < 0) {
+            auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+            return ApiResponse.fail(Map.of("message", "The size of the upload may not be negative"));
+        }
+        S3Path path = (S3Path) CranePath.forRequest(request, repository, stringPath).getStoragePath();
+        if (Files.exists(path)) {
+            auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+            return ApiResponse.fail(Map.of("message", "File %s already exists".formatted(stringRepository + stringPath)));
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        long partSize = size == null ? MIN_PRESIGNED_PART_SIZE : Math.max(MIN_PRESIGNED_PART_SIZE, (size + MAX_PARTS - 1) / MAX_PARTS);
+        if (size == null || size <= partSize) {
+            data.put("upload_type", "single");
+            data.put("method", "PUT");
+            String uploadToken = UUID.randomUUID().toString();
+            data.put("url", s3PresignService.presignPutObject(path, repository.getPresignedUploadUrlDuration(), uploadToken).toString());
+            data.put("headers", S3PresignService.getPutHeaders(uploadToken));
+            data.put("upload_token", uploadToken);
+            return ApiResponse.success(data);
+        }
+
+        String uploadId;
+        try {
+            uploadId = s3AsyncClient.createMultipartUpload(req -> req.bucket(path.getBucketName()).key(path.getKey())).join().uploadId();
+        } catch (CompletionException e) {
+            logger.warn("Could not create multipart upload for '{}'", path, e);
+            auditingService.createErrorHandlerAuditEvent(request, HttpStatus.INTERNAL_SERVER_ERROR);
+            return ApiResponse.error(Map.of("message", "Could not create multipart upload"));
+        }
+        List<Map<String, Object>> parts = new ArrayList<>();
+        int numberOfParts = (int) ((size + partSize - 1) / partSize);
+        for (int partNumber = 1; partNumber <= numberOfParts; partNumber++) {
+            parts.add(Map.of(
+                "part_number", partNumber,
+                "url", s3PresignService.presignUploadPart(path, uploadId, partNumber, repository.getPresignedUploadUrlDuration()).toString()
+            ));
+        }
+        data.put("upload_type", "multipart");
+        data.put("method", "PUT");
+        data.put("upload_id", uploadId);
+        data.put("part_size", partSize);
+        data.put("parts", parts);
+        return ApiResponse.success(data);
+    }
+
+    /**
+     * Completes a presigned upload. For multipart uploads the `upload-id` parameter and the ETags of the uploaded parts
+     * are required, for single uploads the `upload-token` parameter. The upload audit event is only recorded once the
+     * object exists and was uploaded using the upload negotiated by the client.
+     * Like the presigned PUT, the multipart upload is only completed when the object does not exist yet.
+     */
+    @PreAuthorize("@uploadAccessControlService.canAccess(#r, #p)")
+    @ResponseBody
+    @PostMapping(value = "/__file/{repository}/{*path}", params = "complete-upload", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ApiResponse<Map<String, Object>>> completeUpload(HttpServletRequest request,
+                                                                           @P("r") @PathVariable(name = "repository") String stringRepository,
+                                                                           @P("p") @PathVariable(name = "path") String stringPath,
+                                                                           @RequestParam(name = "upload-id", required = false) String uploadId,
+                                                                           @RequestParam(name = "upload-token", required = false) String uploadToken,
+                                                                           @RequestBody(required = false) CompleteUploadRequest completeUploadRequest) {
+        Repository repository = config.getRepository(stringRepository);
+        if (!repository.hasPresignedUploads()) {
+            auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+            return ApiResponse.fail(Map.of("message", "Presigned uploads are not enabled for this repository"));
+        }
+        if (uploadId == null && uploadToken == null) {
+            auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+            return ApiResponse.fail(Map.of("message", "Completing an upload requires the upload-id or upload-token"));
+        }
+        S3Path path = (S3Path) CranePath.forRequest(request, repository, stringPath).getStoragePath();
+        try {
+            if (uploadId != null) {
+                if (completeUploadRequest == null || completeUploadRequest.getParts().isEmpty()) {
+                    auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+                    return ApiResponse.fail(Map.of("message", "Completing a multipart upload requires the uploaded parts"));
+                }
+                if (Files.exists(path)) {
+                    abortMultipartUpload(path, uploadId);
+                    auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+                    return ApiResponse.fail(Map.of("message", "File %s already exists".formatted(stringRepository + stringPath)));
+                }
+                List<CompletedPart> completedParts = completeUploadRequest.getParts().stream()
+                    .sorted(Comparator.comparingInt(CompleteUploadRequest.Part::getPartNumber))
+                    .map(part -> CompletedPart.builder().partNumber(part.getPartNumber()).eTag(part.getEtag()).build())
+                    .toList();
+                s3AsyncClient.completeMultipartUpload(req -> req
+                    .bucket(path.getBucketName())
+                    .key(path.getKey())
+                    .uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(completedParts))
+                    // protects against an object created after the check above
+                    .overrideConfiguration(c -> S3PresignService.CONDITIONAL_PUT_HEADERS.forEach(c::putHeader))).join();
+            } else {
+                HeadObjectResponse headObjectResponse = s3AsyncClient.headObject(req -> req.bucket(path.getBucketName()).key(path.getKey())).join();
+                // an object that was not uploaded using the presigned PUT of this client does not carry its token
+                String storedToken = headObjectResponse.metadata().get(S3PresignService.UPLOAD_TOKEN_METADATA);
+                if (storedToken == null || !MessageDigest.isEqual(storedToken.getBytes(StandardCharsets.UTF_8), uploadToken.getBytes(StandardCharsets.UTF_8))) {
+                    auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+                    return ApiResponse.fail(Map.of("message", "File upload failed"));
+                }
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof S3Exception s3Exception && s3Exception.statusCode() == HttpStatus.PRECONDITION_FAILED.value()) {
+                abortMultipartUpload(path, uploadId);
+                auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+                return ApiResponse.fail(Map.of("message", "File %s already exists".formatted(stringRepository + stringPath)));
+            }
+            if (e.getCause() instanceof S3Exception) {
+                logger.debug("Could not complete upload of '{}'", path, e);
+                auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+                return ApiResponse.fail(Map.of("message", "File upload failed"));
+            }
+            throw e;
+        }
+        auditingService.createUploadAuditEvent(request);
+        return ApiResponse.success(Map.of("message", "File upload succeeded"));
+    }
+
+    @PreAuthorize("@uploadAccessControlService.canAccess(#r, #p)")
+    @ResponseBody
+    @PostMapping(value = "/__file/{repository}/{*path}", params = {"abort-upload", "upload-id"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ApiResponse<Map<String, Object>>> abortUpload(HttpServletRequest request,
+                                                                        @P("r") @PathVariable(name = "repository") String stringRepository,
+                                                                        @P("p") @PathVariable(name = "path") String stringPath,
+                                                                        @RequestParam(name = "upload-id") String uploadId) {
+        Repository repository = config.getRepository(stringRepository);
+        if (!repository.hasPresignedUploads()) {
+            auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+            return ApiResponse.fail(Map.of("message", "Presigned uploads are not enabled for this repository"));
+        }
+        S3Path path = (S3Path) CranePath.forRequest(request, repository, stringPath).getStoragePath();
+        try {
+            s3AsyncClient.abortMultipartUpload(req -> req.bucket(path.getBucketName()).key(path.getKey()).uploadId(uploadId)).join();
+        } catch (CompletionException e) {
+            logger.debug("Could not abort upload of '{}'", path, e);
+            auditingService.createErrorHandlerAuditEvent(request, HttpStatus.BAD_REQUEST);
+            return ApiResponse.fail(Map.of("message", "Aborting upload failed"));
+        }
+        return ApiResponse.success(Map.of("message", "Upload aborted"));
+    }
+
+    private void abortMultipartUpload(S3Path path, String uploadId) {
+        if (uploadId == null) {
+            return;
+        }
+        try {
+            s3AsyncClient.abortMultipartUpload(req -> req.bucket(path.getBucketName()).key(path.getKey()).uploadId(uploadId)).join();
+        } catch (CompletionException e) {
+            logger.debug("Could not abort upload of '{}'", path, e);
+        }
+    }
+
     private @Nullable FileItemInput getFileItemInput(FileItemInputIterator itemInputIterator) throws IOException {
         while (itemInputIterator.hasNext()) {
             FileItemInput temporaryFileItemInput = itemInputIterator.next();
@@ -138,18 +381,85 @@ public class UploadController {
         return null;
     }
 
-    private void writeFileToS3(FileItemInput fileItemInput, Path path) throws IOException {
+    /**
+     * @return the size of the file as declared by the client in the headers of the multipart item, or null when unknown
+     */
+    private @Nullable Long getContentLength(FileItemInput fileItemInput) {
+        if (fileItemInput.getHeaders() == null) {
+            return null;
+        }
+        String contentLength = fileItemInput.getHeaders().getHeader("Content-Length");
+        if (contentLength == null) {
+            return null;
+        }
+        try {
+            long length = Long.parseLong(contentLength.trim());
+            return length >= 0 ? length : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Files up to the part size are uploaded in a single request when their length is known, so up to the part size is
+     * buffered to learn the length of a file. The buffer is capped at {@link #MAX_LENGTH_BUFFER_SIZE} to bound the heap
+     * used by concurrent uploads: with a larger part size, files between the cap and the part size are streamed with an
+     * unknown length.
+     */
+    private int getLengthBufferSize(Repository repository) {
+        if (repository.getS3Upload() == null) {
+            return Math.min(DEFAULT_PART_SIZE, MAX_LENGTH_BUFFER_SIZE);
+        }
+        return (int) Math.min(repository.getS3Upload().getPartSize().toBytes(), MAX_LENGTH_BUFFER_SIZE);
+    }
+
+    private void writeFileToS3(Repository repository, UploadBody uploadBody, Path path) throws IOException {
+        // with a known length, the SDK can plan the parts upfront instead of buffering the stream
         BlockingInputStreamAsyncRequestBody body =
-            AsyncRequestBody.forBlockingInputStream(null);
+            AsyncRequestBody.forBlockingInputStream(uploadBody.getContentLength());
 
         S3Path s3Path = (S3Path) path;
-        Upload s3UploadRequest = transferManager.upload(builder -> builder
+        S3Upload s3Upload = repository.getS3Upload();
+        S3TransferManager repositoryTransferManager = repositoryTransferManagers.getOrDefault(repository.getName(), transferManager);
+        Upload s3UploadRequest = repositoryTransferManager.upload(builder -> builder
             .requestBody(body)
-            .putObjectRequest(req -> req.bucket(s3Path.getBucketName()).key(s3Path.getKey()))
+            .putObjectRequest(req -> {
+                req.bucket(s3Path.getBucketName()).key(s3Path.getKey());
+                if (s3Upload != null && s3Upload.getChecksumAlgorithm() != null) {
+                    req.checksumAlgorithm(s3Upload.getChecksumAlgorithm());
+                }
+            })
             .build());
 
-        body.writeInputStream(fileItemInput.getInputStream());
-        s3UploadRequest.completionFuture().join();
+        // the parts are uploaded by the SDK while this thread continues reading from the request
+        body.writeInputStream(uploadBody.getInputStream());
+        try {
+            s3UploadRequest.completionFuture().join();
+        } catch (CompletionException e) {
+            throw new IOException("Upload to S3 failed", e.getCause());
+        }
+    }
+
+    private void copyPosixAttributes(Repository repository, Path path) throws IOException {
+        try (RequestTimings.Phase ignored = RequestTimings.start("attributes", repository.getName())) {
+            Map<String, Object> pathAttributes = Files.readAttributes(path.getParent(), "unix:owner,uid,gid,permissions");
+            for (String attr : pathAttributes.keySet()) {
+                try {
+                    Files.setAttribute(path, "unix:" + attr, pathAttributes.get(attr));
+                } catch (IOException e) {
+                    logger.warn("Crane could not set '{}' unix attribute of '{}'", attr, path);
+                }
+            }
+        }
+    }
+
+    private void recordUploadMetrics(Repository repository, String backend, long bytes, long durationNanos) {
+        uploadDuration.withTags("repository", repository.getName(), "backend", backend).record(durationNanos, TimeUnit.NANOSECONDS);
+        uploadSize.withTags("repository", repository.getName(), "backend", backend).record(bytes);
+        if (durationNanos > 0) {
+            uploadThroughput.withTags("repository", repository.getName(), "backend", backend).record(bytes * 1e9 / durationNanos);
+        }
+        logger.debug("Uploaded {} bytes to repository '{}' in {} ms", bytes, repository.getName(), TimeUnit.NANOSECONDS.toMillis(durationNanos));
     }
 
 }
@@ -26,6 +26,8 @@ import eu.openanalytics.crane.test.helpers.KeycloakInstance;
 import eu.openanalytics.crane.test.helpers.NativeResponse;
 import eu.openanalytics.crane.test.helpers.Response;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -34,6 +36,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -46,12 +53,15 @@ public class DownloadControllerTest {
     private static final List<CraneInstance> instances = new ArrayList<>();
     private static final List<CraneInstance> instanceWithoutFirewall = new ArrayList<>();
     private static CraneInstance groupsInst;
+    private static CraneInstance s3Inst;
 
     @BeforeAll
     public static void beforeAll() {
         keycloakInstance.start();
         instances.add(new CraneInstance("application-test-api.yml"));
-        CraneInstance.addInstanceWithAwsAccess(instances, "application-test-api-with-s3.yml", 7275, logger);
+        if (CraneInstance.addInstanceWithAwsAccess(instances, "application-test-api-with-s3.yml", 7275, logger)) {
+            s3Inst = instances.get(instances.size() - 1);
+        }
         groupsInst = new CraneInstance("application-test-keycloak-groups.yml", 7273);
 
         instanceWithoutFirewall.add(new CraneInstance("application-test-api.yml", 7276, new HashMap<>(), true, true));
@@ -336,6 +346,41 @@ public class DownloadControllerTest {
 
     }
 
+    @Test
+    public void testPresignedRedirect() throws IOException, InterruptedException {
+        Assumptions.assumeTrue(s3Inst != null, "No AWS credentials");
+        ApiTestHelper apiTestHelper = ApiTestHelper.from(s3Inst);
+        String location = apiTestHelper.nativeCallWithoutAuth(apiTestHelper.createNativeHtmlRequest("/presigned_redirect_repo/file.txt")).assertRedirectToPresignedUrl();
+        Assertions.assertTrue(location.contains("/repository/public_repo/file.txt"), location);
+
+        // the presigned URL can be used without any credentials
+        HttpResponse<String> s3Response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(location)).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, s3Response.statusCode());
+        Assertions.assertEquals("Public text file", s3Response.body().trim());
+
+        // missing files are not redirected
+        apiTestHelper.nativeCallWithoutAuth(apiTestHelper.createNativeHtmlRequest("/presigned_redirect_repo/file-not-found.txt")).assertNotFound();
+    }
+
+    @ParameterizedTest
+    @MethodSource("instances")
+    public void testAnonymousAccessToPublicFilesIsStateless(CraneInstance instance) {
+        ApiTestHelper apiTestHelper = ApiTestHelper.from(instance);
+        // handled by the stateless filter chain
+        for (String path : List.of("/public_repo/file.txt", "/public_repo/public_in_public_repo/file.txt")) {
+            NativeResponse resp = apiTestHelper.nativeCallWithoutAuth(apiTestHelper.createNativeHtmlRequest(path));
+            resp.assertSuccess();
+            resp.assertNoSessionCookie();
+        }
+        apiTestHelper.nativeCallWithoutAuth(apiTestHelper.createNativeHtmlRequest("/public_repo/file-not-found.txt")).assertNotFound();
+
+        // private files are not affected
+        for (String path : List.of("/private_repo/file.txt", "/public_repo/private_repo/file.txt", "/public_repo/restricted_repo/file.txt")) {
+            apiTestHelper.nativeCallWithoutAuth(apiTestHelper.createNativeHtmlRequest(path)).assertUnauthorizedRedirectToLogIn();
+            apiTestHelper.nativeCallWithTokenAuthDemoUser(apiTestHelper.createNativeHtmlRequest(path)).assertSuccess();
+        }
+    }
+
     @ParameterizedTest
     @MethodSource("instances")
     public void testAccessToNestedRestrictedRepositories(CraneInstance instance) {
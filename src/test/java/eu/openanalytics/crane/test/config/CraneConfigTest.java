@@ -72,6 +72,17 @@ public class CraneConfigTest {
         Assertions.assertEquals("Incorrect configuration detected: app.repositories[repository_with_invalid_storage_location].storage-location must either start and end with / OR start with s3:// and end with /", rootCause.getMessage());
     }
 
+    @Test
+    public void testConfigurationWithPresignedRedirectOnFileSystemRepository() {
+        TestHelperException exception = Assertions.assertThrows(
+            TestHelperException.class,
+            () -> new CraneInstance("application-invalid-presigned-redirect-repository.yml")
+        );
+        Throwable rootCause = ExceptionUtils.getRootCause(exception);
+        Assertions.assertEquals(IllegalArgumentException.class, rootCause.getClass());
+        Assertions.assertEquals("Incorrect configuration detected: app.repositories[presigned_redirect_repo].delivery-mode presigned-redirect requires an S3 storage location", rootCause.getMessage());
+    }
+
     @Test
     public void testConfigurationWithoutOpenidIssuerUri() {
         TestHelperException exception = Assertions.assertThrows(
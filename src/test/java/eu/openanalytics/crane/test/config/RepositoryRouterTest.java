@@ -0,0 +1,80 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.config;
+
+import eu.openanalytics.crane.config.RepositoryRouter;
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.security.PathTraversalFilter;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RepositoryRouterTest {
+
+    @Test
+    public void testRoute() {
+        List<Repository> repositories = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            repositories.add(repository("repo" + i));
+        }
+        RepositoryRouter router = new RepositoryRouter(repositories);
+
+        Assertions.assertSame(repositories.get(42), router.route(new MockHttpServletRequest("GET", "/repo42/dir/file.txt")));
+        Assertions.assertSame(repositories.get(42), router.route(new MockHttpServletRequest("GET", "/repo42/")));
+        Assertions.assertSame(repositories.get(42), router.route(new MockHttpServletRequest("GET", "/repo42")));
+        Assertions.assertNull(router.route(new MockHttpServletRequest("GET", "/repo42x/file.txt")));
+        Assertions.assertNull(router.route(new MockHttpServletRequest("GET", "/")));
+        Assertions.assertNull(router.route(new MockHttpServletRequest("GET", "/__file/repo42/file.txt")));
+        Assertions.assertTrue(router.getRequestMatcher().matches(new MockHttpServletRequest("GET", "/repo999/file.txt")));
+        Assertions.assertFalse(router.getRequestMatcher().matches(new MockHttpServletRequest("GET", "/actuator/health")));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/crane/repo7/file.txt");
+        request.setContextPath("/crane");
+        Assertions.assertSame(repositories.get(7), router.route(request));
+    }
+
+    @Test
+    public void testSegmentsOfPathTraversalFilterAreReused() throws Exception {
+        Repository repository = repository("repository");
+        RepositoryRouter router = new RepositoryRouter(List.of(repository));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/repository/dir/file.txt");
+        new PathTraversalFilter().doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+        });
+
+        Assertions.assertSame(repository, router.route(request));
+        // the segments belong to the original request, a forwarded request is routed using its own path
+        request.setDispatcherType(DispatcherType.FORWARD);
+        request.setRequestURI("/__file/repository/dir/file.txt");
+        Assertions.assertNull(router.route(request));
+    }
+
+    private Repository repository(String name) {
+        Repository repository = new Repository();
+        repository.setName(name);
+        return repository;
+    }
+
+}
@@ -112,6 +112,10 @@ public class ApiTestHelper {
         return new Request.Builder().url(baseUrl + path).addHeader("Accept", "*/*").post(body);
     }
 
+    public Request.Builder createPostRequest(String path) {
+        return new Request.Builder().url(baseUrl + path).addHeader("Accept", "*/*").post(RequestBody.create(new byte[0]));
+    }
+
     public Response callWithTokenAuthDemoUser(Request.Builder request) {
         try {
             return new Response(clientTokenDemo.newCall(request.build()).execute());
@@ -0,0 +1,124 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.helpers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+/**
+ * Minimal stand-in for an S3 endpoint that answers HEAD and GET object requests and delays the requests selected by
+ * the straggler predicate (based on the path and the number of previous requests for that path), in order to simulate
+ * tail latency. The requests selected by the error predicate immediately fail with a 503, simulating a degraded node.
+ */
+public class FaultInjectingS3Server implements AutoCloseable {
+
+    public static final String CONTENT = "Hello from the fault injecting S3 server";
+
+    private final HttpServer server;
+    private final AtomicInteger requestCounter = new AtomicInteger();
+    private final Map<String, AtomicInteger> requestCounterPerPath = new ConcurrentHashMap<>();
+    private final long stragglerDelayMillis;
+    private final BiPredicate<String, Integer> isStraggler;
+    private final BiPredicate<String, Integer> isError;
+
+    public FaultInjectingS3Server(long stragglerDelayMillis, BiPredicate<String, Integer> isStraggler) {
+        this(stragglerDelayMillis, isStraggler, (path, n) -> false);
+    }
+
+    public FaultInjectingS3Server(long stragglerDelayMillis, BiPredicate<String, Integer> isStraggler, BiPredicate<String, Integer> isError) {
+        this.stragglerDelayMillis = stragglerDelayMillis;
+        this.isStraggler = isStraggler;
+        this.isError = isError;
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new TestHelperException("Error while starting fault injecting S3 server", e);
+        }
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCounter.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        int requestNumber = requestCounterPerPath.computeIfAbsent(path, p -> new AtomicInteger()).getAndIncrement();
+        if (isError.test(path, requestNumber)) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        if (isStraggler.test(path, requestNumber)) {
+            try {
+                Thread.sleep(stragglerDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = CONTENT.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("ETag", "\"crane\"");
+        exchange.getResponseHeaders().add("Content-Type", "text/plain");
+        try {
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            }
+        } catch (IOException e) {
+            // the client aborted the request (e.g. because the hedged request won)
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public int getRequestCount() {
+        return requestCounter.get();
+    }
+
+    public int getRequestCount(String path) {
+        AtomicInteger counter = requestCounterPerPath.get(path);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+}
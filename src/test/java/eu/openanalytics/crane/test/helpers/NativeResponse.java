@@ -38,6 +38,14 @@ public class NativeResponse {
         return response.statusCode();
     }
 
+    public void assertSuccess() {
+        Assertions.assertEquals(200, code(), String.format("In request: %s %s", request.method(), request.uri()));
+    }
+
+    public void assertNoSessionCookie() {
+        Assertions.assertTrue(response.headers().allValues("set-cookie").isEmpty(), String.format("In request: %s %s", request.method(), request.uri()));
+    }
+
     public void assertBadRequest() {
         Assertions.assertEquals(400, code(), String.format("In request: %s %s", request.method(), request.uri()));
     }
@@ -53,6 +61,17 @@ public class NativeResponse {
         Assertions.assertEquals("", response.body());
     }
 
+    /**
+     * @return the presigned S3 URL the response redirects to
+     */
+    public String assertRedirectToPresignedUrl() {
+        Assertions.assertEquals(302, code(), String.format("In request: %s %s", request.method(), request.uri()));
+        String location = response.headers().firstValue("location").orElseThrow();
+        Assertions.assertTrue(location.contains("X-Amz-Signature="), location);
+        Assertions.assertEquals("no-store", response.headers().firstValue("cache-control").orElse(null));
+        return location;
+    }
+
     public void assertUnauthorized() {
         Assertions.assertEquals(401, code());
     }
@@ -0,0 +1,176 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.load;
+
+import eu.openanalytics.crane.test.helpers.CraneInstance;
+import eu.openanalytics.crane.test.helpers.KeycloakInstance;
+import eu.openanalytics.crane.test.helpers.auth.CsrfTokenInterceptor;
+import eu.openanalytics.crane.test.helpers.auth.KeycloakAuthTokenInterceptor;
+import okhttp3.ConnectionPool;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test of Crane, using a synthetic repository and an open-model load generator.
+ * The test is not part of the regular build, run it using `mvn -Pload-test test`, see {@link LoadTestSettings} for
+ * the available settings. The latency distribution of every scenario is written to `target/load-test` (in the
+ * HdrHistogram percentile format), such that the results of different builds can be compared.
+ */
+@EnabledIfSystemProperty(named = "crane.load-test", matches = "true")
+public class CraneLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CraneLoadTest.class);
+    private static final int PORT = 7290;
+    private static final LoadTestSettings settings = new LoadTestSettings();
+    private static KeycloakInstance keycloakInstance;
+    private static SyntheticRepository repository;
+    private static CraneInstance inst;
+    private static OkHttpClient client;
+    private static OkHttpClient anonymousClient;
+
+    @BeforeAll
+    public static void beforeAll() throws IOException {
+        repository = new SyntheticRepository(settings);
+        repository.generate();
+        // created here instead of in a static initializer, such that the container is not created when the test is disabled
+        keycloakInstance = new KeycloakInstance();
+        keycloakInstance.start();
+        Map<String, String> properties = new HashMap<>();
+        properties.put("crane.load-test.storage-location", settings.storageLocation.toString());
+        properties.put("crane.load-test.posix", String.valueOf(settings.posix));
+        inst = new CraneInstance("application-test-load.yml", PORT, properties, true, false);
+
+        ConnectionPool connectionPool = new ConnectionPool(settings.clients, 5, TimeUnit.MINUTES);
+        OkHttpClient baseClient = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .followRedirects(false)
+            .callTimeout(Duration.ofSeconds(120))
+            .readTimeout(Duration.ofSeconds(120))
+            .build();
+        client = baseClient.newBuilder().addInterceptor(new KeycloakAuthTokenInterceptor("demo", "demo")).build();
+        anonymousClient = baseClient.newBuilder().addInterceptor(new CsrfTokenInterceptor()).build();
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        if (inst != null) {
+            inst.close();
+        }
+    }
+
+    @Test
+    public void runLoadTest() throws Exception {
+        String baseUrl = inst.client.getBaseUrl();
+        String ifModifiedSince = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now());
+        byte[] upload = new byte[(int) settings.uploadSize];
+
+        OpenModelLoadGenerator generator = new OpenModelLoadGenerator(settings);
+        Map<Scenario, OpenModelLoadGenerator.ScenarioResult> results = generator.run((scenario, random) -> switch (scenario) {
+            case DOWNLOAD -> execute(client, new Request.Builder().url(baseUrl + "/" + SyntheticRepository.REPOSITORY + "/" + randomFile(random)));
+            case LISTING -> execute(client, new Request.Builder()
+                .url(baseUrl + "/" + SyntheticRepository.REPOSITORY + "/" + repository.directory(random.nextInt(repository.getLeafDirectories())) + "/")
+                .header("Accept", "text/html"));
+            case CONDITIONAL_GET -> execute(client, new Request.Builder()
+                .url(baseUrl + "/" + SyntheticRepository.REPOSITORY + "/" + randomFile(random))
+                .header("If-Modified-Since", ifModifiedSince));
+            case UPLOAD -> execute(anonymousClient, new Request.Builder()
+                .url(baseUrl + "/" + SyntheticRepository.UPLOAD_REPOSITORY + "/" + UUID.randomUUID() + ".bin")
+                .header("Accept", "*/*")
+                .post(new MultipartBody.Builder().setType(MultipartBody.FORM).addFormDataPart("file", "file.bin", RequestBody.create(upload)).build()));
+        });
+
+        report(results);
+        for (Map.Entry<Scenario, OpenModelLoadGenerator.ScenarioResult> result : results.entrySet()) {
+            Assertions.assertTrue(result.getValue().errorRatio() <= settings.maxErrorRatio,
+                "Error ratio of scenario %s is %.4f".formatted(result.getKey().getName(), result.getValue().errorRatio()));
+        }
+    }
+
+    private String randomFile(SplittableRandom random) {
+        return repository.file(random.nextInt(settings.files));
+    }
+
+    private OpenModelLoadGenerator.Outcome execute(OkHttpClient client, Request.Builder request) throws IOException {
+        try (Response response = client.newCall(request.build()).execute()) {
+            ResponseBody body = response.body();
+            if (body != null) {
+                // consume the whole body, such that the time needed to stream the file is included
+                body.byteStream().transferTo(OutputStream.nullOutputStream());
+            }
+            if (response.code() == 403) {
+                return OpenModelLoadGenerator.Outcome.DENIED;
+            }
+            if (response.isSuccessful() || response.code() == 304) {
+                return OpenModelLoadGenerator.Outcome.SUCCESS;
+            }
+            return OpenModelLoadGenerator.Outcome.ERROR;
+        }
+    }
+
+    private void report(Map<Scenario, OpenModelLoadGenerator.ScenarioResult> results) throws IOException {
+        Files.createDirectories(settings.reportDirectory);
+        StringBuilder report = new StringBuilder();
+        report.append("%-16s %10s %10s %8s %8s %10s %10s %10s %10s %10s%n".formatted("scenario", "requests", "req/s", "denied", "errors", "p50 (ms)", "p90 (ms)", "p99 (ms)", "p99.9 (ms)", "max (ms)"));
+        for (Map.Entry<Scenario, OpenModelLoadGenerator.ScenarioResult> entry : results.entrySet()) {
+            OpenModelLoadGenerator.ScenarioResult result = entry.getValue();
+            report.append("%-16s %10d %10.1f %8d %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n".formatted(
+                entry.getKey().getName(), result.requests(), result.throughput(), result.denied(), result.errors(),
+                result.latency().getValueAtPercentile(50) / 1000.0,
+                result.latency().getValueAtPercentile(90) / 1000.0,
+                result.latency().getValueAtPercentile(99) / 1000.0,
+                result.latency().getValueAtPercentile(99.9) / 1000.0,
+                result.latency().getMaxValue() / 1000.0));
+            Path histogramFile = settings.reportDirectory.resolve(entry.getKey().getName() + ".hgrm");
+            try (PrintStream printStream = new PrintStream(Files.newOutputStream(histogramFile))) {
+                // values are recorded in microseconds, output in milliseconds
+                result.latency().outputPercentileDistribution(printStream, 1000.0);
+            }
+        }
+        Files.writeString(settings.reportDirectory.resolve("report.txt"), settings.repositoryParameters() + System.lineSeparator() + report);
+        logger.info("Load test results ({} requests/s, {} clients):{}{}", settings.rate, settings.clients, System.lineSeparator(), report);
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.load;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Settings of the load test, read from system properties (`crane.load-test.*`) such that the same test can be run
+ * with different workloads, e.g. `mvn -Pload-test test -Dcrane.load-test.rate=500 -Dcrane.load-test.files=2000000`.
+ */
+public class LoadTestSettings {
+
+    private static final String PREFIX = "crane.load-test.";
+
+    public final Path storageLocation = Path.of(get("storage-location", "/tmp/crane-load-test"));
+    public final int files = Integer.parseInt(get("files", "100000"));
+    public final int depth = Integer.parseInt(get("depth", "3"));
+    public final int fanout = Integer.parseInt(get("fanout", "10"));
+    public final Map<Long, Integer> sizes = parseWeights(get("sizes", "1024:70,65536:25,4194304:5"), Long::parseLong);
+    public final boolean sparseFiles = Boolean.parseBoolean(get("sparse-files", "false"));
+    public final boolean posix = Boolean.parseBoolean(get("posix", "false"));
+    public final Map<Scenario, Integer> mix = parseWeights(get("mix", "download:70,listing:10,conditional-get:15,upload:5"), Scenario::of);
+    public final double rate = Double.parseDouble(get("rate", "200"));
+    public final int clients = Integer.parseInt(get("clients", "64"));
+    public final Duration warmup = Duration.parse(get("warmup", "PT10S"));
+    public final Duration duration = Duration.parse(get("duration", "PT60S"));
+    public final long uploadSize = Long.parseLong(get("upload-size", "65536"));
+    public final double maxErrorRatio = Double.parseDouble(get("max-error-ratio", "0.01"));
+    public final Path reportDirectory = Path.of(get("report-directory", "target/load-test"));
+
+    private static String get(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+
+    private static <K> Map<K, Integer> parseWeights(String value, Function<String, K> keyParser) {
+        Map<K, Integer> weights = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid weight '%s', expected <value>:<weight>".formatted(entry));
+            }
+            weights.put(keyParser.apply(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * @return the parameters that determine the content of the generated repository
+     */
+    public String repositoryParameters() {
+        return "files=%d depth=%d fanout=%d sizes=%s sparse=%s posix=%s".formatted(files, depth, fanout, sizes, sparseFiles, posix);
+    }
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are started at a constant arrival rate, independent of how fast the server
+ * responds. The latency of a request is measured from the moment it was scheduled to start (and not from the moment
+ * a client thread was available), such that queueing caused by a slow server is part of the measured latency
+ * (i.e. the results do not suffer from coordinated omission).
+ */
+public class OpenModelLoadGenerator {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final LoadTestSettings settings;
+    private final Scenario[] scenarios;
+    private final int[] cumulativeWeights;
+    private final Map<Scenario, ScenarioStatistics> statistics = new EnumMap<>(Scenario.class);
+
+    public OpenModelLoadGenerator(LoadTestSettings settings) {
+        this.settings = settings;
+        this.scenarios = settings.mix.keySet().toArray(new Scenario[0]);
+        this.cumulativeWeights = new int[scenarios.length];
+        int total = 0;
+        for (int i = 0; i < scenarios.length; i++) {
+            total += settings.mix.get(scenarios[i]);
+            cumulativeWeights[i] = total;
+            statistics.put(scenarios[i], new ScenarioStatistics());
+        }
+    }
+
+    /**
+     * Runs the warmup followed by the measured phase.
+     *
+     * @return the statistics of the measured phase
+     */
+    public Map<Scenario, ScenarioResult> run(RequestExecutor executor) throws InterruptedException {
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor clients = new ThreadPoolExecutor(settings.clients, settings.clients, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "crane-load-test-client-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        SplittableRandom random = new SplittableRandom(42);
+        long intervalNanos = (long) (1_000_000_000 / settings.rate);
+        long start = System.nanoTime();
+        long measureStart = start + settings.warmup.toNanos();
+        long end = measureStart + settings.duration.toNanos();
+        boolean measuring = false;
+
+        logger.info("Starting load test: {} requests/s using {} clients, warmup {}, duration {}", settings.rate, settings.clients, settings.warmup, settings.duration);
+        for (long request = 0; ; request++) {
+            long intendedStart = start + request * intervalNanos;
+            if (intendedStart >= end) {
+                break;
+            }
+            if (!measuring && intendedStart >= measureStart) {
+                // discard the results of the warmup
+                statistics.values().forEach(ScenarioStatistics::reset);
+                measuring = true;
+            }
+            long delay;
+            while ((delay = intendedStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            Scenario scenario = pick(random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]));
+            long seed = random.nextLong();
+            ScenarioStatistics scenarioStatistics = statistics.get(scenario);
+            clients.execute(() -> {
+                Outcome outcome;
+                try {
+                    outcome = executor.execute(scenario, new SplittableRandom(seed));
+                } catch (Exception e) {
+                    logger.debug("Request of scenario {} failed", scenario, e);
+                    outcome = Outcome.ERROR;
+                }
+                scenarioStatistics.record(outcome, System.nanoTime() - intendedStart);
+            });
+        }
+        clients.shutdown();
+        if (!clients.awaitTermination(5, TimeUnit.MINUTES)) {
+            logger.warn("Not all requests completed within 5 minutes after the end of the load test");
+            clients.shutdownNow();
+        }
+        long measuredNanos = Math.max(System.nanoTime(), end) - measureStart;
+
+        Map<Scenario, ScenarioResult> results = new EnumMap<>(Scenario.class);
+        statistics.forEach((scenario, scenarioStatistics) -> results.put(scenario, scenarioStatistics.result(measuredNanos)));
+        return results;
+    }
+
+    private Scenario pick(int value) {
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return scenarios[i];
+            }
+        }
+        return scenarios[scenarios.length - 1];
+    }
+
+    public enum Outcome {
+        SUCCESS, DENIED, ERROR
+    }
+
+    @FunctionalInterface
+    public interface RequestExecutor {
+        Outcome execute(Scenario scenario, SplittableRandom random) throws Exception;
+    }
+
+    /**
+     * @param latency latency of all requests in microseconds
+     */
+    public record ScenarioResult(Histogram latency, long success, long denied, long errors, double throughput) {
+
+        public long requests() {
+            return success + denied + errors;
+        }
+
+        public double errorRatio() {
+            return requests() == 0 ? 0 : (double) errors / requests();
+        }
+
+    }
+
+    private static class ScenarioStatistics {
+
+        private final Recorder latency = new Recorder(3);
+        private final LongAdder success = new LongAdder();
+        private final LongAdder denied = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        void record(Outcome outcome, long latencyNanos) {
+            latency.recordValue(Math.max(1, latencyNanos / 1_000));
+            switch (outcome) {
+                case SUCCESS -> success.increment();
+                case DENIED -> denied.increment();
+                case ERROR -> errors.increment();
+            }
+        }
+
+        void reset() {
+            latency.reset();
+            success.reset();
+            denied.reset();
+            errors.reset();
+        }
+
+        ScenarioResult result(long measuredNanos) {
+            long requests = success.sum() + denied.sum() + errors.sum();
+            return new ScenarioResult(latency.getIntervalHistogram(), success.sum(), denied.sum(), errors.sum(), requests * 1e9 / measuredNanos);
+        }
+
+    }
+
+}
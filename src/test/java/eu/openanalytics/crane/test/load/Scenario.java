@@ -0,0 +1,59 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.load;
+
+import java.util.Arrays;
+
+public enum Scenario {
+    /**
+     * Downloads a file of the generated repository.
+     */
+    DOWNLOAD("download"),
+    /**
+     * Requests the index page of a directory of the generated repository.
+     */
+    LISTING("listing"),
+    /**
+     * Requests a file using `If-Modified-Since`, which results in a 304 without body.
+     */
+    CONDITIONAL_GET("conditional-get"),
+    /**
+     * Uploads a new file.
+     */
+    UPLOAD("upload");
+
+    private final String name;
+
+    Scenario(String name) {
+        this.name = name;
+    }
+
+    public static Scenario of(String name) {
+        return Arrays.stream(values())
+            .filter(scenario -> scenario.name.equals(name))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unknown scenario '%s'".formatted(name)));
+    }
+
+    public String getName() {
+        return name;
+    }
+}
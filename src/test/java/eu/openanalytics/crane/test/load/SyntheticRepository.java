@@ -0,0 +1,187 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Generates a synthetic repository: a tree of `fanout ^ depth` leaf directories (named `d0` ... `dN` on every level),
+ * over which the files are distributed round-robin. The size of every file is picked from the weighted size
+ * distribution. Since the layout is deterministic, the path of every file and directory can be computed from its
+ * index, such that repositories of millions of files do not have to be kept in memory.
+ * <p>
+ * When POSIX permissions are enabled, the group of all files is set to the gid of the `demo` user and one in ten
+ * files is only readable by its owner. Changing the group requires the test to run as root.
+ */
+public class SyntheticRepository {
+
+    public static final String REPOSITORY = "load";
+    public static final String UPLOAD_REPOSITORY = "load_uploads";
+    private static final String MARKER_FILE = ".crane-load-test";
+    private static final int DEMO_GID = 9998;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final LoadTestSettings settings;
+    private final Path root;
+    private final int leafDirectories;
+    private final long[] sizes;
+    private final int[] cumulativeWeights;
+
+    public SyntheticRepository(LoadTestSettings settings) {
+        if (settings.depth < 1 || settings.fanout < 1) {
+            throw new IllegalArgumentException("The depth and fanout of the synthetic repository must be at least 1");
+        }
+        this.settings = settings;
+        this.root = settings.storageLocation.resolve(REPOSITORY);
+        this.leafDirectories = (int) Math.pow(settings.fanout, settings.depth);
+        this.sizes = new long[settings.sizes.size()];
+        this.cumulativeWeights = new int[settings.sizes.size()];
+        int i = 0;
+        int total = 0;
+        for (Map.Entry<Long, Integer> size : settings.sizes.entrySet()) {
+            total += size.getValue();
+            sizes[i] = size.getKey();
+            cumulativeWeights[i] = total;
+            i++;
+        }
+    }
+
+    /**
+     * Generates the repository, unless a repository with the same parameters was already generated by a previous run.
+     */
+    public void generate() throws IOException {
+        Path marker = root.resolve(MARKER_FILE);
+        if (Files.exists(marker) && Files.readString(marker).equals(settings.repositoryParameters())) {
+            logger.info("Re-using synthetic repository {} ({})", root, settings.repositoryParameters());
+            return;
+        }
+        logger.info("Generating synthetic repository {} ({})", root, settings.repositoryParameters());
+        long start = System.nanoTime();
+        Files.createDirectories(root);
+        Files.deleteIfExists(marker);
+        Files.createDirectories(settings.storageLocation.resolve(UPLOAD_REPOSITORY));
+        setPermissions(root, "rwxr-x---");
+
+        AtomicLong bytes = new AtomicLong();
+        IntStream.range(0, leafDirectories).parallel().forEach(leaf -> {
+            try {
+                Path directory = root.resolve(directory(leaf));
+                Files.createDirectories(directory);
+                for (Path parent = directory; !parent.equals(root); parent = parent.getParent()) {
+                    setPermissions(parent, "rwxr-x---");
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+                for (int file = leaf; file < settings.files; file += leafDirectories) {
+                    long size = size(file);
+                    Path path = root.resolve(file(file));
+                    writeFile(path, size, buffer);
+                    setPermissions(path, file % 10 == 9 ? "rw-------" : "rw-r-----");
+                    bytes.addAndGet(size);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        Files.writeString(marker, settings.repositoryParameters());
+        logger.info("Generated {} files ({} MiB) in {} s", settings.files, bytes.get() / (1024 * 1024), (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    private void writeFile(Path path, long size, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (settings.sparseFiles) {
+                if (size > 0) {
+                    channel.write(ByteBuffer.allocate(1), size - 1);
+                }
+                return;
+            }
+            long remaining = size;
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                remaining -= channel.write(buffer);
+            }
+        }
+    }
+
+    private void setPermissions(Path path, String permissions) throws IOException {
+        if (!settings.posix) {
+            return;
+        }
+        Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+        Files.setAttribute(path, "unix:gid", DEMO_GID);
+    }
+
+    /**
+     * @return the size of the file with the given index, picked (deterministically) from the size distribution
+     */
+    public long size(int file) {
+        int value = (int) Math.floorMod(file * 2654435761L, (long) cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return sizes[i];
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * @return the path (relative to the repository) of the leaf directory with the given index
+     */
+    public String directory(int leaf) {
+        StringBuilder path = new StringBuilder();
+        int remaining = leaf;
+        for (int level = 0; level < settings.depth; level++) {
+            if (level > 0) {
+                path.insert(0, '/');
+            }
+            path.insert(0, "d" + (remaining % settings.fanout));
+            remaining /= settings.fanout;
+        }
+        return path.toString();
+    }
+
+    /**
+     * @return the path (relative to the repository) of the file with the given index
+     */
+    public String file(int file) {
+        return directory(file % leafDirectories) + "/f" + file + ".bin";
+    }
+
+    public int getLeafDirectories() {
+        return leafDirectories;
+    }
+
+}
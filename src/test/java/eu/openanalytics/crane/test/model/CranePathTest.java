@@ -0,0 +1,96 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.model;
+
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.runtime.CranePath;
+import eu.openanalytics.crane.security.PathTraversalFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public class CranePathTest {
+
+    @Test
+    public void testParse() {
+        Repository repository = repository();
+
+        CranePath path = CranePath.of(repository, "/dir//file.txt");
+        Assertions.assertEquals(List.of("dir", "file.txt"), path.getSegments());
+        Assertions.assertEquals("/dir/file.txt", path.getPath());
+        Assertions.assertEquals("dir/file.txt", path.getRelativePath());
+        Assertions.assertFalse(path.hasTrailingSlash());
+        Assertions.assertEquals(Path.of("/tmp/repository/dir/file.txt"), path.getStoragePath());
+
+        CranePath directory = CranePath.of(repository, "/dir/");
+        Assertions.assertEquals(List.of("dir"), directory.getSegments());
+        Assertions.assertEquals("/dir", directory.getPath());
+        Assertions.assertTrue(directory.hasTrailingSlash());
+
+        for (String root : List.of("", "/")) {
+            CranePath rootPath = CranePath.of(repository, root);
+            Assertions.assertTrue(rootPath.isRoot());
+            Assertions.assertEquals("/", rootPath.getPath());
+            Assertions.assertEquals("", rootPath.getRelativePath());
+            Assertions.assertEquals(Path.of("/tmp/repository"), rootPath.getStoragePath());
+        }
+    }
+
+    @Test
+    public void testParsedOncePerRequest() {
+        Repository repository = repository();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/__file/repository/dir/file.txt");
+
+        CranePath path = CranePath.forRequest(request, repository, "/dir/file.txt");
+        Assertions.assertSame(path, CranePath.forRequest(request, repository, "/dir/file.txt"));
+        // e.g. after a rewrite
+        Assertions.assertNotSame(path, CranePath.forRequest(request, repository, "/other/file.txt"));
+    }
+
+    @Test
+    public void testSegmentsOfPathTraversalFilterAreReused() throws Exception {
+        Repository repository = repository();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/repository/dir/file.txt");
+        new PathTraversalFilter().doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+        });
+        List<String> requestSegments = PathTraversalFilter.getPathSegments(request);
+
+        CranePath path = CranePath.forRequest(request, repository, "/dir/file.txt");
+        Assertions.assertEquals(List.of("dir", "file.txt"), path.getSegments());
+        Assertions.assertEquals(requestSegments.subList(1, 3), path.getSegments());
+
+        CranePath other = CranePath.forRequest(request, repository, "/dir/other.txt");
+        Assertions.assertEquals(List.of("dir", "other.txt"), other.getSegments());
+    }
+
+    private Repository repository() {
+        Repository repository = new Repository();
+        repository.setName("repository");
+        repository.setStorageLocation("/tmp/repository");
+        repository.setStoragePath(Path.of("/tmp/repository"));
+        return repository;
+    }
+
+}
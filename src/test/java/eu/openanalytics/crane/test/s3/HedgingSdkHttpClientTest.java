@@ -0,0 +1,128 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.s3;
+
+import eu.openanalytics.crane.model.config.S3Hedging;
+import eu.openanalytics.crane.s3.HedgingSdkHttpClient;
+import eu.openanalytics.crane.test.helpers.FaultInjectingS3Server;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.net.URI;
+import java.time.Duration;
+
+public class HedgingSdkHttpClientTest {
+
+    private static final int WARM_UP_REQUESTS = 64;
+
+    @Test
+    public void testStragglerIsHedged() {
+        S3Hedging hedging = hedging(1.0);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (FaultInjectingS3Server server = new FaultInjectingS3Server(3_000, (path, n) -> path.endsWith("/straggler.txt") && n == 0);
+             S3Client client = client(server, hedging, meterRegistry)) {
+            warmUp(client);
+
+            long start = System.nanoTime();
+            String content = client.getObjectAsBytes(b -> b.bucket("bucket").key("straggler.txt")).asUtf8String();
+            Duration duration = Duration.ofNanos(System.nanoTime() - start);
+
+            Assertions.assertEquals(FaultInjectingS3Server.CONTENT, content);
+            Assertions.assertTrue(duration.compareTo(Duration.ofSeconds(2)) < 0, "Hedged request took " + duration);
+            Assertions.assertTrue(meterRegistry.counter("crane.s3.hedging.wins", "operation", "get").count() >= 1.0);
+        }
+    }
+
+    @Test
+    public void testServerErrorDoesNotWinFromPendingAttempt() {
+        S3Hedging hedging = hedging(1.0);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // the first request is slow but succeeds, the hedge immediately fails with a 503
+        try (FaultInjectingS3Server server = new FaultInjectingS3Server(500, (path, n) -> path.endsWith("/degraded.txt") && n == 0,
+            (path, n) -> path.endsWith("/degraded.txt") && n == 1);
+             S3Client client = client(server, hedging, meterRegistry)) {
+            warmUp(client);
+
+            String content = client.getObjectAsBytes(b -> b.bucket("bucket").key("degraded.txt")).asUtf8String();
+
+            Assertions.assertEquals(FaultInjectingS3Server.CONTENT, content);
+            Assertions.assertEquals(1.0, meterRegistry.counter("crane.s3.hedging.hedges", "operation", "get").count());
+            // the 503 was not returned to the SDK, therefore the request was not retried
+            Assertions.assertEquals(2, server.getRequestCount("/bucket/degraded.txt"));
+        }
+    }
+
+    @Test
+    public void testHedgesAreLimitedByBudget() {
+        S3Hedging hedging = hedging(0.0);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (FaultInjectingS3Server server = new FaultInjectingS3Server(100, (path, n) -> path.endsWith("/slow.txt"));
+             S3Client client = client(server, hedging, meterRegistry)) {
+            warmUp(client);
+
+            for (int i = 0; i < 20; i++) {
+                client.headObject(b -> b.bucket("bucket").key("slow.txt"));
+            }
+
+            // the initial budget allows 10 hedges, a ratio of 0 never adds budget
+            double hedges = meterRegistry.counter("crane.s3.hedging.hedges", "operation", "head").count()
+                + meterRegistry.counter("crane.s3.hedging.hedges", "operation", "get").count();
+            double skipped = meterRegistry.counter("crane.s3.hedging.skipped", "operation", "head").count();
+            Assertions.assertEquals(10.0, hedges);
+            Assertions.assertTrue(skipped >= 10.0);
+        }
+    }
+
+    private void warmUp(S3Client client) {
+        for (int i = 0; i < WARM_UP_REQUESTS / 2; i++) {
+            client.headObject(b -> b.bucket("bucket").key("file.txt"));
+            client.getObjectAsBytes(b -> b.bucket("bucket").key("file.txt"));
+        }
+    }
+
+    private S3Hedging hedging(double maxHedgeRatio) {
+        S3Hedging hedging = new S3Hedging();
+        hedging.setEnabled(true);
+        hedging.setMinSamples(32);
+        hedging.setMinDelay(Duration.ofMillis(20));
+        hedging.setMaxDelay(Duration.ofMillis(50));
+        hedging.setMaxHedgeRatio(maxHedgeRatio);
+        return hedging;
+    }
+
+    private S3Client client(FaultInjectingS3Server server, S3Hedging hedging, MeterRegistry meterRegistry) {
+        return S3Client.builder()
+            .endpointOverride(URI.create(server.getEndpoint()))
+            .forcePathStyle(true)
+            .region(Region.EU_WEST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("access", "secret")))
+            .httpClient(new HedgingSdkHttpClient(ApacheHttpClient.create(), hedging, 16, meterRegistry))
+            .build();
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.s3;
+
+import eu.openanalytics.crane.model.config.S3ClientOptions;
+import eu.openanalytics.crane.model.config.S3Hedging;
+import eu.openanalytics.crane.s3.S3ClientManager;
+import eu.openanalytics.crane.test.helpers.FaultInjectingS3Server;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Map;
+
+public class S3ClientManagerTest {
+
+    @Test
+    public void testSharedHttpClientReportsMetrics() {
+        S3ClientOptions options = new S3ClientOptions();
+        options.setMaxConnections(7);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (FaultInjectingS3Server server = new FaultInjectingS3Server(0, (path, n) -> false);
+             S3ClientManager s3ClientManager = new S3ClientManager(options, new S3Hedging(), URI.create(server.getEndpoint()), meterRegistry)) {
+            S3Client first = client(s3ClientManager, server);
+            S3Client second = client(s3ClientManager, server);
+
+            first.headObject(b -> b.bucket("bucket").key("file.txt"));
+            second.getObjectAsBytes(b -> b.bucket("bucket").key("file.txt"));
+
+            Assertions.assertEquals(2, server.getRequestCount());
+            Assertions.assertEquals(1, meterRegistry.timer("crane.s3.client.calls", "operation", "HeadObject", "successful", "true").count());
+            Assertions.assertEquals(1, meterRegistry.timer("crane.s3.client.calls", "operation", "GetObject", "successful", "true").count());
+
+            // both clients use the same connection pool
+            Map<String, Map<String, Integer>> pools = s3ClientManager.getMetricPublisher().getPoolStates();
+            Assertions.assertEquals(1, pools.size());
+            Assertions.assertEquals(7, pools.values().iterator().next().get("max"));
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void testPresignerUsesConfigurationOfClients() {
+        try (FaultInjectingS3Server server = new FaultInjectingS3Server(0, (path, n) -> false);
+             S3ClientManager s3ClientManager = new S3ClientManager(new S3ClientOptions(), new S3Hedging(), URI.create(server.getEndpoint()), new SimpleMeterRegistry())) {
+            S3Client client = client(s3ClientManager, server);
+            s3ClientManager.register(client);
+
+            URI url = s3ClientManager.getPresigner()
+                .presignGetObject(b -> b.signatureDuration(Duration.ofMinutes(1)).getObjectRequest(r -> r.bucket("bucket").key("file.txt")))
+                .url().toURI();
+
+            Assertions.assertTrue(url.toString().startsWith(server.getEndpoint() + "/bucket/file.txt?"), url.toString());
+            // signed with the credentials and region of the client
+            Assertions.assertTrue(url.getQuery().contains("X-Amz-Credential=access/"), url.toString());
+            Assertions.assertTrue(url.getQuery().contains("/eu-west-1/s3/aws4_request"), url.toString());
+            client.close();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private S3Client client(S3ClientManager s3ClientManager, FaultInjectingS3Server server) {
+        return s3ClientManager.configure(S3Client.builder()
+                .endpointOverride(URI.create(server.getEndpoint()))
+                .forcePathStyle(true)
+                .region(Region.EU_WEST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("access", "secret"))))
+            .build();
+    }
+
+}
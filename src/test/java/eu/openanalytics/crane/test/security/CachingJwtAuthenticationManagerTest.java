@@ -0,0 +1,166 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.security;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.JwtCache;
+import eu.openanalytics.crane.security.CachingJwtAuthenticationManager;
+import eu.openanalytics.crane.security.CraneJwtAuthenticationConverter;
+import eu.openanalytics.crane.security.JwtRevocationChecker;
+import eu.openanalytics.crane.security.TokenParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationEventPublisher;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingJwtAuthenticationManagerTest {
+
+    private final Instant now = Instant.parse("2025-01-01T10:00:00Z");
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger decodeCount = new AtomicInteger();
+    private final List<String> events = new ArrayList<>();
+    private final AuthenticationEventPublisher eventPublisher = new AuthenticationEventPublisher() {
+        @Override
+        public void publishAuthenticationSuccess(Authentication authentication) {
+            events.add("success:" + authentication.getName());
+        }
+
+        @Override
+        public void publishAuthenticationFailure(AuthenticationException exception, Authentication authentication) {
+            events.add("failure:" + exception.getMessage());
+        }
+    };
+    private final Map<String, Instant> expirations = Map.of(
+        "token-a", now.plus(Duration.ofMinutes(5)),
+        "token-b", now.plus(Duration.ofMinutes(5)),
+        "expired", now.minus(Duration.ofMinutes(1))
+    );
+    private final JwtDecoder jwtDecoder = token -> {
+        decodeCount.incrementAndGet();
+        if (!expirations.containsKey(token)) {
+            throw new BadJwtException("Invalid token");
+        }
+        return Jwt.withTokenValue(token)
+            .header("alg", "RS256")
+            .claim("preferred_username", "user-" + token)
+            .issuedAt(now.minus(Duration.ofMinutes(10)))
+            .expiresAt(expirations.get(token))
+            .build();
+    };
+
+    @Test
+    public void testTokenIsVerifiedOnce() {
+        CachingJwtAuthenticationManager manager = manager(null);
+
+        for (int i = 0; i < 300; i++) {
+            Authentication authentication = manager.authenticate(bearer("token-a", "10.0.0." + i));
+            Assertions.assertEquals("user-token-a", authentication.getName());
+            // details belong to the request, cached authentications are never shared
+            Assertions.assertEquals("10.0.0." + i, authentication.getDetails());
+        }
+        Assertions.assertEquals(1, decodeCount.get());
+
+        Assertions.assertEquals("user-token-b", manager.authenticate(bearer("token-b", null)).getName());
+        Assertions.assertEquals(2, decodeCount.get());
+        Assertions.assertEquals(299, meterRegistry.get("cache.gets").tag("cache", "jwt-authentication").tag("result", "hit").functionCounter().count());
+
+        manager.invalidate("token-a");
+        manager.authenticate(bearer("token-a", null));
+        Assertions.assertEquals(3, decodeCount.get());
+    }
+
+    @Test
+    public void testInvalidTokensAreNotCached() {
+        CachingJwtAuthenticationManager manager = manager(null);
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThrows(InvalidBearerTokenException.class, () -> manager.authenticate(bearer("unknown", null)));
+        }
+        Assertions.assertEquals(2, decodeCount.get());
+    }
+
+    @Test
+    public void testExpiredTokensAreNotCached() {
+        CachingJwtAuthenticationManager manager = manager(null);
+        // the (fake) decoder does not validate the expiration, the cache should not keep the token
+        manager.authenticate(bearer("expired", null));
+        manager.authenticate(bearer("expired", null));
+        Assertions.assertEquals(2, decodeCount.get());
+    }
+
+    @Test
+    public void testRevokedToken() {
+        Set<String> revoked = new HashSet<>();
+        CachingJwtAuthenticationManager manager = manager(jwt -> revoked.contains(jwt.getTokenValue()));
+
+        manager.authenticate(bearer("token-a", null));
+        revoked.add("token-a");
+        Assertions.assertThrows(InvalidBearerTokenException.class, () -> manager.authenticate(bearer("token-a", null)));
+        Assertions.assertEquals(1, meterRegistry.get("crane.jwt.revoked").counter().count());
+        Assertions.assertEquals("user-token-b", manager.authenticate(bearer("token-b", null)).getName());
+    }
+
+    @Test
+    public void testEventsArePublishedForCachedTokens() {
+        Set<String> revoked = new HashSet<>();
+        CachingJwtAuthenticationManager manager = manager(jwt -> revoked.contains(jwt.getTokenValue()));
+
+        // the second request is served from the cache, the audit log must still record it
+        manager.authenticate(bearer("token-a", null));
+        manager.authenticate(bearer("token-a", null));
+        Assertions.assertThrows(InvalidBearerTokenException.class, () -> manager.authenticate(bearer("unknown", null)));
+        revoked.add("token-a");
+        Assertions.assertThrows(InvalidBearerTokenException.class, () -> manager.authenticate(bearer("token-a", null)));
+
+        Assertions.assertEquals(2, decodeCount.get());
+        Assertions.assertEquals(List.of("success:user-token-a", "success:user-token-a", "failure:Invalid token", "failure:Token has been revoked"), events);
+    }
+
+    private CachingJwtAuthenticationManager manager(JwtRevocationChecker revocationChecker) {
+        CraneConfig craneConfig = new CraneConfig();
+        CraneJwtAuthenticationConverter converter = new CraneJwtAuthenticationConverter(new TokenParser(craneConfig), craneConfig);
+        return new CachingJwtAuthenticationManager(jwtDecoder, converter, new JwtCache(), revocationChecker, eventPublisher, meterRegistry, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private BearerTokenAuthenticationToken bearer(String token, Object details) {
+        BearerTokenAuthenticationToken bearer = new BearerTokenAuthenticationToken(token);
+        bearer.setDetails(details);
+        return bearer;
+    }
+
+}
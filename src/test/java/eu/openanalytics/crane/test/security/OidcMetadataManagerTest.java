@@ -0,0 +1,189 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import eu.openanalytics.crane.model.config.OidcMetadata;
+import eu.openanalytics.crane.security.OidcMetadataManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class OidcMetadataManagerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger metadataFetches = new AtomicInteger();
+    private final AtomicInteger jwksFetches = new AtomicInteger();
+    private final AtomicReference<JWKSet> published = new AtomicReference<>();
+
+    @Test
+    public void testStartupDoesNotWaitForUnavailableProvider() throws Exception {
+        CountDownLatch providerAvailable = new CountDownLatch(1);
+        RSAKey key = generateKey("key-1");
+        published.set(new JWKSet(key.toPublicJWK()));
+        OidcMetadata settings = settings(Duration.ofSeconds(30));
+        settings.setStartupWait(Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        OidcMetadataManager manager = new OidcMetadataManager(settings, meterRegistry, () -> {
+            await(providerAvailable);
+            metadataFetches.incrementAndGet();
+            return "https://idp/jwks";
+        }, this::fetch);
+        try {
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+            providerAvailable.countDown();
+            // the first request waits for the fetch that is already in progress
+            Assertions.assertEquals("user", manager.createJwtDecoder().decode(sign(key, "user")).getSubject());
+            Assertions.assertEquals(1, metadataFetches.get());
+            Assertions.assertEquals(1, jwksFetches.get());
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    @Test
+    public void testRotatedKeyIsFetchedOnce() throws Exception {
+        RSAKey oldKey = generateKey("key-1");
+        RSAKey newKey = generateKey("key-2");
+        published.set(new JWKSet(oldKey.toPublicJWK()));
+        OidcMetadataManager manager = manager(settings(Duration.ZERO));
+        try {
+            JwtDecoder decoder = manager.createJwtDecoder();
+            Assertions.assertEquals("user", decoder.decode(sign(oldKey, "user")).getSubject());
+            Assertions.assertEquals(1, jwksFetches.get());
+
+            // the provider rotates its keys
+            published.set(new JWKSet(newKey.toPublicJWK()));
+            Assertions.assertEquals("user", decoder.decode(sign(newKey, "user")).getSubject());
+            Assertions.assertEquals("user", decoder.decode(sign(newKey, "user")).getSubject());
+            Assertions.assertEquals(2, jwksFetches.get());
+            Assertions.assertEquals(1, metadataFetches.get());
+            Assertions.assertEquals(1.0, meterRegistry.get("crane.oidc.jwks.unknown-key").counter().count());
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    @Test
+    public void testUnknownKeyRefetchesAreRateLimited() throws Exception {
+        RSAKey key = generateKey("key-1");
+        RSAKey unknownKey = generateKey("unknown");
+        published.set(new JWKSet(key.toPublicJWK()));
+        OidcMetadataManager manager = manager(settings(Duration.ofMinutes(10)));
+        try {
+            JwtDecoder decoder = manager.createJwtDecoder();
+            String token = sign(unknownKey, "attacker");
+            for (int i = 0; i < 100; i++) {
+                Assertions.assertThrows(JwtException.class, () -> decoder.decode(token));
+            }
+            // the initial fetch happened less than min-refetch-interval ago
+            Assertions.assertEquals(1, jwksFetches.get());
+            Assertions.assertEquals("user", decoder.decode(sign(key, "user")).getSubject());
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    @Test
+    public void testKeysRemainAvailableWhenRefreshFails() throws Exception {
+        RSAKey key = generateKey("key-1");
+        published.set(new JWKSet(key.toPublicJWK()));
+        OidcMetadataManager manager = manager(settings(Duration.ZERO));
+        try {
+            JwtDecoder decoder = manager.createJwtDecoder();
+            published.set(null);
+            Assertions.assertThrows(JwtException.class, () -> decoder.decode(sign(generateKey("key-2"), "user")));
+            Assertions.assertEquals(2, jwksFetches.get());
+            Assertions.assertEquals("user", decoder.decode(sign(key, "user")).getSubject());
+            Assertions.assertEquals(1.0, meterRegistry.get("crane.oidc.fetch").tags("type", "jwks", "result", "failure").timer().count());
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    private OidcMetadataManager manager(OidcMetadata settings) {
+        return new OidcMetadataManager(settings, meterRegistry, () -> {
+            metadataFetches.incrementAndGet();
+            return "https://idp/jwks";
+        }, this::fetch);
+    }
+
+    private OidcMetadata settings(Duration minRefetchInterval) {
+        OidcMetadata settings = new OidcMetadata();
+        settings.setMinRefetchInterval(minRefetchInterval);
+        settings.setFetchTimeout(Duration.ofSeconds(10));
+        return settings;
+    }
+
+    private String fetch(String uri) {
+        Assertions.assertEquals("https://idp/jwks", uri);
+        jwksFetches.incrementAndGet();
+        JWKSet jwkSet = published.get();
+        if (jwkSet == null) {
+            throw new IllegalStateException("Identity provider unavailable");
+        }
+        return jwkSet.toString();
+    }
+
+    private static RSAKey generateKey(String keyId) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+
+    private static String sign(RSAKey key, String subject) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+            .subject(subject)
+            .issueTime(Date.from(Instant.now()))
+            .expirationTime(Date.from(Instant.now().plus(Duration.ofMinutes(5))))
+            .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.security;
+
+import eu.openanalytics.crane.security.OpenIdReAuthorizeFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.ClientAuthorizationException;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OpenIdReAuthorizeFilterTest {
+
+    private static final int REQUESTS = 20;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OAuth2AuthorizedClientService clientService = mock(OAuth2AuthorizedClientService.class);
+    private final OAuth2AuthorizedClientManager clientManager = mock(OAuth2AuthorizedClientManager.class);
+    private final AtomicReference<OAuth2AuthorizedClient> storedClient = new AtomicReference<>(client(Duration.ofMinutes(-1)));
+    private final AtomicInteger refreshCount = new AtomicInteger();
+    private final AtomicInteger loadCount = new AtomicInteger();
+    private final CountDownLatch refreshStarted = new CountDownLatch(1);
+    private final CountDownLatch allowRefresh = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+    private final OpenIdReAuthorizeFilter filter = new OpenIdReAuthorizeFilter(clientManager, clientService, meterRegistry);
+
+    @AfterEach
+    public void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareRefresh() throws Exception {
+        when(clientService.loadAuthorizedClient(eq("crane"), eq("jack"))).thenAnswer(invocation -> storedClient.get());
+        when(clientManager.authorize(any())).thenAnswer(invocation -> {
+            refreshCount.incrementAndGet();
+            refreshStarted.countDown();
+            allowRefresh.await();
+            storedClient.set(client(Duration.ofMinutes(5)));
+            return storedClient.get();
+        });
+
+        List<Future<MockHttpSession>> requests = sendRequests();
+        Assertions.assertTrue(refreshStarted.await(10, TimeUnit.SECONDS));
+        allowRefresh.countDown();
+        for (Future<MockHttpSession> request : requests) {
+            Assertions.assertFalse(request.get(10, TimeUnit.SECONDS).isInvalid());
+        }
+        Assertions.assertEquals(1, refreshCount.get());
+        Assertions.assertEquals(1, meterRegistry.get("crane.oidc.token.refresh").tag("result", "success").timer().count());
+    }
+
+    @Test
+    public void testFailedRefreshInvalidatesAllSessions() throws Exception {
+        when(clientService.loadAuthorizedClient(anyString(), anyString())).thenAnswer(invocation -> {
+            loadCount.incrementAndGet();
+            return storedClient.get();
+        });
+        when(clientManager.authorize(any())).thenAnswer(invocation -> {
+            refreshCount.incrementAndGet();
+            refreshStarted.countDown();
+            allowRefresh.await();
+            throw new ClientAuthorizationException(new OAuth2Error("invalid_grant"), "crane");
+        });
+
+        List<Future<MockHttpSession>> requests = sendRequests();
+        Assertions.assertTrue(refreshStarted.await(10, TimeUnit.SECONDS));
+        // wait until the other requests loaded the expired client and joined the refresh in progress
+        while (loadCount.get() < REQUESTS + 1) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        allowRefresh.countDown();
+        int invalidated = 0;
+        for (Future<MockHttpSession> request : requests) {
+            if (request.get(10, TimeUnit.SECONDS).isInvalid()) {
+                invalidated++;
+            }
+        }
+        Assertions.assertEquals(REQUESTS, invalidated);
+        Assertions.assertEquals(1, refreshCount.get());
+        Assertions.assertEquals(REQUESTS - 1, meterRegistry.get("crane.oidc.token.refresh.waits").tag("result", "failure").counter().count());
+    }
+
+    @Test
+    public void testUnexpectedRefreshErrorInvalidatesWaitingSessions() throws Exception {
+        when(clientService.loadAuthorizedClient(anyString(), anyString())).thenAnswer(invocation -> {
+            loadCount.incrementAndGet();
+            return storedClient.get();
+        });
+        when(clientManager.authorize(any())).thenAnswer(invocation -> {
+            refreshStarted.countDown();
+            allowRefresh.await();
+            throw new IllegalStateException("Token endpoint unavailable");
+        });
+
+        List<Future<MockHttpSession>> requests = sendRequests();
+        Assertions.assertTrue(refreshStarted.await(10, TimeUnit.SECONDS));
+        while (loadCount.get() < REQUESTS + 1) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        allowRefresh.countDown();
+        int invalidated = 0;
+        int failed = 0;
+        for (Future<MockHttpSession> request : requests) {
+            try {
+                if (request.get(10, TimeUnit.SECONDS).isInvalid()) {
+                    invalidated++;
+                }
+            } catch (ExecutionException e) {
+                // the request that performed the refresh reports the error
+                failed++;
+            }
+        }
+        // the token was not refreshed, the waiting requests must not keep using the session
+        Assertions.assertEquals(1, failed);
+        Assertions.assertEquals(REQUESTS - 1, invalidated);
+    }
+
+    @Test
+    public void testValidTokenIsNotRefreshed() throws Exception {
+        storedClient.set(client(Duration.ofMinutes(5)));
+        when(clientService.loadAuthorizedClient(anyString(), anyString())).thenAnswer(invocation -> storedClient.get());
+
+        MockHttpSession session = sendRequest();
+        Assertions.assertFalse(session.isInvalid());
+        Assertions.assertEquals(0, meterRegistry.find("crane.oidc.token.refresh").timers().size());
+    }
+
+    private List<Future<MockHttpSession>> sendRequests() {
+        List<Future<MockHttpSession>> requests = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            requests.add(executor.submit(this::sendRequest));
+        }
+        return requests;
+    }
+
+    private MockHttpSession sendRequest() throws Exception {
+        DefaultOAuth2User user = new DefaultOAuth2User(AuthorityUtils.NO_AUTHORITIES, Map.of("sub", "jack"), "sub");
+        SecurityContextHolder.getContext().setAuthentication(new OAuth2AuthenticationToken(user, AuthorityUtils.NO_AUTHORITIES, "crane"));
+        MockHttpSession session = new MockHttpSession();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/repo/index.html");
+        request.setSession(session);
+        request.addHeader("Sec-Fetch-Mode", "navigate");
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return session;
+    }
+
+    private static OAuth2AuthorizedClient client(Duration expiresIn) {
+        ClientRegistration registration = ClientRegistration.withRegistrationId("crane")
+            .clientId("crane")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("https://crane/login/oauth2/code/crane")
+            .authorizationUri("https://idp/auth")
+            .tokenUri("https://idp/token")
+            .build();
+        Instant issuedAt = Instant.now().minus(Duration.ofMinutes(10));
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "token", issuedAt, Instant.now().plus(expiresIn));
+        return new OAuth2AuthorizedClient(registration, "jack", accessToken);
+    }
+
+}
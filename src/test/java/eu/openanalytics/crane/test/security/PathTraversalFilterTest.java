@@ -0,0 +1,150 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.security;
+
+import eu.openanalytics.crane.security.PathTraversalFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PathTraversalFilterTest {
+
+    private static final int ITERATIONS = 100_000;
+
+    // none of these segments exist in the root of the filesystem, therefore the canonical path doesn't depend on symlinks
+    private static final List<String> VALID_SEGMENTS = List.of("repo", "file.txt", "a b", "test+.txt", ".hidden", "...", "x..y", "dir");
+    private static final List<String> INVALID_SEGMENTS = List.of(".", "..", "", "%2e", "%2e%2e", "a%b", "a\\b", "..\\..", "a\u0000b", "a\tb", "a\u007fb");
+
+    @Test
+    public void testLexicalValidationIsAtLeastAsStrictAsCanonicalization() {
+        Random random = new Random(42);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String path = randomPath(random, 0.3);
+            List<String> segments = PathTraversalFilter.parseSegments(path);
+            boolean canonical = isCanonical(path);
+            if (segments != null) {
+                Assertions.assertTrue(canonical, "Path accepted by the filter but not canonical: " + path);
+                Assertions.assertEquals(stripTrailingSlash(path), "/" + String.join("/", segments));
+            } else if (canonical) {
+                // the only paths that are stricter rejected are paths containing empty segments, backslashes and control characters
+                Assertions.assertTrue(path.contains("//") || path.contains("\\") || path.chars().anyMatch(Character::isISOControl),
+                    "Canonical path rejected by the filter: " + path);
+            }
+        }
+    }
+
+    @Test
+    public void testPathsWithoutSpecialSegmentsAreAccepted() {
+        Random random = new Random(7);
+        for (int i = 0; i < ITERATIONS; i++) {
+            String path = randomPath(random, 0.0);
+            List<String> segments = PathTraversalFilter.parseSegments(path);
+            Assertions.assertNotNull(segments, path);
+            Assertions.assertEquals(stripTrailingSlash(path), "/" + String.join("/", segments));
+        }
+    }
+
+    @Test
+    public void testExamples() {
+        Assertions.assertEquals(List.of(), PathTraversalFilter.parseSegments("/"));
+        Assertions.assertEquals(List.of("repo", "dir"), PathTraversalFilter.parseSegments("/repo/dir/"));
+        Assertions.assertEquals(List.of("repo", "test+.txt"), PathTraversalFilter.parseSegments("/repo/test+.txt"));
+        Assertions.assertEquals(List.of("repo", "caf\u00e9.txt"), PathTraversalFilter.parseSegments("/repo/caf\u00e9.txt"));
+        Assertions.assertNull(PathTraversalFilter.parseSegments(""));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("repo/file.txt"));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("//"));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("/repo//file.txt"));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("/repo/./file.txt"));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("/repo/.."));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("/repo/../"));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("/repo/my_file%%.txt"));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("/repo/..\\..\\etc\\passwd"));
+        Assertions.assertNull(PathTraversalFilter.parseSegments("/repo/file\u0000.txt"));
+    }
+
+    @Test
+    public void testFilterStoresSegmentsWithoutContextPath() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/crane/repo/dir/file.txt");
+        request.setContextPath("/crane");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new PathTraversalFilter().doFilter(request, response, (req, res) -> {
+        });
+
+        Assertions.assertEquals(List.of("repo", "dir", "file.txt"), PathTraversalFilter.getPathSegments(request));
+    }
+
+    @Test
+    public void testFilterRejectsTraversal() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/repo/../../etc/passwd");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new PathTraversalFilter().doFilter(request, response, (req, res) -> Assertions.fail("Request should not be passed to the chain"));
+
+        Assertions.assertEquals("/error", response.getForwardedUrl());
+        Assertions.assertNull(PathTraversalFilter.getPathSegments(request));
+    }
+
+    private static String randomPath(Random random, double invalidSegmentProbability) {
+        int count = random.nextInt(6);
+        List<String> segments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (random.nextDouble() < invalidSegmentProbability) {
+                segments.add(INVALID_SEGMENTS.get(random.nextInt(INVALID_SEGMENTS.size())));
+            } else {
+                segments.add(VALID_SEGMENTS.get(random.nextInt(VALID_SEGMENTS.size())));
+            }
+        }
+        String path = "/" + String.join("/", segments);
+        if (count > 0 && random.nextBoolean()) {
+            path += "/";
+        }
+        return path;
+    }
+
+    private static String stripTrailingSlash(String path) {
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * The previous implementation of the filter, used as reference.
+     */
+    private static boolean isCanonical(String path) {
+        if (path.contains("%")) {
+            return false;
+        }
+        File absolutePath = new File(path);
+        try {
+            String canonicalPath = absolutePath.getCanonicalPath();
+            return new File(canonicalPath).isAbsolute() && absolutePath.getAbsolutePath().equals(canonicalPath);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
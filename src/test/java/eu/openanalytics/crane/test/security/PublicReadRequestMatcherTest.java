@@ -0,0 +1,130 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.security;
+
+import eu.openanalytics.crane.config.RepositoryRouter;
+import eu.openanalytics.crane.model.config.AccessControl;
+import eu.openanalytics.crane.model.config.PathComponent;
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.model.config.RewriteRule;
+import eu.openanalytics.crane.security.PublicReadRequestMatcher;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PublicReadRequestMatcherTest {
+
+    private final PublicReadRequestMatcher matcher;
+
+    public PublicReadRequestMatcherTest() {
+        Repository publicRepo = repository("public_repo", true);
+        PathComponent privatePath = pathComponent(false);
+        PathComponent publicPath = pathComponent(true);
+        publicPath.setPaths(Map.of("private_path", pathComponent(false)));
+        publicRepo.setPaths(Map.of("private_path", privatePath, "public_path", publicPath));
+
+        Repository rewriteRepo = repository("rewrite_repo", true);
+        rewriteRepo.setRewrites(List.of(new RewriteRule()));
+
+        RepositoryRouter router = new RepositoryRouter(List.of(publicRepo, repository("private_repo", false), rewriteRepo));
+        matcher = new PublicReadRequestMatcher(router, Set.of("JSESSIONID", "SESSION"));
+    }
+
+    @Test
+    public void testPublicFiles() {
+        Assertions.assertTrue(matcher.matches(request("GET", "/public_repo/file.txt")));
+        Assertions.assertTrue(matcher.matches(request("HEAD", "/public_repo/file.txt")));
+        Assertions.assertTrue(matcher.matches(request("GET", "/public_repo/dir/file.txt")));
+        Assertions.assertTrue(matcher.matches(request("GET", "/public_repo/public_path/file.txt")));
+        Assertions.assertTrue(matcher.matches(request("GET", "/public_repo/public_path/dir/file.txt")));
+        // a directory without trailing slash is redirected
+        Assertions.assertTrue(matcher.matches(request("GET", "/public_repo/public_path")));
+    }
+
+    @Test
+    public void testPrivateFilesAreNotMatched() {
+        Assertions.assertFalse(matcher.matches(request("GET", "/private_repo/file.txt")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/private_repo")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/public_repo/private_path")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/public_repo/private_path/file.txt")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/public_repo/public_path/private_path/file.txt")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/non_existing_repo/file.txt")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/rewrite_repo/file.txt")));
+    }
+
+    @Test
+    public void testOtherRequestsAreNotMatched() {
+        // methods that modify the repository
+        Assertions.assertFalse(matcher.matches(request("POST", "/public_repo/file.txt")));
+        Assertions.assertFalse(matcher.matches(request("PUT", "/public_repo/file.txt")));
+
+        // requests that might be authenticated
+        MockHttpServletRequest withSession = request("GET", "/public_repo/file.txt");
+        withSession.setCookies(new Cookie("JSESSIONID", "abc"));
+        Assertions.assertFalse(matcher.matches(withSession));
+        MockHttpServletRequest withRedisSession = request("GET", "/public_repo/file.txt");
+        withRedisSession.setCookies(new Cookie("other", "abc"), new Cookie("SESSION", "abc"));
+        Assertions.assertFalse(matcher.matches(withRedisSession));
+        MockHttpServletRequest withToken = request("GET", "/public_repo/file.txt");
+        withToken.addHeader("Authorization", "Bearer abc");
+        Assertions.assertFalse(matcher.matches(withToken));
+
+        MockHttpServletRequest withOtherCookie = request("GET", "/public_repo/file.txt");
+        withOtherCookie.setCookies(new Cookie("other", "abc"));
+        Assertions.assertTrue(matcher.matches(withOtherCookie));
+
+        // directory listings and invalid paths
+        Assertions.assertFalse(matcher.matches(request("GET", "/public_repo/")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/public_repo/dir/")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/public_repo/../private_repo/file.txt")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/public_repo/%2e%2e/private_repo/file.txt")));
+        Assertions.assertFalse(matcher.matches(request("GET", "/public_repo//private_path/file.txt")));
+    }
+
+    private MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+
+    private Repository repository(String name, boolean isPublic) {
+        Repository repository = new Repository();
+        repository.setName(name);
+        repository.setReadAccess(accessControl(isPublic));
+        return repository;
+    }
+
+    private PathComponent pathComponent(boolean isPublic) {
+        PathComponent pathComponent = new PathComponent();
+        pathComponent.setReadAccess(accessControl(isPublic));
+        return pathComponent;
+    }
+
+    private AccessControl accessControl(boolean isPublic) {
+        AccessControl accessControl = new AccessControl();
+        accessControl.setPublic(isPublic);
+        return accessControl;
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.security;
+
+import eu.openanalytics.crane.model.config.AuthorizedClientCache;
+import eu.openanalytics.crane.security.RedisOAuth2AuthorizedClientService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RedisOAuth2AuthorizedClientServiceTest {
+
+    private static final String HASH_KEY = "shinyproxy_spring_oauth_authorized_clients___crane";
+
+    private final RedisTemplate<String, OAuth2AuthorizedClient> redisTemplate = mock(RedisTemplate.class);
+    private final HashOperations<String, Object, Object> ops = mock(HashOperations.class);
+    private final RedisConnection connection = mock(RedisConnection.class);
+    private final List<byte[]> published = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        when(redisTemplate.opsForHash()).thenReturn(ops);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        when(connection.publish(any(), any())).thenAnswer(invocation -> {
+            published.add(invocation.getArgument(1));
+            return 1L;
+        });
+    }
+
+    @Test
+    public void testClientIsLoadedFromRedisOnce() {
+        when(ops.get(HASH_KEY, "jack")).thenReturn(client(Duration.ofMinutes(5)));
+        RedisOAuth2AuthorizedClientService service = service(true);
+
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertNotNull(service.loadAuthorizedClient("crane", "jack"));
+        }
+        verify(ops, times(1)).get(HASH_KEY, "jack");
+    }
+
+    @Test
+    public void testAbsentAndExpiredClientsAreNotCached() {
+        when(ops.get(HASH_KEY, "expired")).thenReturn(client(Duration.ofMinutes(-1)));
+        RedisOAuth2AuthorizedClientService service = service(true);
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertNull(service.loadAuthorizedClient("crane", "absent"));
+            Assertions.assertNotNull(service.loadAuthorizedClient("crane", "expired"));
+        }
+        verify(ops, times(3)).get(HASH_KEY, "absent");
+        verify(ops, times(3)).get(HASH_KEY, "expired");
+    }
+
+    @Test
+    public void testSaveUpdatesCacheAndNotifiesOtherReplicas() {
+        RedisOAuth2AuthorizedClientService service = service(true);
+        RedisOAuth2AuthorizedClientService otherReplica = service(true);
+        OAuth2AuthorizedClient oldClient = client(Duration.ofMinutes(5));
+        OAuth2AuthorizedClient newClient = client(Duration.ofMinutes(5));
+        when(ops.get(HASH_KEY, "jack")).thenReturn(oldClient);
+        Assertions.assertSame(oldClient, otherReplica.loadAuthorizedClient("crane", "jack"));
+
+        service.saveAuthorizedClient(newClient, new TestingAuthenticationToken("jack", null));
+        verify(ops).put(HASH_KEY, "jack", newClient);
+        Assertions.assertSame(newClient, service.loadAuthorizedClient("crane", "jack"));
+
+        // the other replica still uses its cached copy until the message is received
+        when(ops.get(HASH_KEY, "jack")).thenReturn(newClient);
+        Assertions.assertSame(oldClient, otherReplica.loadAuthorizedClient("crane", "jack"));
+        deliver(service, otherReplica);
+        Assertions.assertSame(newClient, otherReplica.loadAuthorizedClient("crane", "jack"));
+        // the instance that saved the client keeps its (up-to-date) copy
+        Assertions.assertSame(newClient, service.loadAuthorizedClient("crane", "jack"));
+        verify(ops, times(2)).get(HASH_KEY, "jack");
+    }
+
+    @Test
+    public void testRemoveEvictsClient() {
+        RedisOAuth2AuthorizedClientService service = service(true);
+        RedisOAuth2AuthorizedClientService otherReplica = service(true);
+        when(ops.get(HASH_KEY, "jack")).thenReturn(client(Duration.ofMinutes(5)));
+        Assertions.assertNotNull(service.loadAuthorizedClient("crane", "jack"));
+        Assertions.assertNotNull(otherReplica.loadAuthorizedClient("crane", "jack"));
+
+        when(ops.get(HASH_KEY, "jack")).thenReturn(null);
+        service.removeAuthorizedClient("crane", "jack");
+        verify(ops).delete(HASH_KEY, "jack");
+        Assertions.assertNull(service.loadAuthorizedClient("crane", "jack"));
+        deliver(service, otherReplica);
+        Assertions.assertNull(otherReplica.loadAuthorizedClient("crane", "jack"));
+    }
+
+    @Test
+    public void testDisabledCache() {
+        when(ops.get(HASH_KEY, "jack")).thenReturn(client(Duration.ofMinutes(5)));
+        RedisOAuth2AuthorizedClientService service = service(false);
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertNotNull(service.loadAuthorizedClient("crane", "jack"));
+        }
+        verify(ops, times(3)).get(HASH_KEY, "jack");
+    }
+
+    private RedisOAuth2AuthorizedClientService service(boolean enabled) {
+        AuthorizedClientCache settings = new AuthorizedClientCache();
+        settings.setEnabled(enabled);
+        RedisOAuth2AuthorizedClientService service = new RedisOAuth2AuthorizedClientService(redisTemplate, settings, new SimpleMeterRegistry());
+        service.init();
+        return service;
+    }
+
+    /**
+     * Delivers the messages published by the given service to both services, as Redis would.
+     */
+    private void deliver(RedisOAuth2AuthorizedClientService publisher, RedisOAuth2AuthorizedClientService subscriber) {
+        byte[] channel = RedisOAuth2AuthorizedClientService.INVALIDATION_TOPIC.getTopic().getBytes(StandardCharsets.UTF_8);
+        for (byte[] body : published) {
+            publisher.onMessage(new DefaultMessage(channel, body), null);
+            subscriber.onMessage(new DefaultMessage(channel, body), null);
+        }
+        published.clear();
+    }
+
+    private static OAuth2AuthorizedClient client(Duration expiresIn) {
+        ClientRegistration registration = ClientRegistration.withRegistrationId("crane")
+            .clientId("crane")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("https://crane/login/oauth2/code/crane")
+            .authorizationUri("https://idp/auth")
+            .tokenUri("https://idp/token")
+            .build();
+        Instant issuedAt = Instant.now().minus(Duration.ofMinutes(10));
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "token", issuedAt, Instant.now().plus(expiresIn));
+        return new OAuth2AuthorizedClient(registration, "jack", accessToken);
+    }
+
+}
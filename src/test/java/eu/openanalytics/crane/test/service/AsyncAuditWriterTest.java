@@ -0,0 +1,196 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.service;
+
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import eu.openanalytics.crane.security.auditing.AsyncAuditWriter;
+import eu.openanalytics.crane.security.auditing.AuditEventSink;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncAuditWriterTest {
+
+    @Test
+    public void testEventsOfConcurrentProducersAreWrittenInOrder() throws Exception {
+        int producers = 8;
+        int eventsPerProducer = 2_000;
+        CollectingSink sink = new CollectingSink();
+        AuditLoggingOptions options = new AuditLoggingOptions();
+        options.setQueueCapacity(128);
+        AsyncAuditWriter writer = new AsyncAuditWriter(sink, options, new SimpleMeterRegistry(), "test");
+
+        List<Thread> threads = new ArrayList<>();
+        for (int producer = 0; producer < producers; producer++) {
+            String principal = "producer-" + producer;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    writer.submit(new AuditEvent(principal, "TEST", Map.of("sequence", i)));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.awaitFlushed(Duration.ofSeconds(10));
+
+        Assertions.assertEquals(producers * eventsPerProducer, sink.flushed.size());
+        Assertions.assertTrue(sink.flushes.get() < producers * eventsPerProducer, "Expected events to be flushed in batches");
+        Map<String, Integer> lastSequence = new HashMap<>();
+        for (AuditEvent event : sink.flushed) {
+            int sequence = (int) event.getData().get("sequence");
+            Assertions.assertEquals(lastSequence.getOrDefault(event.getPrincipal(), -1) + 1, sequence);
+            lastSequence.put(event.getPrincipal(), sequence);
+        }
+        writer.close();
+        Assertions.assertTrue(sink.closed);
+    }
+
+    @Test
+    public void testEventsAreDroppedWhenQueueIsFull() throws Exception {
+        CountDownLatch blockWriter = new CountDownLatch(1);
+        CollectingSink sink = new CollectingSink() {
+            @Override
+            public void write(AuditEvent event) {
+                try {
+                    blockWriter.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(event);
+            }
+        };
+        AuditLoggingOptions options = new AuditLoggingOptions();
+        options.setQueueCapacity(10);
+        options.setBackpressure(AuditLoggingOptions.BackpressurePolicy.DROP);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AsyncAuditWriter writer = new AsyncAuditWriter(sink, options, meterRegistry, "test");
+
+        for (int i = 0; i < 30; i++) {
+            writer.submit(new AuditEvent("demo", "TEST", Map.of("sequence", i)));
+        }
+        // the writer thread holds at most one event, the queue at most 10 events
+        double dropped = meterRegistry.counter("crane.audit.dropped", "sink", "test").count();
+        Assertions.assertTrue(dropped >= 19 && dropped <= 20, "Dropped " + dropped);
+        Assertions.assertTrue(meterRegistry.get("crane.audit.queue.depth").gauge().value() >= 9);
+
+        blockWriter.countDown();
+        writer.awaitFlushed(Duration.ofSeconds(10));
+        Assertions.assertEquals(30 - dropped, sink.flushed.size());
+        writer.close();
+    }
+
+    @Test
+    public void testWriterSurvivesError() throws Exception {
+        CollectingSink sink = new CollectingSink() {
+            @Override
+            public void write(AuditEvent event) {
+                if (event.getData().get("sequence").equals(0)) {
+                    throw new LinkageError("test");
+                }
+                super.write(event);
+            }
+        };
+        AuditLoggingOptions options = new AuditLoggingOptions();
+        options.setQueueCapacity(2);
+        options.setBackpressure(AuditLoggingOptions.BackpressurePolicy.BLOCK);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AsyncAuditWriter writer = new AsyncAuditWriter(sink, options, meterRegistry, "test");
+
+        for (int i = 0; i < 10; i++) {
+            writer.submit(new AuditEvent("demo", "TEST", Map.of("sequence", i)));
+        }
+        writer.awaitFlushed(Duration.ofSeconds(10));
+
+        Assertions.assertEquals(9, sink.flushed.size());
+        Assertions.assertEquals(1, meterRegistry.counter("crane.audit.errors", "sink", "test").count());
+        writer.close();
+    }
+
+    @Test
+    public void testEventsSubmittedDuringCloseAreWrittenOrCounted() throws Exception {
+        int producers = 4;
+        CollectingSink sink = new CollectingSink();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AsyncAuditWriter writer = new AsyncAuditWriter(sink, new AuditLoggingOptions(), meterRegistry, "test");
+
+        AtomicInteger submitted = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(producers);
+        List<Thread> threads = new ArrayList<>();
+        for (int producer = 0; producer < producers; producer++) {
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 5_000; i++) {
+                    writer.submit(new AuditEvent("demo", "TEST", Map.of("sequence", i)));
+                    submitted.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        started.await();
+        writer.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        double dropped = meterRegistry.counter("crane.audit.dropped", "sink", "test").count();
+        Assertions.assertEquals(submitted.get(), sink.flushed.size() + (int) dropped);
+    }
+
+    private static class CollectingSink implements AuditEventSink {
+
+        private final List<AuditEvent> buffer = new ArrayList<>();
+        private final List<AuditEvent> flushed = new ArrayList<>();
+        private final AtomicInteger flushes = new AtomicInteger();
+        private volatile boolean closed;
+
+        @Override
+        public void write(AuditEvent event) {
+            buffer.add(event);
+        }
+
+        @Override
+        public void flush(boolean sync) {
+            flushed.addAll(buffer);
+            buffer.clear();
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+}
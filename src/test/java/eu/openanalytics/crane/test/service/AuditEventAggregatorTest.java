@@ -0,0 +1,105 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.service;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.AccessControl;
+import eu.openanalytics.crane.model.config.AuditAggregation;
+import eu.openanalytics.crane.model.config.Repository;
+import eu.openanalytics.crane.security.auditing.AuditEventAggregator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.InMemoryAuditEventRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AuditEventAggregatorTest {
+
+    @Test
+    public void testAnonymousDownloadsOfPublicRepositoryAreAggregated() throws Exception {
+        AuditAggregation aggregation = new AuditAggregation();
+        aggregation.setEnabled(true);
+        aggregation.setWindow(Duration.ofHours(1));
+        CraneConfig craneConfig = new CraneConfig();
+        craneConfig.setAuditAggregation(aggregation);
+        craneConfig.setRepositories(new HashMap<>(Map.of("public_repo", repository(true), "private_repo", repository(false))));
+        InMemoryAuditEventRepository auditEventRepository = new InMemoryAuditEventRepository();
+        AuditEventAggregator aggregator = new AuditEventAggregator(craneConfig, auditEventRepository);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1_000; j++) {
+                    Assertions.assertTrue(aggregator.aggregate("anonymousUser", "REPOSITORY_HANDLER", data("/public_repo/file.txt", 200)));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertTrue(aggregator.aggregate("anonymousUser", "REPOSITORY_HANDLER", data("/public_repo/file.txt", 404)));
+        Assertions.assertFalse(aggregator.aggregate("demo", "REPOSITORY_HANDLER", data("/public_repo/file.txt", 200)));
+        Assertions.assertFalse(aggregator.aggregate("anonymousUser", "REPOSITORY_HANDLER", data("/private_repo/file.txt", 200)));
+        Assertions.assertFalse(aggregator.aggregate("anonymousUser", "UPLOAD", data("/public_repo/file.txt", 200)));
+        Assertions.assertTrue(auditEventRepository.find(null, null, null).isEmpty());
+
+        aggregator.close();
+        List<AuditEvent> events = auditEventRepository.find("anonymousUser", null, "REPOSITORY_HANDLER");
+        Assertions.assertEquals(2, events.size());
+        Map<Object, Object> counts = new HashMap<>();
+        for (AuditEvent event : events) {
+            Assertions.assertEquals("public_repo", event.getData().get("repository"));
+            counts.put(event.getData().get("response_status"), event.getData().get("count"));
+        }
+        Assertions.assertEquals(Map.of(200, 4_000L, 404, 1L), counts);
+    }
+
+    @Test
+    public void testSecurityRelevantEventsCannotBeAggregated() {
+        AuditAggregation aggregation = new AuditAggregation();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> aggregation.setTypes(List.of("REPOSITORY_HANDLER", "AUTHORIZATION_FAILURE")));
+    }
+
+    private Repository repository(boolean isPublic) {
+        Repository repository = new Repository();
+        AccessControl readAccess = new AccessControl();
+        readAccess.setPublic(isPublic);
+        repository.setReadAccess(readAccess);
+        return repository;
+    }
+
+    private Map<String, Object> data(String path, int status) {
+        return Map.of(
+                "request_method", "GET",
+                "request_path", path,
+                "response_status", status,
+                "remote_address", "127.0.0.1"
+        );
+    }
+
+}
@@ -118,6 +118,15 @@ public class AuditingServiceTest {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource("instances")
+    public void testAuditingRewriteToInvalidDestination(CraneInstance instance) throws IOException, InterruptedException {
+        ApiTestHelper apiTestHelper = ApiTestHelper.from(instance);
+
+        apiTestHelper.callWithoutAuth(apiTestHelper.createHtmlRequest("/public_repo/invalid-destination/file.txt")).assertNotFound();
+        checkUnauthenticatedAuditLog("/public_repo/../file.txt", "ERROR_HANDLER");
+    }
+
     private static void readAuditEventData() throws InterruptedException, IOException {
         Thread.sleep(50);
         String line = bufferedReader.readLine();
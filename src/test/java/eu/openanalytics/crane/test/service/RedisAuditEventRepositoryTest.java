@@ -0,0 +1,104 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.service;
+
+import com.redis.testcontainers.RedisContainer;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import eu.openanalytics.crane.model.config.AuditRedis;
+import eu.openanalytics.crane.security.auditing.RedisAuditEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@Testcontainers
+public class RedisAuditEventRepositoryTest {
+
+    private static final RedisContainer redis = new RedisContainer(DockerImageName.parse("redis:6.2.6"));
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    public static void beforeAll() {
+        redis.start();
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getFirstMappedPort());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    public static void afterAll() {
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @Test
+    public void testFindEventsOfAllInstances() throws Exception {
+        AuditRedis settings = new AuditRedis();
+        settings.setStreamKey("crane:test-find");
+        settings.setQueryBatchSize(100);
+        RedisAuditEventRepository instance1 = new RedisAuditEventRepository(redisTemplate, settings, new AuditLoggingOptions(), new SimpleMeterRegistry());
+        RedisAuditEventRepository instance2 = new RedisAuditEventRepository(redisTemplate, settings, new AuditLoggingOptions(), new SimpleMeterRegistry());
+
+        Instant start = Instant.now().minusSeconds(10);
+        for (int i = 0; i < 500; i++) {
+            RedisAuditEventRepository instance = i % 2 == 0 ? instance1 : instance2;
+            instance.add(new AuditEvent(start.plusMillis(i), "user-" + (i % 5), i % 10 == 0 ? "LOGOUT" : "REPOSITORY_HANDLER",
+                Map.of("request_path", "/repo/" + i, "response_status", 200)));
+        }
+
+        Assertions.assertEquals(500, instance1.find(null, null, null).size());
+        List<AuditEvent> events = instance2.find("user-0", null, "LOGOUT");
+        Assertions.assertEquals(50, events.size());
+        Assertions.assertEquals(200, events.get(0).getData().get("response_status"));
+        Assertions.assertEquals(99, instance1.find(null, start.plusMillis(400), null).size());
+        instance1.close();
+        instance2.close();
+    }
+
+    @Test
+    public void testStreamLengthIsCapped() throws Exception {
+        AuditRedis settings = new AuditRedis();
+        settings.setStreamKey("crane:test-cap");
+        settings.setMaxLength(100);
+        RedisAuditEventRepository repository = new RedisAuditEventRepository(redisTemplate, settings, new AuditLoggingOptions(), new SimpleMeterRegistry());
+        for (int i = 0; i < 5_000; i++) {
+            repository.add(new AuditEvent("demo", "REPOSITORY_HANDLER", Map.of("sequence", i)));
+        }
+        List<AuditEvent> events = repository.find(null, null, null);
+        // trimming is approximate
+        Assertions.assertTrue(events.size() < 1_000, "Stream contains " + events.size() + " events");
+        Assertions.assertEquals(4_999, events.get(events.size() - 1).getData().get("sequence"));
+        repository.close();
+    }
+
+}
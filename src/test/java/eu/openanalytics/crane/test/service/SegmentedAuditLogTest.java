@@ -0,0 +1,167 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import eu.openanalytics.crane.model.config.AuditLoggingOptions;
+import eu.openanalytics.crane.security.auditing.AuditLogConverter;
+import eu.openanalytics.crane.security.auditing.SegmentedAuditLog;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class SegmentedAuditLogTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testFindAcrossSegments() throws Exception {
+        Path path = directory.resolve("audit.log");
+        AuditLoggingOptions options = new AuditLoggingOptions();
+        options.setSegmentSize(DataSize.ofKilobytes(16));
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+
+        SegmentedAuditLog auditLog = new SegmentedAuditLog(path, objectMapper, options);
+        for (int i = 0; i < 2_000; i++) {
+            auditLog.write(new AuditEvent(start.plusSeconds(i), "user-" + (i % 10), i % 2 == 0 ? "DOWNLOAD" : "LIST", Map.of("sequence", i)));
+            auditLog.flush(false);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertTrue(files.filter(p -> p.getFileName().toString().endsWith(".idx")).count() > 5, "Expected multiple segments");
+        }
+
+        Assertions.assertEquals(2_000, auditLog.find(null, null, null).size());
+        List<AuditEvent> events = auditLog.find("user-4", start.plusSeconds(1_500), "DOWNLOAD");
+        Assertions.assertEquals(50, events.size());
+        Assertions.assertEquals(1_504, events.get(0).getData().get("sequence"));
+        Assertions.assertEquals(0, auditLog.find("unknown", null, null).size());
+        auditLog.close();
+
+        // indexes are loaded (or rebuilt) when re-opening the log
+        try (Stream<Path> files = Files.list(directory)) {
+            Files.delete(files.filter(p -> p.getFileName().toString().endsWith(".idx")).findFirst().orElseThrow());
+        }
+        SegmentedAuditLog reopened = new SegmentedAuditLog(path, objectMapper, options);
+        Assertions.assertEquals(2_000, reopened.find(null, null, null).size());
+        Assertions.assertEquals(500, reopened.find(null, start.plusSeconds(1_499), null).size());
+        reopened.close();
+
+        // closed segments are compressed
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertTrue(files.anyMatch(p -> p.getFileName().toString().endsWith(".gz")));
+        }
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        Path path = directory.resolve("audit.log");
+        AuditLoggingOptions options = new AuditLoggingOptions();
+        options.setSegmentSize(DataSize.ofKilobytes(16));
+        options.setCompression(AuditLoggingOptions.Compression.NONE);
+        options.setRetentionMaxSize(DataSize.ofKilobytes(64));
+        Instant start = Instant.now();
+
+        SegmentedAuditLog auditLog = new SegmentedAuditLog(path, objectMapper, options);
+        for (int i = 0; i < 2_000; i++) {
+            auditLog.write(new AuditEvent(start.plusSeconds(i), "demo", "DOWNLOAD", Map.of("sequence", i)));
+            auditLog.flush(false);
+        }
+        auditLog.close();
+
+        long totalSize;
+        try (Stream<Path> files = Files.list(directory)) {
+            totalSize = files.filter(p -> !p.getFileName().toString().endsWith(".idx")).mapToLong(p -> p.toFile().length()).sum();
+        }
+        Assertions.assertTrue(totalSize <= DataSize.ofKilobytes(64).toBytes(), "Total size " + totalSize);
+        SegmentedAuditLog reopened = new SegmentedAuditLog(path, objectMapper, options);
+        List<AuditEvent> events = reopened.find(null, null, null);
+        reopened.close();
+        Assertions.assertTrue(events.size() < 2_000);
+        // the most recent events are kept
+        Assertions.assertEquals(1_999, events.get(events.size() - 1).getData().get("sequence"));
+    }
+
+    @Test
+    public void testBinaryEncoding() throws Exception {
+        Path path = directory.resolve("audit.log");
+        AuditLoggingOptions options = new AuditLoggingOptions();
+        Instant start = Instant.parse("2024-01-01T00:00:00.123456789Z");
+
+        // existing JSON events are kept when switching to the binary encoding
+        SegmentedAuditLog jsonLog = new SegmentedAuditLog(path, objectMapper, options);
+        jsonLog.write(new AuditEvent(start, "demo", "LIST", Map.of("request_path", "/repo", "response_status", 200)));
+        jsonLog.flush(false);
+        jsonLog.close();
+        long jsonSize = Files.size(path);
+
+        options.setEncoding(AuditLoggingOptions.Encoding.BINARY);
+        SegmentedAuditLog auditLog = new SegmentedAuditLog(path, objectMapper, options);
+        for (int i = 1; i <= 1_000; i++) {
+            auditLog.write(new AuditEvent(start.plusSeconds(i), "user-" + (i % 3), "DOWNLOAD", Map.of(
+                "request_method", "GET",
+                "request_path", "/repo/file-" + (i % 20),
+                "response_status", 200,
+                "remote_address", "127.0.0.1"
+            )));
+        }
+        auditLog.flush(false);
+        Assertions.assertTrue(Files.size(path) < jsonSize * 1_000 / 4, "Expected binary encoding to be compact");
+
+        List<AuditEvent> events = auditLog.find(null, null, null);
+        Assertions.assertEquals(1_001, events.size());
+        Assertions.assertEquals("/repo", events.get(0).getData().get("request_path"));
+        AuditEvent event = auditLog.find("user-1", start.plusSeconds(999), null).get(0);
+        Assertions.assertEquals(start.plusSeconds(1_000), event.getTimestamp());
+        Assertions.assertEquals(Map.of("request_method", "GET", "request_path", "/repo/file-0", "response_status", 200, "remote_address", "127.0.0.1"), event.getData());
+        auditLog.close();
+
+        // events are appended to an existing binary file
+        SegmentedAuditLog reopened = new SegmentedAuditLog(path, objectMapper, options);
+        reopened.write(new AuditEvent(start.plusSeconds(2_000), "demo", "LOGOUT", Map.of("request_path", "/logout")));
+        reopened.flush(false);
+        Assertions.assertEquals(1_002, reopened.find(null, null, null).size());
+        Assertions.assertEquals("/logout", reopened.find("demo", null, "LOGOUT").get(0).getData().get("request_path"));
+        reopened.close();
+
+        Path converted = directory.resolve("converted.json");
+        Assertions.assertEquals(1_001, AuditLogConverter.convert(path, converted, AuditLoggingOptions.Encoding.JSON));
+        Assertions.assertTrue(Files.readAllLines(converted).get(0).startsWith("{"));
+    }
+
+}
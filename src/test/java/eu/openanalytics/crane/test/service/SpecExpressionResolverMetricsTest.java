@@ -0,0 +1,68 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.service;
+
+import eu.openanalytics.crane.model.config.AccessControl;
+import eu.openanalytics.crane.service.spel.SpecExpressionContext;
+import eu.openanalytics.crane.service.spel.SpecExpressionResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+public class SpecExpressionResolverMetricsTest {
+
+    @Test
+    public void testEvaluationsAreTimedPerExpression() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpecExpressionResolver resolver = createResolver(meterRegistry);
+        SpecExpressionContext context = SpecExpressionContext.create(new AccessControl());
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(resolver.evaluateToBoolean("#{1 + 1 == 2}", context));
+        }
+
+        Assertions.assertEquals(3, meterRegistry.get("crane.spel.duration").tag("expression", "#{1 + 1 == 2}").timer().count());
+        Assertions.assertEquals(2, meterRegistry.get("cache.gets").tag("cache", "spel-evaluation-context").tag("result", "hit").functionCounter().count());
+        Assertions.assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "spel-evaluation-context").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void testNumberOfExpressionTimersIsBounded() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SpecExpressionResolver resolver = createResolver(meterRegistry);
+        SpecExpressionContext context = SpecExpressionContext.create(new AccessControl());
+
+        for (int i = 0; i < 250; i++) {
+            Assertions.assertEquals(String.valueOf(i), resolver.evaluateToString("#{" + i + "}", context));
+        }
+
+        Assertions.assertEquals(101, meterRegistry.get("crane.spel.duration").timers().size());
+        Assertions.assertEquals(150, meterRegistry.get("crane.spel.duration").tag("expression", "other").timer().count());
+    }
+
+    private SpecExpressionResolver createResolver(SimpleMeterRegistry meterRegistry) {
+        GenericApplicationContext applicationContext = new GenericApplicationContext();
+        applicationContext.refresh();
+        return new SpecExpressionResolver(applicationContext, meterRegistry);
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.statistics;
+
+import eu.openanalytics.crane.config.CraneConfig;
+import eu.openanalytics.crane.model.config.DownloadStatistics;
+import eu.openanalytics.crane.statistics.DownloadStatisticsService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DownloadStatisticsServiceTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testStatisticsArePersisted() throws Exception {
+        CraneConfig craneConfig = craneConfig(1_000);
+        DownloadStatisticsService service = createService(craneConfig);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1_000; j++) {
+                    service.record("repo", "packages/src/file-" + (j % 10) + ".tar.gz", 100);
+                    service.record("other_repo", "index.html", 10);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        service.record("repo", "packages/bin/file.zip", 1_000);
+
+        assertStatistics(service);
+        service.close();
+
+        // the statistics are loaded from the file after a restart
+        DownloadStatisticsService restarted = createService(craneConfig);
+        assertStatistics(restarted);
+        restarted.record("repo", "packages/bin/file.zip", 1_000);
+        Assertions.assertEquals(2, restarted.getTopFiles("repo", 100).stream().filter(f -> f.path().equals("packages/bin/file.zip")).findFirst().orElseThrow().requests());
+        restarted.close();
+    }
+
+    private void assertStatistics(DownloadStatisticsService service) {
+        List<DownloadStatisticsService.RepositoryStatistics> repositories = service.getRepositories();
+        Assertions.assertEquals(new DownloadStatisticsService.RepositoryStatistics("repo", 4_001, 401_000), repositories.get(0));
+        Assertions.assertEquals(new DownloadStatisticsService.RepositoryStatistics("other_repo", 4_000, 40_000), repositories.get(1));
+
+        List<DownloadStatisticsService.FileStatistics> topFiles = service.getTopFiles("repo", 3);
+        Assertions.assertEquals(3, topFiles.size());
+        Assertions.assertEquals(new DownloadStatisticsService.FileStatistics("repo", "packages/src/file-0.tar.gz", 400, 40_000), topFiles.get(0));
+
+        List<DownloadStatisticsService.FileStatistics> topDirectories = service.getTopDirectories(null, 10);
+        Assertions.assertEquals(new DownloadStatisticsService.FileStatistics("repo", "packages/", 4_001, 401_000), topDirectories.get(0));
+        Assertions.assertEquals(new DownloadStatisticsService.FileStatistics("repo", "packages/src/", 4_000, 400_000), topDirectories.get(1));
+        Assertions.assertEquals(3, topDirectories.size());
+
+        List<DownloadStatisticsService.BucketStatistics> buckets = service.getBuckets(null);
+        Assertions.assertEquals(8_001, buckets.stream().mapToLong(DownloadStatisticsService.BucketStatistics::requests).sum());
+    }
+
+    @Test
+    public void testNumberOfTrackedFilesIsLimited() throws Exception {
+        DownloadStatisticsService service = createService(craneConfig(10));
+        for (int i = 0; i < 100; i++) {
+            service.record("repo", "file-" + i, 1);
+        }
+        List<DownloadStatisticsService.FileStatistics> files = service.getTopFiles(null, 100);
+        Assertions.assertEquals(11, files.size());
+        Assertions.assertEquals(new DownloadStatisticsService.FileStatistics("repo", DownloadStatisticsService.OTHER_FILES, 90, 90), files.get(0));
+        service.close();
+    }
+
+    private CraneConfig craneConfig(int maxTrackedFiles) {
+        DownloadStatistics downloadStatistics = new DownloadStatistics();
+        downloadStatistics.setEnabled(true);
+        downloadStatistics.setStorageLocation(directory.resolve("statistics.json").toString());
+        downloadStatistics.setMaxTrackedFiles(maxTrackedFiles);
+        CraneConfig craneConfig = new CraneConfig();
+        craneConfig.setDownloadStatistics(downloadStatistics);
+        return craneConfig;
+    }
+
+    private DownloadStatisticsService createService(CraneConfig craneConfig) throws Exception {
+        return new DownloadStatisticsService(craneConfig, new StaticListableBeanFactory().getBeanProvider(StringRedisTemplate.class));
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.timing;
+
+import eu.openanalytics.crane.timing.RequestTimingFilter;
+import eu.openanalytics.crane.timing.RequestTimings;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.charset.StandardCharsets;
+
+public class RequestTimingFilterTest {
+
+    @AfterEach
+    public void resetRequestAttributes() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testServerTimingHeaderContainsPhasesBeforeCommit() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/repository/file.txt");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        new RequestTimingFilter(true).doFilter(request, response, (req, res) -> {
+            RequestTimings.get(request).endSecurityPhase();
+            try (RequestTimings.Phase ignored = RequestTimings.start("stat", "repository")) {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            try (RequestTimings.Phase ignored = RequestTimings.start("stat", "repository")) {
+                res.getOutputStream().write("content".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        String header = response.getHeader("Server-Timing");
+        Assertions.assertNotNull(header);
+        Assertions.assertTrue(header.matches("security;dur=\\d+\\.\\d{3}, stat;dur=\\d+\\.\\d{3}"), header);
+        double statDuration = Double.parseDouble(header.substring(header.lastIndexOf('=') + 1));
+        Assertions.assertTrue(statDuration >= 5, header);
+    }
+
+    @Test
+    public void testServerTimingHeaderIsAddedToResponsesWithoutBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/repository/file.txt");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new RequestTimingFilter(true).doFilter(request, response, (req, res) -> ((HttpServletResponse) res).setStatus(304));
+
+        Assertions.assertNotNull(response.getHeader("Server-Timing"));
+        Assertions.assertTrue(response.getHeader("Server-Timing").startsWith("security;dur="));
+    }
+
+    @Test
+    public void testServerTimingHeaderIsOptIn() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/repository/file.txt");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        new RequestTimingFilter(false).doFilter(request, response, (req, res) -> {
+            try (RequestTimings.Phase ignored = RequestTimings.start("stat", "repository")) {
+                res.getOutputStream().write("content".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        Assertions.assertNull(response.getHeader("Server-Timing"));
+    }
+
+}
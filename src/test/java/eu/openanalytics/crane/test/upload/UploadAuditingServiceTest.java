@@ -21,6 +21,7 @@
 package eu.openanalytics.crane.test.upload;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -28,9 +29,12 @@ import eu.openanalytics.crane.security.auditing.FileAuditEventRepository;
 import eu.openanalytics.crane.test.helpers.ApiTestHelper;
 import eu.openanalytics.crane.test.helpers.CraneInstance;
 import eu.openanalytics.crane.test.helpers.KeycloakInstance;
+import eu.openanalytics.crane.test.helpers.Response;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.slf4j.Logger;
@@ -41,11 +45,18 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Testcontainers
 public class UploadAuditingServiceTest {
@@ -60,6 +71,7 @@ public class UploadAuditingServiceTest {
             .disable(DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
     private static final List<CraneInstance> instances = new ArrayList<>();
     private static final List<FileAuditEventRepository.AuditEventData> events = new ArrayList<>();
+    private static CraneInstance s3Instance;
 
     @BeforeAll
     public static void beforeAll() {
@@ -73,7 +85,9 @@ public class UploadAuditingServiceTest {
         Map<String, String> properties = new HashMap<>();
         properties.put("app.audit-logging", auditLogsFile.getAbsolutePath());
         instances.add(new CraneInstance("application-test-upload-api.yml", properties));
-        CraneInstance.addInstanceWithAwsAccess(instances, "application-test-upload-api-with-s3.yml", 7275, logger, properties);
+        if (CraneInstance.addInstanceWithAwsAccess(instances, "application-test-upload-api-with-s3.yml", 7275, logger, properties)) {
+            s3Instance = instances.get(instances.size() - 1);
+        }
     }
 
     private static List<CraneInstance> instances() {
@@ -151,6 +165,92 @@ public class UploadAuditingServiceTest {
                 path, "UPLOAD", "test"
         );
     }
+    @Test
+    public void testAuditingEventPresignedUpload() throws IOException, InterruptedException {
+        Assumptions.assumeTrue(s3Instance != null, "No AWS credentials");
+        ApiTestHelper apiTestHelper = ApiTestHelper.from(s3Instance);
+        String path = "/presigned_upload_repo/testUpload_presigned_%s.txt".formatted(System.currentTimeMillis());
+        byte[] content = Files.readAllBytes(Path.of("src", "test", "resources", "testUpload.txt"));
+
+        Response response = apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest(path + "?presign-upload&size=" + content.length));
+        response.assertJsonSuccess();
+        JsonNode data = objectMapper.readTree(response.body()).get("data");
+        Assertions.assertEquals("single", data.get("upload_type").asText());
+        Assertions.assertEquals("*", data.get("headers").get("If-None-Match").asText());
+        String uploadToken = data.get("upload_token").asText();
+        Assertions.assertEquals(uploadToken, data.get("headers").get("x-amz-meta-crane-upload-token").asText());
+
+        HttpClient httpClient = HttpClient.newHttpClient();
+        HttpRequest.Builder put = HttpRequest.newBuilder(URI.create(data.get("url").asText()))
+            .PUT(HttpRequest.BodyPublishers.ofByteArray(content));
+        data.get("headers").fields().forEachRemaining(header -> put.header(header.getKey(), header.getValue().asText()));
+        Assertions.assertEquals(200, httpClient.send(put.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        // the upload can only be completed using the token of the negotiated upload
+        apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest(path + "?complete-upload")).assertBadRequest();
+        checkUnauthenticatedAuditLog(path, "ERROR_HANDLER");
+        apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest(path + "?complete-upload&upload-token=" + UUID.randomUUID())).assertBadRequest();
+        checkUnauthenticatedAuditLog(path, "ERROR_HANDLER");
+
+        apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest(path + "?complete-upload&upload-token=" + uploadToken)).assertJsonSuccess();
+        checkUnauthenticatedAuditLog(path, "UPLOAD");
+        response = apiTestHelper.callWithoutAuth(apiTestHelper.createHtmlRequest(path));
+        response.assertSuccess();
+        Assertions.assertArrayEquals(content, response.body().getBytes(StandardCharsets.UTF_8));
+
+        // replaying the presigned URL does not overwrite the object
+        Assertions.assertEquals(412, httpClient.send(put.build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+        // nor does a new upload to the same path
+        response = apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest(path + "?presign-upload&size=" + content.length));
+        response.assertBadRequest();
+        Assertions.assertTrue(response.body().contains("already exists"), response.body());
+    }
+
+    @Test
+    public void testCompletingExistingFileIsRejected() throws IOException, InterruptedException {
+        Assumptions.assumeTrue(s3Instance != null, "No AWS credentials");
+        ApiTestHelper apiTestHelper = ApiTestHelper.from(s3Instance);
+        String path = "/presigned_upload_repo/testUpload_existing_%s.txt".formatted(System.currentTimeMillis());
+        Path fileToUpload = Path.of("src", "test", "resources", "testUpload.txt");
+
+        // a file that was not uploaded using a presigned upload cannot be completed
+        apiTestHelper.callWithoutAuth(apiTestHelper.createMultiPartRequest(path, fileToUpload)).assertSuccess();
+        checkUnauthenticatedAuditLog(path, "UPLOAD");
+        apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest(path + "?complete-upload&upload-token=" + UUID.randomUUID())).assertBadRequest();
+        checkUnauthenticatedAuditLog(path, "ERROR_HANDLER");
+    }
+
+    @Test
+    public void testPresignedUploadWithNegativeSize() throws IOException {
+        Assumptions.assumeTrue(s3Instance != null, "No AWS credentials");
+        ApiTestHelper apiTestHelper = ApiTestHelper.from(s3Instance);
+        Response response = apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest("/presigned_upload_repo/testUpload_negative.txt?presign-upload&size=-1"));
+        response.assertBadRequest();
+        Assertions.assertTrue(response.body().contains("may not be negative"), response.body());
+    }
+
+    @Test
+    public void testPresignedMultipartUploadUrlsOutliveTheUpload() throws IOException {
+        Assumptions.assumeTrue(s3Instance != null, "No AWS credentials");
+        ApiTestHelper apiTestHelper = ApiTestHelper.from(s3Instance);
+        String path = "/presigned_upload_repo/testUpload_presigned_multipart_%s.bin".formatted(System.currentTimeMillis());
+        long size = 20L * 1024 * 1024 * 1024;
+
+        Response response = apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest(path + "?presign-upload&size=" + size));
+        response.assertJsonSuccess();
+        JsonNode data = objectMapper.readTree(response.body()).get("data");
+        Assertions.assertEquals("multipart", data.get("upload_type").asText());
+        JsonNode parts = data.get("parts");
+        long partSize = data.get("part_size").asLong();
+        Assertions.assertEquals((size + partSize - 1) / partSize, parts.size());
+
+        // all part URLs are created upfront, the last one must remain valid for the configured upload duration
+        URI lastPart = URI.create(parts.get(parts.size() - 1).get("url").asText());
+        Assertions.assertTrue(lastPart.getQuery().contains("X-Amz-Expires=7200"), lastPart.toString());
+
+        apiTestHelper.callWithoutAuth(apiTestHelper.createPostRequest(path + "?abort-upload&upload-id=" + data.get("upload_id").asText())).assertJsonSuccess();
+    }
+
     private static void readAuditEventData() throws InterruptedException, IOException {
         Thread.sleep(50);
         String line = bufferedReader.readLine();
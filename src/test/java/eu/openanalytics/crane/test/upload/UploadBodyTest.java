@@ -0,0 +1,87 @@
+/**
+ * Crane
+ *
+ * Copyright (C) 2021-2025 Open Analytics
+ *
+ * ===========================================================================
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Apache License as published by
+ * The Apache Software Foundation, either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * Apache License for more details.
+ *
+ * You should have received a copy of the Apache License
+ * along with this program.  If not, see <http://www.apache.org/licenses/>
+ */
+package eu.openanalytics.crane.test.upload;
+
+import eu.openanalytics.crane.upload.UploadBody;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class UploadBodyTest {
+
+    @Test
+    public void testLengthOfSmallFileIsKnown() throws IOException {
+        byte[] content = content(100);
+        UploadBody uploadBody = UploadBody.of(new ByteArrayInputStream(content), null, 100);
+
+        Assertions.assertEquals(100L, uploadBody.getContentLength());
+        Assertions.assertArrayEquals(content, uploadBody.getInputStream().readAllBytes());
+    }
+
+    @Test
+    public void testLengthOfLargeFileIsUnknown() throws IOException {
+        byte[] content = content(101);
+        UploadBody uploadBody = UploadBody.of(new ByteArrayInputStream(content), null, 100);
+
+        Assertions.assertNull(uploadBody.getContentLength());
+        Assertions.assertArrayEquals(content, uploadBody.getInputStream().readAllBytes());
+    }
+
+    @Test
+    public void testDeclaredLength() throws IOException {
+        byte[] content = content(1000);
+        UploadBody uploadBody = UploadBody.of(new ByteArrayInputStream(content), 1000L, 100);
+
+        Assertions.assertEquals(1000L, uploadBody.getContentLength());
+        Assertions.assertArrayEquals(content, uploadBody.getInputStream().readAllBytes());
+    }
+
+    @Test
+    public void testShorterThanDeclaredLength() throws IOException {
+        InputStream inputStream = UploadBody.of(new ByteArrayInputStream(content(999)), 1000L, 100).getInputStream();
+
+        IOException exception = Assertions.assertThrows(IOException.class, inputStream::readAllBytes);
+        Assertions.assertEquals("Upload size mismatch: 1000 bytes declared, received 999 bytes", exception.getMessage());
+    }
+
+    @Test
+    public void testLongerThanDeclaredLength() throws IOException {
+        InputStream inputStream = UploadBody.of(new ByteArrayInputStream(content(1001)), 1000L, 100).getInputStream();
+
+        // the last declared byte is never returned when the stream is too long
+        byte[] buffer = new byte[1000];
+        Assertions.assertEquals(999, inputStream.readNBytes(buffer, 0, 999));
+        IOException exception = Assertions.assertThrows(IOException.class, inputStream::read);
+        Assertions.assertEquals("Upload size mismatch: 1000 bytes declared, received at least 1001 bytes", exception.getMessage());
+    }
+
+    private byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+}
@@ -319,6 +319,20 @@ public class UploadControllerTest {
         Assertions.assertTrue(response.body().contains("\"fail\""), response.body());
     }
 
+    @ParameterizedTest
+    @MethodSource("instances")
+    public void testPresignedUploadNotEnabled(CraneInstance instance) throws IOException {
+        ApiTestHelper apiTestHelper = ApiTestHelper.from(instance);
+        String path = "/public_repo/testUpload_presigned.txt";
+        Path fileToUpload = Path.of("src", "test", "resources", "testUpload.txt");
+        Response response = apiTestHelper.callWithoutAuth(apiTestHelper.createMultiPartRequest(path + "?presign-upload&size=20", fileToUpload));
+        response.assertBadRequest();
+        Assertions.assertTrue(response.body().contains("Presigned uploads are not enabled for this repository"), response.body());
+
+        response = apiTestHelper.callWithoutAuth(apiTestHelper.createMultiPartRequest("/private_repo/testUpload_presigned.txt?presign-upload", fileToUpload));
+        response.assertForbidden();
+    }
+
     private static void deleteS3Object(S3Object s3Object) {
         String key = s3Object.key();
         DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()